@@ -0,0 +1,132 @@
+package com.chatroom.benchmark;
+
+import com.chatroom.model.Message;
+import com.chatroom.repository.Database;
+import com.chatroom.repository.LogMessageStore;
+import com.chatroom.repository.MessageRepository;
+import com.chatroom.repository.MessageStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * LogStoreBenchmark - MESSAGE_STORE=log vs MESSAGE_STORE=sqlite for inserts and range reads
+ *
+ * Both stores are created the way Main creates them, in a temp directory,
+ * and filled with preloadMessages room messages before measuring:
+ * - insert: one message per call (save)
+ * - insertBatch: batchSize messages per call (saveAll, one transaction in SQLite)
+ * - readPage: a page of history before a random cursor (findPageBefore)
+ *
+ * SQLite runs with its default journal and synchronous settings, as the
+ * server does, so it pays an fsync per transaction; the log is flushed once
+ * a second in the background. That difference is part of what is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LogStoreBenchmark {
+
+    @Param({"sqlite", "log"})
+    public String store;
+
+    @Param({"100000"})
+    public int preloadMessages;
+
+    @Param({"100"})
+    public int batchSize;
+
+    @Param({"50"})
+    public int pageSize;
+
+    private Path directory;
+    private Database database;
+    private MessageStore messageStore;
+
+    @Setup(Level.Trial)
+    public void openStore() throws Exception {
+        directory = Files.createTempDirectory("log-store-bench");
+        if (store.equals("log")) {
+            messageStore = new LogMessageStore(directory.resolve("messages").toString(), 64 * 1024 * 1024);
+        } else {
+            database = new Database(DriverManager.getConnection("jdbc:sqlite:" + directory.resolve("chat.db")));
+            messageStore = new MessageRepository(database);
+        }
+
+        for (int saved = 0; saved < preloadMessages; saved += 1000) {
+            messageStore.saveAll(batch(Math.min(1000, preloadMessages - saved)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeStore() throws Exception {
+        if (messageStore instanceof LogMessageStore) {
+            ((LogMessageStore) messageStore).close();
+        }
+        if (database != null) {
+            database.close();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    // Temp directory, best effort
+                }
+            });
+        }
+    }
+
+    private static List<Message> batch(int size) {
+        List<Message> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            messages.add(message());
+        }
+        return messages;
+    }
+
+    private static Message message() {
+        long userId = 1 + ThreadLocalRandom.current().nextInt(50);
+        return new Message(userId, "user" + userId, "benchmark message with a typical length of some sixty characters");
+    }
+
+    @Benchmark
+    public Message insert() {
+        return messageStore.save(message());
+    }
+
+    @Benchmark
+    public List<Message> insertBatch() {
+        return messageStore.saveAll(batch(batchSize));
+    }
+
+    @Benchmark
+    public List<Message> readPage() {
+        long cursor = pageSize + 1 + ThreadLocalRandom.current().nextLong(preloadMessages - pageSize);
+        return messageStore.findPageBefore(cursor, pageSize);
+    }
+}
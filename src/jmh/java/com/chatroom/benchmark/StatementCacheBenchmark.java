@@ -0,0 +1,149 @@
+package com.chatroom.benchmark;
+
+import com.chatroom.model.Message;
+import com.chatroom.repository.Database;
+import com.chatroom.repository.MessageRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StatementCacheBenchmark - Database.prepare() cache + INSERT ... RETURNING vs preparing per call
+ *
+ * mode=cached goes through MessageRepository as the server does: the
+ * statement comes from the per-connection cache and save() gets the id from
+ * RETURNING. mode=plain does what the repository did before: prepare (and
+ * close) a statement on every call and read the id with a second
+ * SELECT last_insert_rowid().
+ *
+ * The database runs with synchronous=OFF and an in-memory journal so an
+ * fsync per insert doesn't hide the statement overhead being measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatementCacheBenchmark {
+    private static final String INSERT_SQL =
+            "INSERT INTO messages (user_id, username, message_text, timestamp, recipient_id, idempotency_key) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String FIND_BY_ID_SQL =
+            "SELECT id, user_id, username, message_text, timestamp, recipient_id FROM messages WHERE id = ?";
+
+    @Param({"cached", "plain"})
+    public String mode;
+
+    @Param({"10000"})
+    public int preloadMessages;
+
+    private Path file;
+    private Database database;
+    private MessageRepository messageRepository;
+
+    @Setup(Level.Trial)
+    public void openDatabase() throws Exception {
+        file = Files.createTempFile("statement-bench", ".db");
+        database = new Database(DriverManager.getConnection("jdbc:sqlite:" + file));
+        database.execute(connection -> {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("PRAGMA synchronous = OFF");
+                stmt.execute("PRAGMA journal_mode = MEMORY");
+            }
+            return null;
+        });
+        messageRepository = new MessageRepository(database);
+
+        List<Message> batch = new ArrayList<>();
+        for (int i = 0; i < preloadMessages; i++) {
+            batch.add(message());
+        }
+        messageRepository.saveAll(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabase() throws Exception {
+        database.close();
+        Files.deleteIfExists(file);
+    }
+
+    private static Message message() {
+        long userId = 1 + ThreadLocalRandom.current().nextInt(50);
+        return new Message(userId, "user" + userId, "benchmark message with a typical length of some sixty characters");
+    }
+
+    @Benchmark
+    public Message insert() throws SQLException {
+        Message message = message();
+        if (mode.equals("cached")) {
+            return messageRepository.save(message);
+        }
+
+        return database.execute(connection -> {
+            try (PreparedStatement pstmt = connection.prepareStatement(INSERT_SQL)) {
+                pstmt.setLong(1, message.getUserId());
+                pstmt.setString(2, message.getUsername());
+                pstmt.setString(3, message.getMessageText());
+                pstmt.setString(4, message.getTimestamp().toString());
+                pstmt.setObject(5, null);
+                pstmt.setString(6, null);
+                pstmt.executeUpdate();
+            }
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                message.setId(rs.next() ? rs.getLong(1) : 0L);
+            }
+            return message;
+        });
+    }
+
+    @Benchmark
+    public Message findById() throws SQLException {
+        long id = 1 + ThreadLocalRandom.current().nextInt(preloadMessages);
+        if (mode.equals("cached")) {
+            return messageRepository.findById(id).orElse(null);
+        }
+
+        return database.execute(connection -> {
+            try (PreparedStatement pstmt = connection.prepareStatement(FIND_BY_ID_SQL)) {
+                pstmt.setLong(1, id);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    Message message = new Message(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4),
+                            LocalDateTime.parse(rs.getString(5)));
+                    long recipientId = rs.getLong(6);
+                    if (!rs.wasNull()) {
+                        message.setRecipientId(recipientId);
+                    }
+                    return message;
+                }
+            }
+        });
+    }
+}
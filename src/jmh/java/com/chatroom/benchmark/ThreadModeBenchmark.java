@@ -0,0 +1,100 @@
+package com.chatroom.benchmark;
+
+import com.chatroom.server.VirtualThreadPool;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ThreadModeBenchmark - THREAD_MODE=platform vs THREAD_MODE=virtual under many concurrent requests
+ *
+ * Each operation submits a burst of "requests" to the Jetty thread pool
+ * the server would use and waits for all of them. A request blocks for
+ * blockMillis (standing in for JDBC / network waits) and then does a little
+ * CPU work. The platform pool is Jetty's default QueuedThreadPool
+ * (200 threads, as Spark configures it), so bursts larger than that queue;
+ * the virtual pool runs every request on its own virtual thread.
+ *
+ * Lower time per burst = higher request throughput. The virtual mode needs
+ * JDK 21+ (mvn -Pbenchmark,virtual-threads package); on older JDKs its
+ * trials fail at setup and only the platform numbers are reported.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThreadModeBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"1000", "10000"})
+    public int concurrency;
+
+    @Param({"5"})
+    public int blockMillis;
+
+    private ThreadPool pool;
+
+    @Setup(Level.Trial)
+    public void startPool() throws Exception {
+        if (mode.equals("virtual")) {
+            if (!VirtualThreadPool.isSupported()) {
+                throw new IllegalStateException("Virtual mode needs JDK 21+, running on " +
+                        System.getProperty("java.version"));
+            }
+            pool = new VirtualThreadPool("bench-vt-");
+        } else {
+            pool = new QueuedThreadPool(200, 8);
+        }
+        ((LifeCycle) pool).start();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopPool() throws Exception {
+        ((LifeCycle) pool).stop();
+    }
+
+    @Benchmark
+    public long burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long[] checksum = new long[1];
+        for (int i = 0; i < concurrency; i++) {
+            int request = i;
+            pool.execute(() -> {
+                try {
+                    Thread.sleep(blockMillis);
+                    long work = request;
+                    for (int j = 0; j < 200; j++) {
+                        work = work * 31 + j;
+                    }
+                    checksum[0] ^= work;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return checksum[0];
+    }
+}
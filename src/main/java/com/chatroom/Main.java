@@ -1,16 +1,66 @@
 package com.chatroom;
 
+import com.chatroom.controller.AttachmentController;
+import com.chatroom.controller.HealthController;
+import com.chatroom.controller.ImportController;
 import com.chatroom.controller.MessageController;
+import com.chatroom.controller.ProfilingController;
+import com.chatroom.controller.StatsController;
+import com.chatroom.controller.StreamController;
 import com.chatroom.controller.UserController;
+import com.chatroom.http.CompressionFilter;
+import com.chatroom.http.EventStream;
+import com.chatroom.http.StaticAssets;
+import com.chatroom.jfr.FlightRecordings;
+import com.chatroom.ratelimit.ConcurrencyLimiter;
+import com.chatroom.ratelimit.OverloadFilter;
+import com.chatroom.ratelimit.RateLimitFilter;
+import com.chatroom.ratelimit.RateLimiter;
+import com.chatroom.ratelimit.TrustedProxies;
+import com.chatroom.repository.AsyncMessageStore;
+import com.chatroom.repository.AsyncUserRepository;
+import com.chatroom.repository.AttachmentRepository;
+import com.chatroom.repository.BlobStore;
+import com.chatroom.repository.Database;
+import com.chatroom.repository.DatabaseExecutor;
+import com.chatroom.repository.MessageArchive;
+import com.chatroom.repository.LogMessageStore;
 import com.chatroom.repository.MessageRepository;
+import com.chatroom.repository.MessageStore;
+import com.chatroom.repository.ShardedMessageStore;
 import com.chatroom.repository.UserRepository;
+import com.chatroom.server.Env;
+import com.chatroom.server.IdempotencyCache;
+import com.chatroom.server.StartupTimer;
+import com.chatroom.server.VirtualThreadPool;
+import com.chatroom.server.WarmUp;
+import com.chatroom.model.ImportReport;
+import com.chatroom.service.AttachmentService;
+import com.chatroom.service.BulkImporter;
+import com.chatroom.service.MessageArchiver;
+import com.chatroom.service.MessagePipeline;
 import com.chatroom.service.MessageService;
 import com.chatroom.service.UserService;
+import com.chatroom.websocket.HeartbeatMonitor;
 import com.chatroom.websocket.WebSocketHandler;
-
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static spark.Spark.*;
 
@@ -18,44 +68,209 @@ import static spark.Spark.*;
 public class Main {
 
     public static void main(String[] args) {
+        StartupTimer startupTimer = new StartupTimer();
+
+        // CLI mode: java -jar app.jar import history.ndjson [--create-users]
+        if (args.length > 0 && args[0].equals("import")) {
+            runImport(args);
+            return;
+        }
+
+        // Build-time run that loads the startup and request classes so the JVM
+        // can dump them into an AppCDS archive on exit (see Dockerfile)
+        boolean cdsTraining = args.length > 0 && args[0].equals("--cds-training");
+
+        // FAST_START moves work that isn't needed to answer requests after
+        // the server is up (it then runs on a background thread)
+        boolean fastStart = Env.getBoolean("FAST_START", false);
+        List<Runnable> deferred = new ArrayList<>();
+
         try {
 
 
             String portFromEnv = System.getenv("PORT");
             int port = (portFromEnv != null) ? Integer.parseInt(portFromEnv) : 8080;
 
-            port(port);
+            port(cdsTraining ? 0 : port);
 
+            // Must be configured before the first route ignites the server
+            setupThreadMode();
+            startupTimer.mark("config");
 
-            Connection connection = initDatabase();
 
+            String dbPath = cdsTraining
+                    ? Files.createTempFile("cds-training", ".db").toString()
+                    : Env.getString("DB_PATH", "chat.db");
+            Database database = new Database(initDatabase(dbPath));
+            startupTimer.mark("database connect");
 
-            UserRepository userRepository = new UserRepository(connection);
-            MessageRepository messageRepository = new MessageRepository(connection);
 
+            UserRepository userRepository = new UserRepository(database);
+            MessageStore messageStore = createMessageStore(database);
+            startupTimer.mark("tables / stores");
 
-            UserService userService = new UserService(userRepository);
-            MessageService messageService = new MessageService(messageRepository, userService);
 
+            UserService userService = new UserService(userRepository);
+            MessageService messageService = new MessageService(messageStore, userService);
+
+            // Repository calls for callers that must not block (WebSocket handlers)
+            DatabaseExecutor databaseExecutor = new DatabaseExecutor(
+                    Env.getInt("DB_EXECUTOR_THREADS", 2),
+                    Env.getInt("DB_EXECUTOR_QUEUE", 1000));
+            userService.setAsyncRepository(new AsyncUserRepository(userRepository, databaseExecutor));
+            messageService.setAsyncStore(new AsyncMessageStore(messageStore, databaseExecutor));
+
+            // Retried sends with the same Idempotency-Key return the first result
+            int idempotencyMaxKeys = Env.getInt("IDEMPOTENCY_MAX_KEYS", 10_000);
+            messageService.setIdempotencyCache(new IdempotencyCache<>(
+                    Env.getLong("IDEMPOTENCY_TTL_MINUTES", 24 * 60), TimeUnit.MINUTES, idempotencyMaxKeys));
+            WebSocketHandler.setBroadcastKeys(new IdempotencyCache<>(
+                    Env.getLong("IDEMPOTENCY_WS_TTL_MINUTES", 10), TimeUnit.MINUTES, idempotencyMaxKeys));
+
+            // Retention: move old messages into compressed archive segments
+            if (messageStore instanceof MessageRepository && !cdsTraining) {
+                Runnable archiverSetup = () -> setupArchiver((MessageRepository) messageStore, messageService);
+                if (fastStart) {
+                    deferred.add(archiverSetup);
+                } else {
+                    archiverSetup.run();
+                }
+            }
+            startupTimer.mark("services");
+
+
+            int maxRateLimitKeys = Env.getInt("RATE_LIMIT_MAX_KEYS", 100_000);
+
+            // Adaptive cap on REST calls in flight, follows request latency
+            ConcurrencyLimiter overloadLimiter = Env.getBoolean("OVERLOAD_ENABLED", true)
+                    ? new ConcurrencyLimiter(
+                            Env.getInt("OVERLOAD_INITIAL_LIMIT", 20),
+                            Env.getInt("OVERLOAD_MIN_LIMIT", 4),
+                            Env.getInt("OVERLOAD_MAX_LIMIT", 200),
+                            Env.getDouble("OVERLOAD_LATENCY_TOLERANCE", 2.0))
+                    : null;
+            WebSocketHandler.setRateLimiter(new RateLimiter<>(
+                    Env.getDouble("RATE_LIMIT_WS_PER_SEC", 10),
+                    Env.getInt("RATE_LIMIT_WS_BURST", 20),
+                    maxRateLimitKeys));
+
+            // Per-account send limit, shared by REST sends and WebSocket chat/DM frames
+            RateLimiter<Long> userRateLimiter = new RateLimiter<>(
+                    Env.getDouble("RATE_LIMIT_USER_PER_SEC", 5),
+                    Env.getInt("RATE_LIMIT_USER_BURST", 10),
+                    maxRateLimitKeys);
+            WebSocketHandler.setUserRateLimiter(userRateLimiter);
+
+            WebSocketHandler.setMessageService(messageService);
+            WebSocketHandler.getRegistry().setMaxQueuedFrames(Env.getInt("WS_BUFFER_FRAMES", 256));
+
+            // REST sends and WebSocket chat frames: validate -> persist -> broadcast
+            MessagePipeline messagePipeline = new MessagePipeline(
+                    messageService, messageStore, Env.getInt("PIPELINE_RING_SIZE", 1024));
+            messagePipeline.setFanOut(WebSocketHandler::broadcastChatMessage);
+            messageService.setPipeline(messagePipeline);
+
+            // Ping every session and reap the ones that stop answering
+            HeartbeatMonitor heartbeatMonitor = setupHeartbeat();
+
+            // Server-Sent Events mirror of the room broadcast
+            EventStream eventStream = new EventStream(
+                    Env.getInt("SSE_REPLAY_EVENTS", 1000),
+                    Env.getInt("SSE_BUFFER_EVENTS", 256),
+                    Env.getInt("SSE_KEEPALIVE_SECONDS", 15));
+            WebSocketHandler.setEventStream(eventStream);
 
             webSocket("/ws/chat", WebSocketHandler.class);
             System.out.println("WebSocket endpoint ready at: ws://localhost:8080/ws/chat");
 
             // Initialize controllers (sets up routes)
+            // Liveness / readiness probes, ready once the optional warm-up is done
+            HealthController healthController = new HealthController();
             new UserController(userService);
-            new MessageController(messageService);
+            // Before MessageController so "stream" is never taken for an id
+            new StreamController(eventStream);
+            new ImportController(
+                    new BulkImporter(messageStore, messageService, userService, Env.getInt("IMPORT_BATCH_SIZE", 5000), false),
+                    Env.getString("IMPORT_TOKEN", null));
+            new MessageController(messageService, userRateLimiter);
+            new StatsController(heartbeatMonitor, overloadLimiter, messagePipeline);
+
+            // JFR recording of the chatroom.* events, dumped over the admin API
+            FlightRecordings flightRecordings = new FlightRecordings(
+                    Duration.ofMinutes(Env.getLong("JFR_MAX_AGE_MINUTES", 30)),
+                    Env.getLong("JFR_MAX_SIZE_MB", 100) * 1024 * 1024);
+            if (Env.getBoolean("JFR_RECORDING", false) && !cdsTraining) {
+                flightRecordings.start();
+                System.out.println("🎥 JFR recording started");
+            }
+            new ProfilingController(flightRecordings, Env.getString("PROFILING_TOKEN", null));
+
+            // File attachments: metadata in SQLite, bytes in content-addressed files
+            AttachmentService attachmentService = new AttachmentService(
+                    new AttachmentRepository(database),
+                    new BlobStore(cdsTraining
+                            ? Files.createTempDirectory("cds-attachments").toString()
+                            : Env.getString("ATTACHMENT_DIR", "attachments")),
+                    messageService,
+                    Env.getLong("ATTACHMENT_MAX_MB", 25) * 1024 * 1024);
+            messageService.setDeleteListener(attachmentService::deleteForMessages);
+            new AttachmentController(attachmentService);
+
+            // Web client, served from memory with precompressed variants
+            StaticAssets.load("/public").registerRoutes("chat.html");
+
+            // Warm-up traffic is marked first so the limits below skip it
+            before("/api/*", WarmUp::markRequest);
+
+            // Per-IP limit for every REST call
+            before("/api/*", new RateLimitFilter(new RateLimiter<>(
+                    Env.getDouble("RATE_LIMIT_IP_PER_SEC", 20),
+                    Env.getInt("RATE_LIMIT_IP_BURST", 40),
+                    maxRateLimitKeys),
+                    new TrustedProxies(Env.getString("TRUSTED_PROXIES", ""))));
+
+            // Shed load when the database falls behind (after the per-IP limit,
+            // so rejected clients never take a slot)
+            if (overloadLimiter != null) {
+                OverloadFilter overloadFilter = new OverloadFilter(overloadLimiter);
+                before("/api/*", overloadFilter::admit);
+                afterAfter("/api/*", overloadFilter::complete);
+            }
+
+            // Compress large JSON responses for clients that accept gzip
+            after("/api/*", new CompressionFilter(Env.getInt("COMPRESSION_MIN_BYTES", 1024)));
 
             // Global exception handlers
             setupExceptionHandlers();
+            startupTimer.mark("routes");
 
             // Wait for Spark to initialize
             awaitInitialization();
+            startupTimer.mark("jetty start");
+
+            if (cdsTraining) {
+                runCdsTraining(database, dbPath);
+                return;
+            }
 
             // Startup message
-            printStartupMessage();
+            if (fastStart) {
+                deferred.add(0, Main::printStartupMessage);
+            } else {
+                printStartupMessage();
+            }
+            startupTimer.printReport();
 
             // Graceful shutdown
-            setupShutdownHook(connection);
+            setupShutdownHook(database, messageStore, messagePipeline, databaseExecutor, healthController);
+
+            if (Env.getBoolean("WARMUP_ENABLED", false)) {
+                startWarmUp(port, healthController);
+            } else {
+                healthController.markReady();
+            }
+
+            runDeferred(deferred);
 
         } catch (Exception e) {
             System.err.println("Failed to start application: " + e.getMessage());
@@ -64,15 +279,144 @@ public class Main {
         }
     }
 
-    private static Connection initDatabase() {
+    /**
+     * Import NDJSON history without starting the web server
+     */
+    private static void runImport(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java -jar app.jar import <file.ndjson> [--create-users]");
+            System.exit(2);
+        }
+        boolean createUsers = args.length > 2 && args[2].equals("--create-users");
+
+        Database database = new Database(initDatabase(Env.getString("DB_PATH", "chat.db")));
+        MessageStore messageStore = createMessageStore(database);
+        UserService userService = new UserService(new UserRepository(database));
+        MessageService messageService = new MessageService(messageStore, userService);
+        BulkImporter importer = new BulkImporter(messageStore, messageService, userService,
+                Env.getInt("IMPORT_BATCH_SIZE", 5000), true);
+
+        try (InputStream in = Files.newInputStream(Paths.get(args[1]))) {
+            ImportReport report = importer.importNdjson(in, createUsers);
+            System.out.println("Imported " + report.getImported() + " messages, skipped " + report.getSkipped() +
+                    " lines, " + report.getRowsPerSecond() + " rows/s");
+            report.getErrors().forEach(error -> System.out.println("  " + error));
+
+            if (messageStore instanceof LogMessageStore) {
+                ((LogMessageStore) messageStore).close();
+            }
+            if (messageStore instanceof ShardedMessageStore) {
+                ((ShardedMessageStore) messageStore).close();
+            }
+            database.close();
+
+        } catch (Exception e) {
+            System.err.println("Import failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Run non-critical initialization after the server accepts requests
+     */
+    private static void runDeferred(List<Runnable> deferred) {
+        if (deferred.isEmpty()) {
+            return;
+        }
+
+        Thread thread = new Thread(() -> {
+            long start = System.nanoTime();
+            for (Runnable task : deferred) {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    System.err.println("❌ Deferred initialization failed: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+            System.out.println("⏱️ Deferred initialization done in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }, "deferred-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Run the synthetic warm-up traffic on a background thread
+     * /health/ready turns true when it is done, even if part of it failed.
+     */
+    private static void startWarmUp(int port, HealthController healthController) {
+        WarmUp warmUp = new WarmUp(port,
+                Env.getInt("WARMUP_ITERATIONS", 1000),
+                Env.getInt("WARMUP_REQUESTS", 500),
+                Env.getLong("WARMUP_MAX_SECONDS", 60));
+
+        Thread thread = new Thread(() -> {
+            try {
+                warmUp.run();
+            } catch (RuntimeException e) {
+                System.err.println("❌ Warm-up failed: " + e.getMessage());
+            } finally {
+                healthController.markReady();
+                System.out.println("✅ Ready for traffic");
+            }
+        }, "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Send a few requests through the full stack so their classes are loaded
+     * (and end up in the AppCDS archive), then exit
+     */
+    private static void runCdsTraining(Database database, String dbPath) {
+        String base = "http://localhost:" + port();
+        String[][] requests = {
+                {"POST", "/api/users/register", "{\"username\":\"cds-user\",\"password\":\"cds-password\"}"},
+                {"POST", "/api/users/login", "{\"username\":\"cds-user\",\"password\":\"cds-password\"}"},
+                {"POST", "/api/messages", "{\"userId\":1,\"messageText\":\"hello\"}"},
+                {"GET", "/api/messages", null},
+                {"GET", "/api/messages/user/1", null},
+                {"GET", "/", null},
+                {"GET", "/missing", null},
+        };
+
+        for (String[] request : requests) {
+            try {
+                HttpURLConnection http = (HttpURLConnection) new URL(base + request[1]).openConnection();
+                http.setRequestMethod(request[0]);
+                http.setRequestProperty("Accept-Encoding", "gzip");
+                if (request[2] != null) {
+                    http.setDoOutput(true);
+                    http.getOutputStream().write(request[2].getBytes(StandardCharsets.UTF_8));
+                }
+                System.out.println("CDS training " + request[0] + " " + request[1] + " -> " + http.getResponseCode());
+                http.disconnect();
+            } catch (IOException e) {
+                System.err.println("CDS training request failed: " + e.getMessage());
+            }
+        }
+
+        stop();
+        awaitStop();
+        try {
+            database.close();
+            Files.deleteIfExists(Paths.get(dbPath));
+        } catch (SQLException | IOException e) {
+            System.err.println("CDS training cleanup failed: " + e.getMessage());
+        }
+        System.exit(0);
+    }
+
+    private static Connection initDatabase(String path) {
         try {
             Class.forName("org.sqlite.JDBC");
 
-            String url = "jdbc:sqlite:chat.db";
+            String url = "jdbc:sqlite:" + path;
             Connection connection = DriverManager.getConnection(url);
 
             System.out.println("Database connected successfully");
-            System.out.println("Database file: chat.db");
+            System.out.println("Database file: " + path);
             return connection;
 
         } catch (ClassNotFoundException e) {
@@ -82,6 +426,100 @@ public class Main {
         }
     }
 
+    /**
+     * Select how HTTP requests are executed
+     * THREAD_MODE=virtual runs every request (and the JDBC/BCrypt work inside it)
+     * on a virtual thread, anything else keeps Jetty's default platform pool.
+     */
+    private static void setupThreadMode() {
+        String threadMode = System.getenv("THREAD_MODE");
+
+        if (!"virtual".equalsIgnoreCase(threadMode)) {
+            System.out.println("Thread mode: platform");
+            return;
+        }
+
+        if (!VirtualThreadPool.isSupported()) {
+            System.err.println("⚠️ THREAD_MODE=virtual needs JDK 21+, running on " +
+                    System.getProperty("java.version") + ". Falling back to platform threads");
+            return;
+        }
+
+        EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY,
+                new EmbeddedJettyFactory().withThreadPool(new VirtualThreadPool("http-vt-")));
+        System.out.println("Thread mode: virtual");
+    }
+
+    /**
+     * MESSAGE_STORE selects the message backend
+     * - sqlite (default): messages table in chat.db
+     * - log: append-only memory-mapped segment files in LOG_STORE_DIR
+     * - sharded: MESSAGE_SHARDS SQLite files in SHARD_DIR
+     */
+    private static MessageStore createMessageStore(Database database) {
+        String store = Env.getString("MESSAGE_STORE", "sqlite");
+
+        if (store.equalsIgnoreCase("log")) {
+            System.out.println("Message store: log");
+            return new LogMessageStore(
+                    Env.getString("LOG_STORE_DIR", "data/messages"),
+                    Env.getInt("LOG_STORE_SEGMENT_MB", 64) * 1024 * 1024);
+        }
+
+        if (store.equalsIgnoreCase("sharded")) {
+            return createShardedStore(Env.getString("SHARD_DIR", "data/shards"), Env.getInt("MESSAGE_SHARDS", 4));
+        }
+
+        System.out.println("Message store: sqlite");
+        return new MessageRepository(database);
+    }
+
+    /**
+     * Ids encode their shard, so a directory keeps the shard count it was created with
+     */
+    private static ShardedMessageStore createShardedStore(String dir, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("MESSAGE_SHARDS must be at least 1");
+        }
+        try {
+            Path shardDir = Paths.get(dir);
+            Files.createDirectories(shardDir);
+            if (Files.exists(shardDir.resolve("messages-" + shardCount + ".db"))
+                    || (shardCount > 1 && Files.exists(shardDir.resolve("messages-0.db"))
+                        && !Files.exists(shardDir.resolve("messages-" + (shardCount - 1) + ".db")))) {
+                throw new IllegalStateException(dir + " was created with a different MESSAGE_SHARDS value");
+            }
+
+            List<Database> databases = new ArrayList<>();
+            for (int i = 0; i < shardCount; i++) {
+                databases.add(new Database(initDatabase(shardDir.resolve("messages-" + i + ".db").toString())));
+            }
+            System.out.println("Message store: sharded (" + shardCount + " shards in " + dir + ")");
+            return new ShardedMessageStore(databases);
+
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create shard directory " + dir, e);
+        }
+    }
+
+    /**
+     * ARCHIVE_RETENTION_DAYS > 0 enables the background archiver
+     * History paging (?before=) reads through to the archive either way
+     */
+    private static void setupArchiver(MessageRepository messageRepository, MessageService messageService) {
+        MessageArchive archive = new MessageArchive(Env.getString("ARCHIVE_DIR", "archive"));
+        messageRepository.setArchive(archive);
+
+        int retentionDays = Env.getInt("ARCHIVE_RETENTION_DAYS", 0);
+        if (retentionDays <= 0) {
+            return;
+        }
+
+        MessageArchiver archiver = new MessageArchiver(messageRepository, archive, messageService,
+                Duration.ofDays(retentionDays), Env.getInt("ARCHIVE_DELETE_CHUNK", 500));
+        archiver.start(Duration.ofMinutes(Env.getLong("ARCHIVE_INTERVAL_MINUTES", 60)));
+    }
+
     private static void setupExceptionHandlers() {
         notFound((req, res) -> {
             res.type("application/json");
@@ -108,31 +546,80 @@ public class Main {
         System.out.println("Server running at: http://localhost:8080");
         System.out.println("WebSocket available at: ws://localhost:8080/ws/chat");
         System.out.println("===========================================\n");
-        System.out.println("Available REST API Endpoints:");
+        System.out.println("Web client:");
+        System.out.println("  GET    /  (chat.html)");
+        System.out.println("\nAvailable REST API Endpoints:");
         System.out.println("  POST   /api/users/register");
         System.out.println("  POST   /api/users/login");
         System.out.println("  GET    /api/users/:username");
+        System.out.println("  GET    /api/users/:username/available");
         System.out.println("  POST   /api/messages");
+        System.out.println("  POST   /api/messages/batch");
+        System.out.println("  DELETE /api/messages/batch");
         System.out.println("  GET    /api/messages");
+        System.out.println("  GET    /api/messages?before=:messageId&limit=:n");
+        System.out.println("  GET    /api/messages/stream  (Server-Sent Events)");
         System.out.println("  GET    /api/messages/user/:userId");
+        System.out.println("  GET    /api/messages/direct/:otherUserId?userId=");
         System.out.println("  DELETE /api/messages/:messageId?userId=:userId");
+        System.out.println("  POST   /api/messages/:messageId/attachments?userId=:userId  (multipart)");
+        System.out.println("  GET    /api/messages/:messageId/attachments");
+        System.out.println("  GET    /api/attachments/:attachmentId");
+        System.out.println("  POST   /api/admin/import/messages  (needs IMPORT_TOKEN)");
+        System.out.println("  GET    /api/stats/websocket");
+        System.out.println("  GET    /api/stats/overload");
+        System.out.println("  GET    /api/stats/pipeline");
+        System.out.println("  POST   /api/admin/jfr/start | GET /api/admin/jfr/dump | POST /api/admin/jfr/stop  (needs PROFILING_TOKEN)");
+        System.out.println("  GET    /health/live");
+        System.out.println("  GET    /health/ready  (503 until warm-up is done)");
         System.out.println("\nWebSocket Endpoint:");
         System.out.println("  WS     /ws/chat");
         System.out.println("\nReady to accept requests");
         System.out.println("Test with Postman or curl\n");
     }
 
-    private static void setupShutdownHook(Connection connection) {
+    /**
+     * HEARTBEAT_INTERVAL_SECONDS=0 disables heartbeats
+     */
+    private static HeartbeatMonitor setupHeartbeat() {
+        int interval = Env.getInt("HEARTBEAT_INTERVAL_SECONDS", 30);
+        int timeout = Env.getInt("HEARTBEAT_TIMEOUT_SECONDS", 75);
+        if (interval <= 0) {
+            return null;
+        }
+
+        HeartbeatMonitor monitor = new HeartbeatMonitor(
+                Duration.ofSeconds(interval), Duration.ofSeconds(timeout), WebSocketHandler::reapSession);
+        WebSocketHandler.setHeartbeatMonitor(monitor);
+        System.out.println("💓 WebSocket heartbeat every " + interval + "s, timeout " + timeout + "s");
+        return monitor;
+    }
+
+    private static void setupShutdownHook(Database database, MessageStore messageStore, MessagePipeline messagePipeline,
+                                          DatabaseExecutor databaseExecutor, HealthController healthController) {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("\nShutting down server...");
 
+            healthController.markNotReady();
+
             stop();
 
+            // Save what is still in the ring before the store closes
+            messagePipeline.close();
+            databaseExecutor.close();
+
+            if (messageStore instanceof LogMessageStore) {
+                ((LogMessageStore) messageStore).close();
+                System.out.println("Message log closed");
+            }
+            if (messageStore instanceof ShardedMessageStore) {
+                ((ShardedMessageStore) messageStore).close();
+                System.out.println("Message shards closed");
+            }
+
             try {
-                if (connection != null && !connection.isClosed()) {
-                    connection.close();
-                    System.out.println("Database connection closed");
-                }
+                database.close();
+                System.out.println("Database connection closed");
             } catch (SQLException e) {
                 System.err.println("Error closing database: " + e.getMessage());
             }
@@ -0,0 +1,212 @@
+package com.chatroom.controller;
+
+import com.chatroom.http.FileResponses;
+import com.chatroom.http.JsonEncoder;
+import com.chatroom.http.MultipartReader;
+import com.chatroom.http.RequestStreams;
+import com.chatroom.jfr.JsonEncodeEvent;
+import com.chatroom.model.Attachment;
+import com.chatroom.model.Message;
+import com.chatroom.service.AttachmentService;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import spark.Request;
+import spark.Response;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static spark.Spark.*;
+
+/**
+ * AttachmentController - Upload and download files attached to messages
+ *
+ * Uploads are parsed straight from the raw request stream and downloads are
+ * written with FileChannel.transferTo, so file bytes never sit on the heap.
+ */
+public class AttachmentController {
+    // Content never changes for an attachment id (the blob is content-addressed),
+    // but it goes away with its message: revalidate, the sha256 ETag makes that a 304
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    // Allowance for multipart boundaries and part headers on top of the file limit
+    private static final long MULTIPART_OVERHEAD = 64 * 1024;
+
+    private AttachmentService attachmentService;
+    private Gson gson;
+
+    public AttachmentController(AttachmentService attachmentService) {
+        this.attachmentService = attachmentService;
+
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .create();
+
+        setupRoutes();
+    }
+
+    private void setupRoutes() {
+
+        post("/api/messages/:messageId/attachments", this::upload);
+
+        get("/api/messages/:messageId/attachments", this::listAttachments);
+
+        get("/api/attachments/:attachmentId", this::download);
+    }
+
+    /**
+     * POST /api/messages/:messageId/attachments?userId=1
+     * Body: multipart/form-data, every part with a filename is stored
+     */
+    private String upload(Request req, Response res) {
+        res.type("application/json");
+
+        String boundary = MultipartReader.boundaryOf(req.contentType());
+        if (boundary == null) {
+            res.status(415);
+            return createErrorResponse("Send files as multipart/form-data");
+        }
+
+        long maxBytes = attachmentService.getMaxBytes();
+        if (req.contentLength() > maxBytes + MULTIPART_OVERHEAD) {
+            res.status(413);
+            return createErrorResponse("Attachment too large (max " + maxBytes + " bytes)");
+        }
+
+        Message message;
+        try {
+            // Not req.queryParams(): it may make Jetty look for form parameters in the body
+            Long messageId = Long.parseLong(req.params(":messageId"));
+            Long userId = Long.parseLong(queryParam(req.queryString(), "userId"));
+            message = attachmentService.requireOwnMessage(messageId, userId);
+
+        } catch (NumberFormatException e) {
+            res.status(400);
+            return createErrorResponse("Invalid message or user ID");
+
+        } catch (IllegalArgumentException e) {
+            res.status(403);
+            return createErrorResponse(e.getMessage());
+        }
+
+        try {
+            List<Attachment> saved = new ArrayList<>();
+            MultipartReader reader = new MultipartReader(RequestStreams.rawBody(req), boundary);
+
+            for (MultipartReader.Part part = reader.next(); part != null; part = reader.next()) {
+                if (part.getFilename() != null) {
+                    saved.add(attachmentService.addAttachment(
+                            message, part.getFilename(), part.getContentType(), part.getBody()));
+                }
+            }
+
+            if (saved.isEmpty()) {
+                res.status(400);
+                return createErrorResponse("No file parts in upload");
+            }
+
+            res.status(201);
+            return JsonEncodeEvent.toJson(gson, saved);
+
+        } catch (IllegalArgumentException e) {
+            res.status(413);
+            return createErrorResponse(e.getMessage());
+
+        } catch (Exception e) {
+            System.err.println("❌ Upload failed: " + e.getMessage());
+            res.status(500);
+            return createErrorResponse("Upload failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * GET /api/messages/:messageId/attachments
+     */
+    private String listAttachments(Request req, Response res) {
+        try {
+            Long messageId = Long.parseLong(req.params(":messageId"));
+            List<Attachment> attachments = attachmentService.getAttachments(messageId);
+
+            res.status(200);
+            res.type("application/json");
+            return JsonEncodeEvent.toJson(gson, attachments);
+
+        } catch (NumberFormatException e) {
+            res.status(400);
+            return createErrorResponse("Invalid message ID");
+
+        } catch (IllegalArgumentException e) {
+            res.status(404);
+            return createErrorResponse(e.getMessage());
+
+        } catch (Exception e) {
+            res.status(500);
+            return createErrorResponse("Internal server error");
+        }
+    }
+
+    /**
+     * GET /api/attachments/:attachmentId
+     * Supports Range requests (resumable downloads, media seeking) and ETag revalidation
+     */
+    private String download(Request req, Response res) {
+        try {
+            Long attachmentId = Long.parseLong(req.params(":attachmentId"));
+            Attachment attachment = attachmentService.getAttachment(attachmentId).orElse(null);
+            if (attachment == null) {
+                res.status(404);
+                res.type("application/json");
+                return createErrorResponse("Attachment not found");
+            }
+
+            FileResponses.send(req, res, attachmentService.contentPath(attachment), attachment.getSize(),
+                    "\"" + attachment.getSha256() + "\"", attachment.getContentType(),
+                    contentDisposition(attachment), CACHE_CONTROL);
+            return "";
+
+        } catch (NumberFormatException e) {
+            res.status(400);
+            res.type("application/json");
+            return createErrorResponse("Invalid attachment ID");
+
+        } catch (Exception e) {
+            System.err.println("❌ Download failed: " + e.getMessage());
+            if (!res.raw().isCommitted()) {
+                res.status(500);
+                res.type("application/json");
+                return createErrorResponse("Internal server error");
+            }
+            return "";
+        }
+    }
+
+    /**
+     * Images are shown inline, anything else is downloaded, so an uploaded
+     * HTML file can never run as a page on our origin
+     */
+    private static String contentDisposition(Attachment attachment) {
+        String type = attachment.getContentType().toLowerCase();
+        boolean inline = type.startsWith("image/") && !type.startsWith("image/svg");
+
+        String encoded = URLEncoder.encode(attachment.getFilename(), StandardCharsets.UTF_8).replace("+", "%20");
+        String ascii = attachment.getFilename().replaceAll("[^\\x20-\\x7e]", "_");
+        return (inline ? "inline" : "attachment") + "; filename=\"" + ascii + "\"; filename*=UTF-8''" + encoded;
+    }
+
+    private static String queryParam(String queryString, String name) {
+        if (queryString != null) {
+            for (String param : queryString.split("&")) {
+                if (param.startsWith(name + "=")) {
+                    return param.substring(name.length() + 1);
+                }
+            }
+        }
+        throw new NumberFormatException("Missing " + name);
+    }
+
+    private String createErrorResponse(String error) {
+        return JsonEncoder.object("error", error);
+    }
+}
@@ -0,0 +1,67 @@
+package com.chatroom.controller;
+
+import spark.Request;
+import spark.Response;
+
+import static spark.Spark.*;
+
+/**
+ * HealthController - Probes for the load balancer / orchestrator
+ *
+ * GET /health/live answers 200 as long as the process serves HTTP.
+ * GET /health/ready answers 503 until markReady() is called (after the
+ * warm-up, if enabled) and again once shutdown has started, so traffic is
+ * only routed to an instance that is warm and not going away.
+ *
+ * Both sit outside /api/*, so rate limiting and load shedding never fail a probe.
+ */
+public class HealthController {
+    private volatile boolean ready;
+
+    public HealthController() {
+        setupRoutes();
+    }
+
+    private void setupRoutes() {
+
+        get("/health/live", this::live);
+
+        get("/health/ready", this::ready);
+    }
+
+    public void markReady() {
+        ready = true;
+    }
+
+    public void markNotReady() {
+        ready = false;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * GET /health/live
+     */
+    private String live(Request req, Response res) {
+        res.type("application/json");
+        res.header("Cache-Control", "no-store");
+        res.status(200);
+        return "{\"status\":\"UP\"}";
+    }
+
+    /**
+     * GET /health/ready
+     */
+    private String ready(Request req, Response res) {
+        res.type("application/json");
+        res.header("Cache-Control", "no-store");
+        if (!ready) {
+            res.status(503);
+            return "{\"status\":\"NOT_READY\"}";
+        }
+        res.status(200);
+        return "{\"status\":\"READY\"}";
+    }
+}
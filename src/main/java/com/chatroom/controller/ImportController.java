@@ -0,0 +1,106 @@
+package com.chatroom.controller;
+
+import com.chatroom.http.JsonEncoder;
+import com.chatroom.http.RequestStreams;
+import com.chatroom.model.ImportReport;
+import com.chatroom.service.BulkImporter;
+import com.google.gson.Gson;
+import spark.Request;
+import spark.Response;
+import java.security.MessageDigest;
+import java.nio.charset.StandardCharsets;
+
+import static spark.Spark.*;
+
+/**
+ * ImportController - Admin endpoint for bulk history import
+ *
+ * Disabled unless IMPORT_TOKEN is set; callers must send
+ * "Authorization: Bearer <IMPORT_TOKEN>".
+ */
+public class ImportController {
+    private BulkImporter bulkImporter;
+    private String token;
+    private Gson gson;
+
+    public ImportController(BulkImporter bulkImporter, String token) {
+        this.bulkImporter = bulkImporter;
+        this.token = token;
+        this.gson = new Gson();
+        setupRoutes();
+    }
+
+    private void setupRoutes() {
+
+        post("/api/admin/import/messages", this::importMessages);
+    }
+
+    /**
+     * POST /api/admin/import/messages?createUsers=true
+     * Body: NDJSON, streamed (never buffered in memory)
+     */
+    private String importMessages(Request req, Response res) {
+        res.type("application/json");
+
+        if (token == null || !isAuthorized(req.headers("Authorization"))) {
+            res.status(403);
+            return createErrorResponse("Import is disabled or token is invalid");
+        }
+
+        // Spark/Jetty eagerly parse form bodies, which would consume the stream
+        String contentType = req.contentType();
+        if (contentType != null && (contentType.startsWith("application/x-www-form-urlencoded") ||
+                contentType.startsWith("multipart/"))) {
+            res.status(415);
+            return createErrorResponse("Send the NDJSON body with Content-Type: application/x-ndjson");
+        }
+
+        try {
+            // Not req.queryParams(): for form content types Jetty would read
+            // (and consume) the whole body looking for form parameters
+            boolean createUsers = hasFlag(req.queryString(), "createUsers");
+            ImportReport report = bulkImporter.importNdjson(RequestStreams.rawBody(req), createUsers);
+
+            res.status(200);
+            return gson.toJson(report);
+
+        } catch (IllegalStateException e) {
+            res.status(409);
+            return createErrorResponse(e.getMessage());
+
+        } catch (Exception e) {
+            System.err.println("❌ Import failed: " + e.getMessage());
+            e.printStackTrace();
+            res.status(500);
+            return createErrorResponse("Import failed: " + e.getMessage());
+        }
+    }
+
+    private static boolean hasFlag(String queryString, String name) {
+        if (queryString == null) {
+            return false;
+        }
+        for (String param : queryString.split("&")) {
+            if (param.equalsIgnoreCase(name + "=true")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Constant-time comparison so the token can't be guessed byte by byte
+     */
+    private boolean isAuthorized(String header) {
+        if (header == null || !header.startsWith("Bearer ")) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                header.substring(7).getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String createErrorResponse(String error) {
+        return JsonEncoder.object("error", error);
+    }
+}
@@ -0,0 +1,26 @@
+package com.chatroom.controller;
+
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+
+/**
+ * LocalDateTimeAdapter - LocalDateTime as its ISO-8601 string in the controllers' Gson
+ */
+class LocalDateTimeAdapter implements JsonSerializer<LocalDateTime>, JsonDeserializer<LocalDateTime> {
+
+    @Override
+    public JsonElement serialize(LocalDateTime dateTime, Type type, JsonSerializationContext context) {
+        return new JsonPrimitive(dateTime.toString());
+    }
+
+    @Override
+    public LocalDateTime deserialize(JsonElement json, Type type, JsonDeserializationContext context) {
+        return LocalDateTime.parse(json.getAsString());
+    }
+}
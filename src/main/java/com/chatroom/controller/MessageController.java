@@ -1,24 +1,34 @@
 package com.chatroom.controller;
 
+import com.chatroom.http.ETags;
+import com.chatroom.http.JsonEncoder;
+import com.chatroom.jfr.JsonEncodeEvent;
+import com.chatroom.model.BatchResult;
 import com.chatroom.model.Message;
+import com.chatroom.ratelimit.RateLimitFilter;
+import com.chatroom.ratelimit.RateLimiter;
 import com.chatroom.service.MessageService;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import spark.Request;
 import spark.Response;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 import static spark.Spark.*;
 
 public class MessageController {
     private MessageService messageService;
+    private RateLimiter<Long> userRateLimiter;
     private Gson gson;
 
-    public MessageController(MessageService messageService) {
+    public MessageController(MessageService messageService, RateLimiter<Long> userRateLimiter) {
         this.messageService = messageService;
+        this.userRateLimiter = userRateLimiter;
 
         this.gson = new GsonBuilder()
                 .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
@@ -29,15 +39,28 @@ public class MessageController {
 
     private void setupRoutes() {
 
+        // Batch routes first, otherwise "batch" would match :messageId
+        post("/api/messages/batch", this::sendMessageBatch);
+
+        delete("/api/messages/batch", this::deleteMessageBatch);
+
         post("/api/messages", this::sendMessage);
 
         get("/api/messages", this::getAllMessages);
 
         get("/api/messages/user/:userId", this::getMessagesByUser);
 
+        get("/api/messages/direct/:otherUserId", this::getConversation);
+
         delete("/api/messages/:messageId", this::deleteMessage);
     }
 
+    /**
+     * POST /api/messages
+     * Body: {"userId": 1, "messageText": "hi"}
+     * An Idempotency-Key header (or "idempotencyKey" in the body) makes the
+     * call safe to retry: a repeated key returns the original message.
+     */
     private String sendMessage(Request req, Response res) {
         try {
 
@@ -45,32 +68,188 @@ public class MessageController {
 
             Long userId = ((Double) body.get("userId")).longValue();
             String messageText = (String) body.get("messageText");
+            String idempotencyKey = req.headers("Idempotency-Key") != null
+                    ? req.headers("Idempotency-Key")
+                    : (String) body.get("idempotencyKey");
 
-            Message message = messageService.sendMessage(userId, messageText);
+            // Per-user limit on top of the per-IP filter, one user may post from many IPs
+            long waitNanos = userRateLimiter.tryAcquire(userId);
+            if (waitNanos > 0) {
+                res.status(429);
+                res.header("Retry-After", String.valueOf(RateLimitFilter.retryAfterSeconds(waitNanos)));
+                return createErrorResponse("Too many messages, slow down");
+            }
+
+            Message message = messageService.sendMessage(userId, messageText, idempotencyKey);
 
             res.status(201);
 
             res.type("application/json");
-            return gson.toJson(message);
+            return JsonEncodeEvent.toJson(message, JsonEncoder::message);
 
         } catch (IllegalArgumentException e) {
             res.status(400);
 
             return createErrorResponse(e.getMessage());
 
+        } catch (RejectedExecutionException e) {
+            res.status(503);
+            res.header("Retry-After", "1");
+            return createErrorResponse("Server busy, try again shortly");
+
+        } catch (Exception e) {
+            res.status(500);
+            return createErrorResponse("Internal server error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * POST /api/messages/batch
+     * Body: {"userId": 1, "messages": [{"messageText": "hi"}, {"userId": 2, "messageText": "yo"}]}
+     * A top-level userId is used for items that don't set their own.
+     * Every item is charged to its sender's rate limit like a single send;
+     * items over the limit get a 429 result (the whole call 429 if none is left).
+     */
+    private String sendMessageBatch(Request req, Response res) {
+        try {
+            Map<String, Object> body = gson.fromJson(req.body(), Map.class);
+            Long defaultUserId = body.get("userId") != null ? ((Double) body.get("userId")).longValue() : null;
+            List<Map<String, Object>> items = (List<Map<String, Object>>) body.get("messages");
+            if (items == null) {
+                throw new IllegalArgumentException("messages array is required");
+            }
+
+            if (items.size() > MessageService.MAX_BATCH_SIZE) {
+                throw new IllegalArgumentException("Batch too large (max " + MessageService.MAX_BATCH_SIZE + " items)");
+            }
+
+            BatchResult[] results = new BatchResult[items.size()];
+            List<Message> drafts = new ArrayList<>();
+            List<Integer> draftIndexes = new ArrayList<>();
+            long maxWaitNanos = 0;
+
+            for (int i = 0; i < items.size(); i++) {
+                Map<String, Object> item = items.get(i);
+                Message draft = new Message();
+                draft.setUserId(item.get("userId") != null ? ((Double) item.get("userId")).longValue() : defaultUserId);
+                draft.setMessageText((String) item.get("messageText"));
+
+                long waitNanos = draft.getUserId() != null ? userRateLimiter.tryAcquire(draft.getUserId()) : 0;
+                if (waitNanos > 0) {
+                    results[i] = BatchResult.failed(i, null, 429, "Too many messages, slow down");
+                    maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+                    continue;
+                }
+                drafts.add(draft);
+                draftIndexes.add(i);
+            }
+
+            if (drafts.isEmpty() && maxWaitNanos > 0) {
+                res.status(429);
+                res.header("Retry-After", String.valueOf(RateLimitFilter.retryAfterSeconds(maxWaitNanos)));
+                return createErrorResponse("Too many messages, slow down");
+            }
+
+            if (!drafts.isEmpty()) {
+                List<BatchResult> sent = messageService.sendMessages(drafts);
+                for (int i = 0; i < sent.size(); i++) {
+                    BatchResult result = sent.get(i);
+                    result.setIndex(draftIndexes.get(i));
+                    results[result.getIndex()] = result;
+                }
+            }
+
+            res.status(200);
+            res.type("application/json");
+            return createBatchResponse(List.of(results));
+
+        } catch (IllegalArgumentException | ClassCastException e) {
+            res.status(400);
+            return createErrorResponse(e instanceof ClassCastException ? "Invalid batch format" : e.getMessage());
+
         } catch (Exception e) {
             res.status(500);
             return createErrorResponse("Internal server error: " + e.getMessage());
         }
     }
 
+    /**
+     * DELETE /api/messages/batch
+     * Body: {"userId": 1, "messageIds": [10, 11, 12]}
+     */
+    private String deleteMessageBatch(Request req, Response res) {
+        try {
+            Map<String, Object> body = gson.fromJson(req.body(), Map.class);
+            if (body == null || body.get("userId") == null || body.get("messageIds") == null) {
+                throw new IllegalArgumentException("userId and messageIds are required");
+            }
+
+            Long userId = ((Double) body.get("userId")).longValue();
+            List<Long> messageIds = new ArrayList<>();
+            for (Object id : (List<Object>) body.get("messageIds")) {
+                messageIds.add(((Double) id).longValue());
+            }
+
+            List<BatchResult> results = messageService.deleteMessages(messageIds, userId);
+
+            res.status(200);
+            res.type("application/json");
+            return createBatchResponse(results);
+
+        } catch (IllegalArgumentException | ClassCastException e) {
+            res.status(400);
+            return createErrorResponse(e instanceof ClassCastException ? "Invalid batch format" : e.getMessage());
+
+        } catch (Exception e) {
+            res.status(500);
+            return createErrorResponse("Internal server error: " + e.getMessage());
+        }
+    }
+
+    private String createBatchResponse(List<BatchResult> results) {
+        int succeeded = 0;
+        for (BatchResult result : results) {
+            if (result.isSuccess()) {
+                succeeded++;
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results);
+        response.put("succeeded", succeeded);
+        response.put("failed", results.size() - succeeded);
+        return JsonEncodeEvent.toJson(gson, response);
+    }
+
     private String getAllMessages(Request req, Response res) {
         try {
-            List<Message> messages = messageService.getAllMessages();
+            // ?before=<id>&limit=<n> pages back through history, including the archive
+            String before = req.queryParams("before");
+            String limit = req.queryParams("limit");
+            boolean paged = before != null || limit != null;
+
+            String etag = messageService.getHistoryETag(paged ? "page-" + before + "-" + limit : "all");
+            if (isNotModified(req, res, etag)) {
+                return "";
+            }
+
+            List<Message> messages = paged
+                    ? messageService.getMessagesPage(
+                            before != null ? Long.parseLong(before) : null,
+                            limit != null ? Integer.parseInt(limit) : 50)
+                    : messageService.getAllMessages();
 
             res.status(200);
             res.type("application/json");
-            return gson.toJson(messages);
+            return JsonEncodeEvent.toJson(messages, JsonEncoder::messages);
+
+        } catch (NumberFormatException e) {
+            res.status(400);
+            return createErrorResponse("Invalid before or limit parameter");
+
+        } catch (IllegalArgumentException e) {
+            res.status(400);
+            return createErrorResponse(e.getMessage());
 
         } catch (Exception e) {
             res.status(500);
@@ -81,11 +260,17 @@ public class MessageController {
     private String getMessagesByUser(Request req, Response res) {
         try {
             Long userId = Long.parseLong(req.params(":userId"));
+
+            String etag = messageService.getHistoryETag("user-" + userId);
+            if (isNotModified(req, res, etag)) {
+                return "";
+            }
+
             List<Message> messages = messageService.getMessagesByUser(userId);
 
             res.status(200);
             res.type("application/json");
-            return gson.toJson(messages);
+            return JsonEncodeEvent.toJson(messages, JsonEncoder::messages);
 
         } catch (NumberFormatException e) {
             res.status(400);
@@ -97,6 +282,39 @@ public class MessageController {
         }
     }
 
+    /**
+     * GET /api/messages/direct/:otherUserId?userId=1[&before=<id>&limit=<n>]
+     * Direct messages between userId and otherUserId, both directions
+     */
+    private String getConversation(Request req, Response res) {
+        try {
+            Long userId = Long.parseLong(req.queryParams("userId"));
+            Long otherUserId = Long.parseLong(req.params(":otherUserId"));
+            String before = req.queryParams("before");
+            String limit = req.queryParams("limit");
+
+            List<Message> messages = messageService.getConversation(userId, otherUserId,
+                    before != null ? Long.parseLong(before) : null,
+                    limit != null ? Integer.parseInt(limit) : 50);
+
+            res.status(200);
+            res.type("application/json");
+            return JsonEncodeEvent.toJson(messages, JsonEncoder::messages);
+
+        } catch (NumberFormatException e) {
+            res.status(400);
+            return createErrorResponse("Invalid user ID, before or limit parameter");
+
+        } catch (IllegalArgumentException e) {
+            res.status(400);
+            return createErrorResponse(e.getMessage());
+
+        } catch (Exception e) {
+            res.status(500);
+            return createErrorResponse("Internal server error");
+        }
+    }
+
     private String deleteMessage(Request req, Response res) {
         try {
             Long messageId = Long.parseLong(req.params(":messageId"));
@@ -104,12 +322,9 @@ public class MessageController {
 
             messageService.deleteMessage(messageId, userId);
 
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "Message deleted successfully");
-
             res.status(200);
             res.type("application/json");
-            return gson.toJson(response);
+            return JsonEncoder.object("message", "Message deleted successfully");
 
         } catch (NumberFormatException e) {
 
@@ -128,27 +343,24 @@ public class MessageController {
         }
     }
 
-    private String createErrorResponse(String error) {
-        Map<String, String> errorMap = new HashMap<>();
-        errorMap.put("error", error);
-        return gson.toJson(errorMap);
-    }
-}
-
-class LocalDateTimeAdapter implements com.google.gson.JsonSerializer<LocalDateTime>,
-        com.google.gson.JsonDeserializer<LocalDateTime> {
-
-    @Override
-    public com.google.gson.JsonElement serialize(LocalDateTime dateTime,
-                                                 java.lang.reflect.Type type,
-                                                 com.google.gson.JsonSerializationContext context) {
-        return new com.google.gson.JsonPrimitive(dateTime.toString());
+    /**
+     * Conditional GET support for polling clients
+     * Sets the ETag and, if the client already has this version, answers 304
+     * so the caller can skip the query and serialization entirely.
+     */
+    private boolean isNotModified(Request req, Response res, String etag) {
+        res.header("ETag", etag);
+        res.header("Cache-Control", "no-cache");
+
+        // The same version compressed by CompressionFilter carries the -gz tag
+        if (ETags.matches(req.headers("If-None-Match"), etag, ETags.gzipVariant(etag))) {
+            res.status(304);
+            return true;
+        }
+        return false;
     }
 
-    @Override
-    public LocalDateTime deserialize(com.google.gson.JsonElement json,
-                                     java.lang.reflect.Type type,
-                                     com.google.gson.JsonDeserializationContext context) {
-        return LocalDateTime.parse(json.getAsString());
+    private String createErrorResponse(String error) {
+        return JsonEncoder.object("error", error);
     }
-}
\ No newline at end of file
+}
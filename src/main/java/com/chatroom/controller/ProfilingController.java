@@ -0,0 +1,149 @@
+package com.chatroom.controller;
+
+import com.chatroom.http.FileResponses;
+import com.chatroom.http.JsonEncoder;
+import com.chatroom.jfr.FlightRecordings;
+import com.google.gson.Gson;
+import spark.Request;
+import spark.Response;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+import static spark.Spark.*;
+
+/**
+ * ProfilingController - Admin endpoints for the JFR recording
+ *
+ * Disabled unless PROFILING_TOKEN is set; callers must send
+ * "Authorization: Bearer <PROFILING_TOKEN>". The dump is a .jfr file for
+ * JDK Mission Control or "jfr print --events chatroom.DatabaseQuery".
+ */
+public class ProfilingController {
+    private FlightRecordings recordings;
+    private String token;
+    private Gson gson;
+
+    public ProfilingController(FlightRecordings recordings, String token) {
+        this.recordings = recordings;
+        this.token = token;
+        this.gson = new Gson();
+        setupRoutes();
+    }
+
+    private void setupRoutes() {
+
+        post("/api/admin/jfr/start", this::start);
+
+        get("/api/admin/jfr/dump", this::dump);
+
+        post("/api/admin/jfr/stop", this::stop);
+    }
+
+    /**
+     * POST /api/admin/jfr/start
+     */
+    private String start(Request req, Response res) {
+        res.type("application/json");
+        if (!isAuthorized(req.headers("Authorization"))) {
+            res.status(403);
+            return createErrorResponse("Profiling is disabled or token is invalid");
+        }
+
+        try {
+            boolean started = recordings.start();
+            res.status(started ? 201 : 200);
+            return createStatusResponse(started ? "Recording started" : "Recording already running");
+
+        } catch (Exception e) {
+            System.err.println("❌ Could not start JFR recording: " + e.getMessage());
+            res.status(500);
+            return createErrorResponse("Could not start recording: " + e.getMessage());
+        }
+    }
+
+    /**
+     * GET /api/admin/jfr/dump
+     * Downloads everything in the current recording window
+     */
+    private String dump(Request req, Response res) {
+        if (!isAuthorized(req.headers("Authorization"))) {
+            res.status(403);
+            res.type("application/json");
+            return createErrorResponse("Profiling is disabled or token is invalid");
+        }
+
+        Path file = null;
+        try {
+            file = recordings.dump();
+            String name = file.getFileName().toString();
+            FileResponses.send(req, res, file, Files.size(file), "\"" + name + "\"",
+                    "application/octet-stream", "attachment; filename=\"" + name + "\"", "no-store");
+            return "";
+
+        } catch (IllegalStateException e) {
+            res.status(409);
+            res.type("application/json");
+            return createErrorResponse(e.getMessage());
+
+        } catch (Exception e) {
+            System.err.println("❌ JFR dump failed: " + e.getMessage());
+            if (!res.raw().isCommitted()) {
+                res.status(500);
+                res.type("application/json");
+                return createErrorResponse("Dump failed: " + e.getMessage());
+            }
+            return "";
+
+        } finally {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (Exception e) {
+                    System.err.println("⚠️ Could not delete " + file + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * POST /api/admin/jfr/stop
+     */
+    private String stop(Request req, Response res) {
+        res.type("application/json");
+        if (!isAuthorized(req.headers("Authorization"))) {
+            res.status(403);
+            return createErrorResponse("Profiling is disabled or token is invalid");
+        }
+
+        boolean stopped = recordings.stop();
+        res.status(200);
+        return createStatusResponse(stopped ? "Recording stopped" : "No recording running");
+    }
+
+    /**
+     * Constant-time comparison so the token can't be guessed byte by byte
+     */
+    private boolean isAuthorized(String header) {
+        if (token == null || header == null || !header.startsWith("Bearer ")) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                header.substring(7).getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String createStatusResponse(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", message);
+        response.put("recording", recordings.isRunning());
+        return gson.toJson(response);
+    }
+
+    private String createErrorResponse(String error) {
+        return JsonEncoder.object("error", error);
+    }
+}
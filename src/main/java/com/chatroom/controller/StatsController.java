@@ -0,0 +1,144 @@
+package com.chatroom.controller;
+
+import com.chatroom.ratelimit.ConcurrencyLimiter;
+import com.chatroom.server.RingBuffer;
+import com.chatroom.service.MessagePipeline;
+import com.chatroom.websocket.HeartbeatMonitor;
+import com.chatroom.websocket.SessionRegistry;
+import com.chatroom.websocket.WebSocketHandler;
+import com.google.gson.Gson;
+import spark.Request;
+import spark.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static spark.Spark.*;
+
+/**
+ * StatsController - Read-only runtime counters
+ */
+public class StatsController {
+    private HeartbeatMonitor heartbeatMonitor;
+    private ConcurrencyLimiter overloadLimiter;
+    private MessagePipeline messagePipeline;
+    private Gson gson;
+
+    /**
+     * @param heartbeatMonitor - May be null when heartbeats are disabled
+     * @param overloadLimiter - May be null when load shedding is disabled
+     */
+    public StatsController(HeartbeatMonitor heartbeatMonitor, ConcurrencyLimiter overloadLimiter,
+                           MessagePipeline messagePipeline) {
+        this.heartbeatMonitor = heartbeatMonitor;
+        this.overloadLimiter = overloadLimiter;
+        this.messagePipeline = messagePipeline;
+        this.gson = new Gson();
+        setupRoutes();
+    }
+
+    private void setupRoutes() {
+
+        get("/api/stats/websocket", this::getWebSocketStats);
+
+        get("/api/stats/overload", this::getOverloadStats);
+
+        get("/api/stats/pipeline", this::getPipelineStats);
+    }
+
+    /**
+     * GET /api/stats/websocket
+     * Open sessions, outbound totals and queued frames of the open sessions
+     * and heartbeat counters (pings sent, dead sessions reaped)
+     */
+    private String getWebSocketStats(Request req, Response res) {
+        int joined = 0;
+        long framesSent = 0;
+        long bytesSent = 0;
+        long sendErrors = 0;
+        long queuedFrames = 0;
+        for (SessionRegistry.ChatSession session : WebSocketHandler.getRegistry().snapshot()) {
+            if (session.getUsername() != null) {
+                joined++;
+            }
+            framesSent += session.getFramesSent();
+            bytesSent += session.getBytesSent();
+            sendErrors += session.getSendErrors();
+            queuedFrames += session.getQueuedFrames();
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("onlineSessions", WebSocketHandler.getOnlineUsersCount());
+        stats.put("joinedSessions", joined);
+        stats.put("framesSent", framesSent);
+        stats.put("bytesSent", bytesSent);
+        stats.put("sendErrors", sendErrors);
+        stats.put("queuedFrames", queuedFrames);
+        stats.put("heartbeatEnabled", heartbeatMonitor != null);
+
+        if (heartbeatMonitor != null) {
+            stats.put("trackedSessions", heartbeatMonitor.getTrackedSessions());
+            stats.put("pingsSent", heartbeatMonitor.getPingsSent());
+            stats.put("reapedSessions", heartbeatMonitor.getReapedSessions());
+        }
+
+        res.status(200);
+        res.type("application/json");
+        return gson.toJson(stats);
+    }
+
+    /**
+     * GET /api/stats/overload
+     * Current concurrency limit, requests in flight, request latency and
+     * rejections per priority
+     */
+    private String getOverloadStats(Request req, Response res) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", overloadLimiter != null);
+
+        if (overloadLimiter != null) {
+            stats.put("limit", overloadLimiter.getLimit());
+            stats.put("inflight", overloadLimiter.getInflight());
+            stats.put("latencyMicros", overloadLimiter.getLatencyMicros());
+            Map<String, Long> rejected = new LinkedHashMap<>();
+            for (ConcurrencyLimiter.Priority priority : ConcurrencyLimiter.Priority.values()) {
+                rejected.put(priority.name().toLowerCase(), overloadLimiter.getRejectedCount(priority));
+            }
+            stats.put("rejected", rejected);
+        }
+
+        res.status(200);
+        res.type("application/json");
+        return gson.toJson(stats);
+    }
+
+    /**
+     * GET /api/stats/pipeline
+     * Message pipeline backlog, end-to-end latency and, per stage, events,
+     * batches and time spent handling them
+     */
+    private String getPipelineStats(Request req, Response res) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity", messagePipeline.getCapacity());
+        stats.put("backlog", messagePipeline.getBacklog());
+        stats.put("delivered", messagePipeline.getDelivered());
+        stats.put("rejected", messagePipeline.getRejected());
+        stats.put("avgLatencyMicros", messagePipeline.getAverageLatencyMicros());
+        stats.put("maxLatencyMicros", messagePipeline.getMaxLatencyMicros());
+
+        Map<String, Object> stages = new LinkedHashMap<>();
+        for (RingBuffer<?>.Stage stage : messagePipeline.getStages()) {
+            Map<String, Object> stageStats = new LinkedHashMap<>();
+            stageStats.put("events", stage.getEvents());
+            stageStats.put("batches", stage.getBatches());
+            stageStats.put("errors", stage.getErrors());
+            stageStats.put("avgMicrosPerEvent", stage.getEvents() == 0 ? 0 : stage.getBusyNanos() / stage.getEvents() / 1000);
+            stageStats.put("maxBatchMicros", stage.getMaxBatchNanos() / 1000);
+            stages.put(stage.getName(), stageStats);
+        }
+        stats.put("stages", stages);
+
+        res.status(200);
+        res.type("application/json");
+        return gson.toJson(stats);
+    }
+}
@@ -0,0 +1,59 @@
+package com.chatroom.controller;
+
+import com.chatroom.http.EventStream;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletResponse;
+
+import static spark.Spark.*;
+
+/**
+ * StreamController - Server-Sent Events for clients that can't hold a WebSocket
+ *
+ * Integrations and dashboards that used to poll GET /api/messages subscribe
+ * once and get every room event pushed, fed by the same fan-out as the
+ * WebSocket broadcast.
+ */
+public class StreamController {
+    private EventStream eventStream;
+
+    public StreamController(EventStream eventStream) {
+        this.eventStream = eventStream;
+        setupRoutes();
+    }
+
+    private void setupRoutes() {
+
+        get("/api/messages/stream", this::stream);
+    }
+
+    /**
+     * GET /api/messages/stream
+     * Resumes after the Last-Event-ID header (sent automatically by
+     * EventSource on reconnect) or ?lastEventId= for clients that can't set it.
+     */
+    private String stream(Request req, Response res) throws Exception {
+        HttpServletResponse raw = res.raw();
+        raw.setStatus(200);
+        raw.setContentType("text/event-stream; charset=utf-8");
+        raw.setHeader("Cache-Control", "no-cache");
+        // Stop nginx and similar proxies from buffering the stream
+        raw.setHeader("X-Accel-Buffering", "no");
+
+        String lastEventId = req.headers("Last-Event-ID");
+        if (lastEventId == null) {
+            lastEventId = req.queryParams("lastEventId");
+        }
+
+        // Commit the headers now; a committed response tells Spark not to write
+        // the route result, and the request stays open after the route returns
+        AsyncContext async = req.raw().startAsync();
+        raw.getOutputStream().write("retry: 3000\n\n".getBytes());
+        raw.flushBuffer();
+
+        eventStream.subscribe(async, lastEventId);
+        return "";
+    }
+}
@@ -1,5 +1,7 @@
 package com.chatroom.controller;
 
+import com.chatroom.http.JsonEncoder;
+import com.chatroom.jfr.JsonEncodeEvent;
 import com.chatroom.model.User;
 import com.chatroom.service.UserService;
 import com.google.gson.Gson;
@@ -29,6 +31,24 @@ public class UserController {
         post("/api/users/login", this::login);
 
         get("/api/users/:username", this::getUserByUsername);
+
+        get("/api/users/:username/available", this::checkAvailability);
+    }
+
+    /**
+     * GET /api/users/:username/available
+     * For signup forms; unknown names are answered without a database query
+     */
+    private String checkAvailability(Request req, Response res) {
+        String username = req.params(":username");
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("username", username);
+        response.put("available", userService.isUsernameAvailable(username));
+
+        res.status(200);
+        res.type("application/json");
+        return JsonEncodeEvent.toJson(gson, response);
     }
 
     private String register(Request req, Response res) {
@@ -56,7 +76,7 @@ public class UserController {
 
             res.type("application/json");
 
-            return gson.toJson(response);
+            return JsonEncodeEvent.toJson(gson, response);
 
         } catch (IllegalArgumentException e) {
 
@@ -100,7 +120,7 @@ public class UserController {
             res.status(200);
 
             res.type("application/json");
-            return gson.toJson(response);
+            return JsonEncodeEvent.toJson(gson, response);
 
         } catch (IllegalArgumentException e) {
 
@@ -130,7 +150,7 @@ public class UserController {
                     res.status(200);
                     res.type("application/json");
                     System.out.println("✅ User found: " + username);
-                    return gson.toJson(response);
+                    return JsonEncodeEvent.toJson(gson, response);
                 })
                 .orElseGet(() -> {
                     res.status(404);
@@ -141,9 +161,7 @@ public class UserController {
     }
 
     private String createErrorResponse(String error) {
-        Map<String, String> errorMap = new HashMap<>();
-        errorMap.put("error", error);
-        return gson.toJson(errorMap);
+        return JsonEncoder.object("error", error);
     }
 
     private void enableCORS() {
@@ -0,0 +1,95 @@
+package com.chatroom.http;
+
+import spark.Filter;
+import spark.Request;
+import spark.Response;
+
+/**
+ * CompressionFilter - Negotiated gzip compression for JSON responses
+ *
+ * Runs as an after-filter: once the route has produced its body, responses
+ * above the size threshold are marked Content-Encoding: gzip when the client
+ * names gzip. Spark then wraps the servlet output stream in a GZIPOutputStream
+ * and compresses while writing, so the body is never held a second time as a
+ * compressed byte array, no matter how large the history response is.
+ *
+ * Small bodies are sent as-is: below ~1KB the gzip header and CPU cost
+ * outweigh the bytes saved.
+ */
+public class CompressionFilter implements Filter {
+    private final int minBytes;
+
+    public CompressionFilter(int minBytes) {
+        this.minBytes = minBytes;
+    }
+
+    @Override
+    public void handle(Request req, Response res) {
+        // The representation depends on Accept-Encoding, caches must key on it
+        res.header("Vary", "Accept-Encoding");
+
+        String body = res.body();
+        if (body == null || body.length() < minBytes) {
+            return;
+        }
+
+        if (res.raw().containsHeader("Content-Encoding")) {
+            return;
+        }
+
+        // Spark only wraps the stream when the header names gzip itself, so
+        // "*" must not get a Content-Encoding it would then not apply
+        if (acceptsEncoding(req.headers("Accept-Encoding"), "gzip", false)) {
+            res.header("Content-Encoding", "gzip");
+
+            // The gzip body is a different representation, it can't share a strong ETag
+            String etag = res.raw().getHeader("ETag");
+            if (etag != null) {
+                res.raw().setHeader("ETag", ETags.gzipVariant(etag));
+            }
+        }
+    }
+
+    /**
+     * Parse an Accept-Encoding header, honoring q-values
+     * e.g. "br;q=1.0, gzip;q=0.8, *;q=0.1" accepts gzip, "gzip;q=0" refuses it
+     */
+    public static boolean acceptsEncoding(String acceptEncoding, String encoding) {
+        return acceptsEncoding(acceptEncoding, encoding, true);
+    }
+
+    /**
+     * Same, optionally ignoring "*": a wildcard alone then doesn't accept the encoding
+     */
+    public static boolean acceptsEncoding(String acceptEncoding, String encoding, boolean wildcardAccepts) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        Double wildcard = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String name = tokens[0].trim();
+            double quality = 1.0;
+
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+
+            if (name.equalsIgnoreCase(encoding)) {
+                return quality > 0;
+            }
+            if (name.equals("*") && wildcardAccepts) {
+                wildcard = quality;
+            }
+        }
+        return wildcard != null && wildcard > 0;
+    }
+}
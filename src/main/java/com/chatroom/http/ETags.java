@@ -0,0 +1,49 @@
+package com.chatroom.http;
+
+/**
+ * ETags - Helpers for conditional requests
+ */
+public final class ETags {
+
+    private ETags() {}
+
+    /**
+     * Check an If-None-Match header against the current ETag
+     * If-None-Match uses weak comparison, so a W/ prefix still matches
+     * @param ifNoneMatch - Header value, may be null or a comma separated list
+     * @param etags - Quoted ETag(s) of the current representation
+     * @return true if the client already has this version (answer 304)
+     */
+    public static boolean matches(String ifNoneMatch, String... etags) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*")) {
+                return true;
+            }
+            for (String etag : etags) {
+                if (tag.equals(etag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * ETag of the gzip encoding of a representation, e.g. "abc" -> "abc-gz"
+     * Weak tags are returned as is, they already ignore the encoding.
+     */
+    public static String gzipVariant(String etag) {
+        if (etag.startsWith("W/") || !etag.endsWith("\"") || etag.endsWith("-gz\"")) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+}
@@ -0,0 +1,296 @@
+package com.chatroom.http;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * EventStream - Server-Sent Events fan-out
+ *
+ * Every published event is encoded once into its wire form
+ * ("id: ...\nevent: ...\ndata: ...\n\n") and the same byte array is queued
+ * to every subscriber. Subscribers write with the non-blocking servlet API
+ * (WriteListener), so a slow client never holds a thread: its events wait
+ * in its own bounded queue, and a client that falls a full queue behind is
+ * disconnected. It reconnects with Last-Event-ID and catches up from the
+ * replay ring instead of costing unbounded memory.
+ *
+ * Event ids are "<epoch>-<sequence>". An id from before a restart, or one
+ * older than the replay ring, gets a "reset" event telling the client to
+ * reload history over REST.
+ */
+public class EventStream implements AutoCloseable {
+    private static final byte[] KEEPALIVE = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final int bufferEvents;
+
+    // Guarded by lock: sequence, replay ring and the subscribe/publish handoff
+    private final ReentrantLock lock = new ReentrantLock();
+    private final byte[][] ringEvents;
+    private long sequence;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService keepalive;
+
+    private final AtomicLong eventsPublished = new AtomicLong();
+    private final AtomicLong subscribersDropped = new AtomicLong();
+
+    /**
+     * @param replayEvents - Recent events kept for Last-Event-ID resume
+     * @param bufferEvents - Max events queued per subscriber before it is dropped
+     * @param keepaliveSeconds - Comment line sent to idle streams so proxies keep them open
+     */
+    public EventStream(int replayEvents, int bufferEvents, int keepaliveSeconds) {
+        if (replayEvents < 1 || bufferEvents < 1 || keepaliveSeconds < 1) {
+            throw new IllegalArgumentException("Event stream settings must be positive");
+        }
+        this.ringEvents = new byte[replayEvents][];
+        this.bufferEvents = bufferEvents;
+
+        this.keepalive = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sse-keepalive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        keepalive.scheduleWithFixedDelay(this::sendKeepalive, keepaliveSeconds, keepaliveSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Send an event to every subscriber
+     * @param type - SSE event name
+     * @param json - Payload, must not contain line breaks (Gson output doesn't)
+     */
+    public void publish(String type, String json) {
+        Subscriber[] targets;
+        lock.lock();
+        try {
+            long id = ++sequence;
+            byte[] event = ("id: " + epoch + "-" + id + "\nevent: " + type + "\ndata: " + json + "\n\n")
+                    .getBytes(StandardCharsets.UTF_8);
+
+            ringEvents[(int) (id % ringEvents.length)] = event;
+
+            // Queue under the lock so a subscriber joining now gets each event
+            // exactly once, either from the replay or from here
+            targets = subscribers.toArray(new Subscriber[0]);
+            for (Subscriber subscriber : targets) {
+                subscriber.enqueue(event);
+            }
+        } finally {
+            lock.unlock();
+        }
+        eventsPublished.incrementAndGet();
+
+        // Writing is non-blocking, so it's fine to do on the publishing thread
+        for (Subscriber subscriber : targets) {
+            subscriber.drain();
+        }
+    }
+
+    /**
+     * Attach a started async request as a subscriber
+     * The response must already be committed with the event-stream headers.
+     * @param async - Started AsyncContext of the request
+     * @param lastEventId - Last-Event-ID sent by the client, may be null
+     */
+    public void subscribe(AsyncContext async, String lastEventId) throws IOException {
+        Subscriber subscriber = new Subscriber(async, async.getResponse().getOutputStream());
+        async.setTimeout(0);
+        async.addListener(subscriber);
+
+        lock.lock();
+        try {
+            replay(subscriber, lastEventId);
+            subscribers.add(subscriber);
+        } finally {
+            lock.unlock();
+        }
+
+        // Jetty calls onWritePossible once the stream is ready, which drains the replay
+        subscriber.out.setWriteListener(subscriber);
+    }
+
+    /**
+     * Queue every ring event newer than the client's last id (caller holds lock)
+     */
+    private void replay(Subscriber subscriber, String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return;
+        }
+
+        long lastId = parseSequence(lastEventId);
+        long oldest = Math.max(sequence - ringEvents.length + 1, 1);
+        // Too old for the ring, or more than the subscriber's queue can take at once
+        if (lastId < 0 || lastId > sequence || lastId + 1 < oldest || sequence - lastId >= bufferEvents) {
+            subscriber.enqueue(("event: reset\ndata: {\"reason\":\"history gap\"}\n\n").getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        for (long id = lastId + 1; id <= sequence; id++) {
+            subscriber.enqueue(ringEvents[(int) (id % ringEvents.length)]);
+        }
+    }
+
+    /**
+     * Sequence number of an id from this run, -1 if it's from another run or malformed
+     */
+    private long parseSequence(String eventId) {
+        int dash = eventId.lastIndexOf('-');
+        if (dash < 0 || !eventId.substring(0, dash).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void sendKeepalive() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.enqueue(KEEPALIVE);
+            subscriber.drain();
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getEventsPublished() {
+        return eventsPublished.get();
+    }
+
+    public long getSubscribersDropped() {
+        return subscribersDropped.get();
+    }
+
+    @Override
+    public void close() {
+        keepalive.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+    }
+
+    /**
+     * One open event-stream response
+     */
+    private class Subscriber implements WriteListener, AsyncListener {
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        private final ArrayBlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(bufferEvents);
+
+        // Serializes isReady/write/flush between publishers and Jetty callbacks
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private boolean listening;
+        private boolean needsFlush;
+        private volatile boolean closed;
+
+        Subscriber(AsyncContext async, ServletOutputStream out) {
+            this.async = async;
+            this.out = out;
+        }
+
+        void enqueue(byte[] event) {
+            if (!closed && !queue.offer(event)) {
+                System.out.println("⚠️ SSE subscriber fell " + bufferEvents + " events behind, disconnecting");
+                subscribersDropped.incrementAndGet();
+                close();
+            }
+        }
+
+        /**
+         * Write queued events until the queue is empty or the socket buffer is full
+         * When isReady() returns false Jetty calls onWritePossible later.
+         */
+        void drain() {
+            writeLock.lock();
+            try {
+                if (closed || !listening) {
+                    return;
+                }
+                while (out.isReady()) {
+                    byte[] event = queue.poll();
+                    if (event == null) {
+                        if (!needsFlush) {
+                            return;
+                        }
+                        needsFlush = false;
+                        out.flush();
+                        continue;
+                    }
+                    out.write(event);
+                    needsFlush = true;
+                }
+            } catch (IOException | RuntimeException e) {
+                close();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+            try {
+                async.complete();
+            } catch (RuntimeException e) {
+                // Already completed by the container
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            writeLock.lock();
+            try {
+                listening = true;
+            } finally {
+                writeLock.unlock();
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // not used
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.chatroom.http;
+
+import org.eclipse.jetty.server.HttpOutput;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * FileResponses - Stream a file from disk as an HTTP response
+ *
+ * The body is moved with FileChannel.transferTo straight from the file into
+ * Jetty's output, so the file is never read into a heap byte array no
+ * matter how large it is. Supports:
+ * - ETag / If-None-Match (304)
+ * - a single byte range (Range: bytes=a-b, a-, -n) answered with 206,
+ *   guarded by If-Range; multi-range requests get the whole file
+ */
+public final class FileResponses {
+
+    private FileResponses() {}
+
+    /**
+     * Send a file, or the requested part of it
+     * @param file - File to send
+     * @param size - Its length in bytes
+     * @param etag - Quoted strong ETag of the content
+     * @param contentType - Content-Type header
+     * @param disposition - Content-Disposition header
+     * @param cacheControl - Cache-Control header
+     */
+    public static void send(Request req, Response res, Path file, long size, String etag,
+                            String contentType, String disposition, String cacheControl) throws IOException {
+        HttpServletResponse raw = res.raw();
+        raw.setHeader("ETag", etag);
+        raw.setHeader("Cache-Control", cacheControl);
+        raw.setHeader("Accept-Ranges", "bytes");
+        raw.setHeader("X-Content-Type-Options", "nosniff");
+        raw.setHeader("Content-Disposition", disposition);
+        raw.setContentType(contentType);
+
+        if (ETags.matches(req.headers("If-None-Match"), etag)) {
+            raw.setStatus(304);
+            raw.flushBuffer();
+            return;
+        }
+
+        long start = 0;
+        long end = size - 1;
+        int status = 200;
+
+        // If-Range: only honor the range if the client's copy is still current
+        String range = req.headers("Range");
+        String ifRange = req.headers("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, size);
+            if (bounds != null && bounds.length == 0) {
+                raw.setStatus(416);
+                raw.setHeader("Content-Range", "bytes */" + size);
+                raw.setContentLength(0);
+                raw.flushBuffer();
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                status = 206;
+                raw.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        raw.setStatus(status);
+        raw.setContentLengthLong(end - start + 1);
+
+        // Write the body ourselves; a committed response tells Spark not to
+        // serialize (or gzip) the route result
+        WritableByteChannel out = channelOf(raw.getOutputStream());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = start;
+            while (position <= end) {
+                long sent = channel.transferTo(position, end + 1 - position, out);
+                if (sent <= 0) {
+                    throw new IOException("File ended early: " + file);
+                }
+                position += sent;
+            }
+        }
+        raw.flushBuffer();
+    }
+
+    /**
+     * Parse a Range header against a file size
+     * @return {start, end} (inclusive), an empty array if the range can't be
+     *         satisfied (416), or null to ignore it and send the whole file
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+
+            if (first.isEmpty()) {
+                // Suffix range: the last n bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return new long[0];
+                }
+                return new long[]{Math.max(size - suffix, 0), size - 1};
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size) {
+                return new long[0];
+            }
+            return start <= end ? new long[]{start, end} : null;
+
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Channel view of the servlet output
+     * Jetty's HttpOutput takes ByteBuffers directly, so transferTo's direct
+     * transfer buffer goes to the socket without another copy.
+     */
+    private static WritableByteChannel channelOf(OutputStream out) {
+        if (!(out instanceof HttpOutput)) {
+            return Channels.newChannel(out);
+        }
+
+        HttpOutput httpOutput = (HttpOutput) out;
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                int length = src.remaining();
+                httpOutput.write(src);
+                src.position(src.limit());
+                return length;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return !httpOutput.isClosed();
+            }
+
+            @Override
+            public void close() {
+                // The servlet container closes the response
+            }
+        };
+    }
+}
@@ -0,0 +1,176 @@
+package com.chatroom.http;
+
+import com.chatroom.model.Message;
+import java.util.List;
+
+/**
+ * JsonEncoder - Hand-written JSON for the payloads sent most often
+ *
+ * Gson finds fields by reflection and builds a JsonWriter per call, which
+ * is most of the cost of a history response or a broadcast frame. The
+ * encoders here write the known fields straight into a StringBuilder that
+ * each thread reuses, with field names as precomputed literals.
+ *
+ * The output is the same as the app's Gson setup produces, character for
+ * character: fields in declaration order, null fields left out,
+ * LocalDateTime as its ISO string, and Gson's HTML-safe escaping
+ * (<, >, &, =, ' and U+2028/U+2029 as unicode escapes). Keep them in sync when
+ * a field is added to Message or WebSocketMessage.
+ *
+ * Bodies stay Strings (not bytes) because CompressionFilter sizes them and
+ * WebSocket text frames and SSE events take Strings.
+ */
+public final class JsonEncoder {
+    // Buffers that grew past this (one huge history response) are dropped after use
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    // Escape sequence per ASCII char, null when the char is written as is
+    private static final String[] ASCII_ESCAPES = new String[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ASCII_ESCAPES[c] = String.format("\\u%04x", c);
+        }
+        ASCII_ESCAPES['"'] = "\\\"";
+        ASCII_ESCAPES['\\'] = "\\\\";
+        ASCII_ESCAPES['\t'] = "\\t";
+        ASCII_ESCAPES['\b'] = "\\b";
+        ASCII_ESCAPES['\n'] = "\\n";
+        ASCII_ESCAPES['\r'] = "\\r";
+        ASCII_ESCAPES['\f'] = "\\f";
+        ASCII_ESCAPES['<'] = "\\u003c";
+        ASCII_ESCAPES['>'] = "\\u003e";
+        ASCII_ESCAPES['&'] = "\\u0026";
+        ASCII_ESCAPES['='] = "\\u003d";
+        ASCII_ESCAPES['\''] = "\\u0027";
+    }
+
+    private JsonEncoder() {}
+
+    /**
+     * Empty buffer of the calling thread
+     * Encoders must not nest: finish() the buffer before acquiring it again.
+     */
+    public static StringBuilder acquire() {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        return buffer;
+    }
+
+    /**
+     * Copy out the JSON and give the buffer back
+     */
+    public static String finish(StringBuilder buffer) {
+        String json = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.remove();
+        }
+        return json;
+    }
+
+    public static String message(Message message) {
+        StringBuilder buffer = acquire();
+        appendMessage(buffer, message);
+        return finish(buffer);
+    }
+
+    public static String messages(List<Message> messages) {
+        StringBuilder buffer = acquire();
+        buffer.append('[');
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            appendMessage(buffer, messages.get(i));
+        }
+        buffer.append(']');
+        return finish(buffer);
+    }
+
+    /**
+     * Single-entry object such as {"error": "..."} or {"message": "..."}
+     */
+    public static String object(String key, String value) {
+        StringBuilder buffer = acquire();
+        buffer.append('{');
+        if (value != null) {
+            appendString(buffer, key);
+            buffer.append(':');
+            appendString(buffer, value);
+        }
+        buffer.append('}');
+        return finish(buffer);
+    }
+
+    public static void appendMessage(StringBuilder buffer, Message message) {
+        if (message == null) {
+            buffer.append("null");
+            return;
+        }
+
+        // Tracks whether a comma is needed, any field may be null
+        int start = buffer.length();
+        buffer.append('{');
+        if (message.getId() != null) {
+            buffer.append("\"id\":").append(message.getId().longValue());
+        }
+        if (message.getUserId() != null) {
+            comma(buffer, start).append("\"userId\":").append(message.getUserId().longValue());
+        }
+        if (message.getUsername() != null) {
+            appendString(comma(buffer, start).append("\"username\":"), message.getUsername());
+        }
+        if (message.getMessageText() != null) {
+            appendString(comma(buffer, start).append("\"messageText\":"), message.getMessageText());
+        }
+        if (message.getTimestamp() != null) {
+            appendString(comma(buffer, start).append("\"timestamp\":"), message.getTimestamp().toString());
+        }
+        if (message.getRecipientId() != null) {
+            comma(buffer, start).append("\"recipientId\":").append(message.getRecipientId().longValue());
+        }
+        buffer.append('}');
+    }
+
+    /**
+     * Comma before a field unless it is the first one of the object opened at start
+     */
+    public static StringBuilder comma(StringBuilder buffer, int start) {
+        if (buffer.length() > start + 1) {
+            buffer.append(',');
+        }
+        return buffer;
+    }
+
+    /**
+     * Quoted, escaped string; runs without special characters are copied in one go
+     */
+    public static StringBuilder appendString(StringBuilder buffer, String value) {
+        buffer.append('"');
+        int length = value.length();
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escape;
+            if (c < 128) {
+                escape = ASCII_ESCAPES[c];
+            } else if (c == '\u2028') {
+                escape = "\\u2028";
+            } else if (c == '\u2029') {
+                escape = "\\u2029";
+            } else {
+                escape = null;
+            }
+
+            if (escape != null) {
+                buffer.append(value, run, i).append(escape);
+                run = i + 1;
+            }
+        }
+        buffer.append(value, run, length);
+        return buffer.append('"');
+    }
+}
@@ -0,0 +1,287 @@
+package com.chatroom.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MultipartReader - Streaming multipart/form-data parser
+ *
+ * The servlet getParts() API spools every part to a temp file (or the heap)
+ * before the route sees it. This reader walks the raw request stream
+ * instead: each part is handed out as an InputStream that ends at the next
+ * boundary, so a file part can be copied straight to its destination
+ * through one fixed buffer.
+ *
+ * Usage:
+ *   MultipartReader reader = new MultipartReader(in, boundary);
+ *   for (MultipartReader.Part part = reader.next(); part != null; part = reader.next()) { ... }
+ *
+ * Unread bytes of a part are skipped by the next call to next().
+ */
+public class MultipartReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    private PartStream current;
+    private boolean finished;
+
+    /**
+     * @param in - Raw request body
+     * @param boundary - Boundary parameter of the Content-Type header
+     */
+    public MultipartReader(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+
+        // The first boundary has no CRLF in front, pretend it does
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        limit = 2;
+    }
+
+    /**
+     * One part of the body
+     */
+    public static class Part {
+        private final Map<String, String> headers;
+        private final InputStream body;
+
+        Part(Map<String, String> headers, InputStream body) {
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /**
+         * @param name - Lower-case header name
+         */
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        public String getName() {
+            return dispositionParam("name");
+        }
+
+        /**
+         * @return Client file name, null for plain form fields
+         */
+        public String getFilename() {
+            return dispositionParam("filename");
+        }
+
+        public String getContentType() {
+            return headers.get("content-type");
+        }
+
+        public InputStream getBody() {
+            return body;
+        }
+
+        private String dispositionParam(String param) {
+            return headerParam(headers.get("content-disposition"), param);
+        }
+    }
+
+    /**
+     * Advance to the next part
+     * @return The part, or null after the closing boundary
+     */
+    public Part next() throws IOException {
+        if (finished) {
+            return null;
+        }
+
+        // Skip the preamble (first call) or whatever the caller left unread
+        PartStream skip = current != null ? current : new PartStream();
+        while (skip.skip(Long.MAX_VALUE) > 0) {
+            // keep skipping
+        }
+
+        // After a boundary: "--" closes the body, otherwise the line ends the boundary
+        fill(2);
+        if (limit - pos >= 2 && buffer[pos] == '-' && buffer[pos + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        readLine();
+
+        Map<String, String> headers = new HashMap<>();
+        for (String line = readLine(); !line.isEmpty(); line = readLine()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+            }
+        }
+
+        current = new PartStream();
+        return new Part(headers, current);
+    }
+
+    /**
+     * Boundary parameter of a multipart Content-Type, null if missing
+     */
+    public static String boundaryOf(String contentType) {
+        if (contentType == null || !contentType.toLowerCase().startsWith("multipart/")) {
+            return null;
+        }
+        String boundary = headerParam(contentType, "boundary");
+        return boundary != null && !boundary.isEmpty() && boundary.length() <= 70 ? boundary : null;
+    }
+
+    /**
+     * Read one parameter (e.g. filename="a.png") from a header value
+     */
+    static String headerParam(String header, String param) {
+        if (header == null) {
+            return null;
+        }
+
+        for (String token : header.split(";")) {
+            String trimmed = token.trim();
+            int eq = trimmed.indexOf('=');
+            if (eq > 0 && trimmed.substring(0, eq).trim().equalsIgnoreCase(param)) {
+                String value = trimmed.substring(eq + 1).trim();
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Make sure at least n bytes are buffered, unless the stream ends first
+     */
+    private void fill(int n) throws IOException {
+        if (limit - pos >= n || eof) {
+            return;
+        }
+
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+
+        while (limit < n && !eof) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        }
+    }
+
+    /**
+     * Read a CRLF-terminated header line (UTF-8, CRLF stripped)
+     */
+    private String readLine() throws IOException {
+        int searched = 0;
+        while (true) {
+            for (int i = pos + searched; i + 1 < limit; i++) {
+                if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+                    String line = new String(buffer, pos, i - pos, StandardCharsets.UTF_8);
+                    pos = i + 2;
+                    return line;
+                }
+            }
+
+            int buffered = limit - pos;
+            if (eof) {
+                throw new IOException("Unexpected end of multipart body");
+            }
+            if (buffered >= buffer.length) {
+                throw new IOException("Multipart header line too long");
+            }
+            searched = Math.max(buffered - 1, 0);
+            fill(buffered + 1);
+        }
+    }
+
+    private int indexOfDelimiter() {
+        int last = limit - delimiter.length;
+        outer:
+        for (int i = pos; i <= last; i++) {
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buffer[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Body of one part, ends right before the next delimiter
+     */
+    private class PartStream extends InputStream {
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int available = chunk();
+            if (available < 0) {
+                return -1;
+            }
+            int n = Math.min(len, available);
+            System.arraycopy(buffer, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            int available = chunk();
+            if (available < 0) {
+                return 0;
+            }
+            int skipped = (int) Math.min(n, available);
+            pos += skipped;
+            return skipped;
+        }
+
+        /**
+         * Bytes that can be handed out before a possible delimiter, -1 at the end of the part
+         * A delimiter may straddle the buffer end, so the last delimiter.length - 1
+         * bytes are held back until more data arrives.
+         */
+        private int chunk() throws IOException {
+            if (done) {
+                return -1;
+            }
+
+            fill(delimiter.length);
+            int index = indexOfDelimiter();
+            if (index == pos) {
+                pos += delimiter.length;
+                done = true;
+                return -1;
+            }
+            if (index >= 0) {
+                return index - pos;
+            }
+            if (eof) {
+                throw new IOException("Unexpected end of multipart body");
+            }
+            return limit - pos - (delimiter.length - 1);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.chatroom.http;
+
+import spark.Request;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * RequestStreams - Access to the unbuffered request body
+ *
+ * Spark wraps every request so that req.body() can be read more than once,
+ * which means it copies non-chunked bodies into a byte array first. For
+ * uploads and imports that can be gigabytes, we unwrap down to Jetty's own
+ * request and read its stream directly.
+ */
+public final class RequestStreams {
+
+    private RequestStreams() {}
+
+    public static InputStream rawBody(Request req) throws IOException {
+        ServletRequest request = req.raw();
+        while (request instanceof ServletRequestWrapper) {
+            request = ((ServletRequestWrapper) request).getRequest();
+        }
+        return request.getInputStream();
+    }
+}
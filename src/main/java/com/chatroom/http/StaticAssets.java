@@ -0,0 +1,203 @@
+package com.chatroom.http;
+
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static spark.Spark.get;
+
+/**
+ * StaticAssets - Serves the web client from memory
+ *
+ * Everything under the classpath folder (e.g. /public) is read once at startup.
+ * For each file we precompute:
+ * - a SHA-256 content hash (used for the ETag)
+ * - a gzip variant, kept only if it is actually smaller
+ *
+ * Assets are served with Cache-Control: no-cache and revalidated with
+ * ETag/304. The client is a single self-contained HTML page, so there are no
+ * sub-resources that would benefit from fingerprinted, immutable URLs.
+ *
+ * A request then costs a map lookup and one write of a prebuilt byte array.
+ */
+public class StaticAssets {
+    private static final String REVALIDATE = "no-cache";
+
+    private final Map<String, Asset> assets;
+
+    private StaticAssets(Map<String, Asset> assets) {
+        this.assets = assets;
+    }
+
+    /**
+     * In-memory copy of one file and its precompressed variant
+     */
+    static class Asset {
+        final String name;
+        final String contentType;
+        final String hash;
+        final byte[] identity;
+        final byte[] gzip;
+        final String etag;
+        final String gzipEtag;
+
+        Asset(String name, byte[] identity) {
+            this.name = name;
+            this.contentType = contentTypeOf(name);
+            this.hash = sha256(identity);
+            this.identity = identity;
+
+            byte[] compressed = gzip(identity);
+            this.gzip = compressed.length < identity.length ? compressed : null;
+
+            // Strong ETags must differ per representation
+            this.etag = "\"" + hash + "\"";
+            this.gzipEtag = "\"" + hash + "-gz\"";
+        }
+    }
+
+    /**
+     * Load every file under a classpath folder
+     * Works both from target/classes and from inside the shaded jar
+     * @param root - Classpath folder, e.g. "/public"
+     */
+    public static StaticAssets load(String root) {
+        URL url = StaticAssets.class.getResource(root);
+        if (url == null) {
+            System.out.println("⚠️ No static assets found at classpath:" + root);
+            return new StaticAssets(Collections.emptyMap());
+        }
+
+        try {
+            URI uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                try (FileSystem jar = FileSystems.newFileSystem(uri, Collections.emptyMap())) {
+                    return new StaticAssets(readAll(jar.getPath(root)));
+                }
+            }
+            return new StaticAssets(readAll(Paths.get(uri)));
+
+        } catch (IOException | URISyntaxException e) {
+            throw new RuntimeException("Failed to load static assets from " + root, e);
+        }
+    }
+
+    private static Map<String, Asset> readAll(Path dir) throws IOException {
+        Map<String, Asset> loaded = new HashMap<>();
+
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String name = dir.relativize(file).toString().replace('\\', '/');
+                Asset asset = new Asset(name, Files.readAllBytes(file));
+                loaded.put(name, asset);
+
+                System.out.println("📦 Static asset loaded: /" + name + " (" + asset.identity.length + " bytes" +
+                        (asset.gzip != null ? ", gzip " + asset.gzip.length + " bytes" : "") + ")");
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Register GET routes for every asset
+     * @param indexName - Asset served at "/" (e.g. "chat.html")
+     */
+    public void registerRoutes(String indexName) {
+        for (Asset asset : assets.values()) {
+            get("/" + asset.name, (req, res) -> serve(req, res, asset));
+        }
+
+        Asset index = assets.get(indexName);
+        if (index != null) {
+            get("/", (req, res) -> serve(req, res, index));
+        }
+    }
+
+    private Object serve(Request req, Response res, Asset asset) throws IOException {
+        boolean useGzip = asset.gzip != null && CompressionFilter.acceptsEncoding(req.headers("Accept-Encoding"), "gzip");
+        HttpServletResponse raw = res.raw();
+
+        raw.setHeader("Cache-Control", REVALIDATE);
+        raw.setHeader("ETag", useGzip ? asset.gzipEtag : asset.etag);
+        raw.setHeader("Vary", "Accept-Encoding");
+        raw.setContentType(asset.contentType);
+
+        if (ETags.matches(req.headers("If-None-Match"), asset.etag, asset.gzipEtag)) {
+            raw.setStatus(304);
+            raw.flushBuffer();
+            return "";
+        }
+
+        byte[] body = useGzip ? asset.gzip : asset.identity;
+        if (useGzip) {
+            raw.setHeader("Content-Encoding", "gzip");
+        }
+
+        // Write the prebuilt bytes ourselves; a committed response tells Spark
+        // not to serialize (or gzip) the route result a second time
+        raw.setStatus(200);
+        raw.setContentLength(body.length);
+        OutputStream out = raw.getOutputStream();
+        out.write(body);
+        out.flush();
+        return "";
+    }
+
+    private static String contentTypeOf(String name) {
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".html")) return "text/html; charset=utf-8";
+        if (lower.endsWith(".css")) return "text/css; charset=utf-8";
+        if (lower.endsWith(".js")) return "application/javascript; charset=utf-8";
+        if (lower.endsWith(".json")) return "application/json; charset=utf-8";
+        if (lower.endsWith(".svg")) return "image/svg+xml";
+        if (lower.endsWith(".png")) return "image/png";
+        if (lower.endsWith(".ico")) return "image/x-icon";
+        return "application/octet-stream";
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            // 16 bytes are plenty for a cache key and keep URLs short
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 2 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to compress static asset", e);
+        }
+        return buffer.toByteArray();
+    }
+}
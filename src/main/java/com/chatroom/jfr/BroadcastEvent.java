@@ -0,0 +1,31 @@
+package com.chatroom.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Fan-out of one frame to the connected WebSocket sessions (and SSE subscribers)
+ */
+@Name("chatroom.Broadcast")
+@Label("Broadcast")
+@Category({"Chat Room", "WebSocket"})
+@Description("Sending one frame to every open WebSocket session")
+public class BroadcastEvent extends Event {
+
+    @Label("Message Type")
+    public String messageType;
+
+    @Label("Recipients")
+    public int recipients;
+
+    @Label("Failures")
+    @Description("Sessions the send failed for")
+    public int failures;
+
+    @Label("Frame Length")
+    @Description("Characters of JSON in the frame")
+    public int frameLength;
+}
@@ -0,0 +1,38 @@
+package com.chatroom.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * One unit of work on the shared SQLite connection
+ * The duration includes waiting for the connection lock; lockWait shows how much of it that was.
+ */
+@Name("chatroom.DatabaseQuery")
+@Label("Database Query")
+@Category({"Chat Room", "Database"})
+@Description("Repository call on the shared SQLite connection, including the wait for the connection lock")
+@Threshold("1 ms")
+@StackTrace(true)
+public class DatabaseQueryEvent extends Event {
+
+    @Label("SQL")
+    @Description("First cached statement prepared by the call, or \"(dynamic)\" for per-call SQL")
+    public String sql;
+
+    @Label("Rows")
+    @Description("Rows read through the Database query helpers")
+    public int rows;
+
+    @Label("Lock Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    public long lockWait;
+
+    @Label("Transaction")
+    public boolean transaction;
+}
@@ -0,0 +1,104 @@
+package com.chatroom.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * FlightRecordings - Start, dump and stop an in-process JFR recording
+ *
+ * The recording uses the JDK "default" settings (the low-overhead profile
+ * meant to stay on in production) plus the chatroom.* events, and keeps a
+ * rolling window bounded by age and size. A dump is a regular .jfr file
+ * for JDK Mission Control or "jfr print".
+ */
+public class FlightRecordings {
+    private final Duration maxAge;
+    private final long maxSizeBytes;
+
+    // Guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private Recording recording;
+
+    /**
+     * @param maxAge - Oldest data kept in the rolling window
+     * @param maxSizeBytes - Size cap of the rolling window
+     */
+    public FlightRecordings(Duration maxAge, long maxSizeBytes) {
+        this.maxAge = maxAge;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * @return false if a recording was already running
+     */
+    public boolean start() throws IOException, ParseException {
+        lock.lock();
+        try {
+            if (recording != null) {
+                return false;
+            }
+            Recording started = new Recording(Configuration.getConfiguration("default"));
+            started.setName("chatroom");
+            started.setToDisk(true);
+            started.setMaxAge(maxAge);
+            started.setMaxSize(maxSizeBytes);
+            started.start();
+            recording = started;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write everything in the current window to a new temp file
+     * The caller deletes the file when it is done with it.
+     * @throws IllegalStateException if no recording is running
+     */
+    public Path dump() throws IOException {
+        lock.lock();
+        try {
+            if (recording == null) {
+                throw new IllegalStateException("No recording running");
+            }
+            Path file = Files.createTempFile("chatroom-", ".jfr");
+            recording.dump(file);
+            return file;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return false if no recording was running
+     */
+    public boolean stop() {
+        lock.lock();
+        try {
+            if (recording == null) {
+                return false;
+            }
+            recording.close();
+            recording = null;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isRunning() {
+        lock.lock();
+        try {
+            return recording != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.chatroom.jfr;
+
+import com.google.gson.Gson;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Serialization of a response body or WebSocket frame (Gson or JsonEncoder)
+ */
+@Name("chatroom.JsonEncode")
+@Label("JSON Encode")
+@Category({"Chat Room", "Serialization"})
+@Description("JSON encoding of a REST response or WebSocket frame")
+@Threshold("1 ms")
+@StackTrace(true)
+public class JsonEncodeEvent extends Event {
+
+    @Label("Payload Type")
+    public String payloadType;
+
+    @Label("Items")
+    @Description("Elements for collections and maps, 1 otherwise")
+    public int items;
+
+    @Label("Length")
+    @Description("Characters of JSON produced")
+    public int length;
+
+    /**
+     * gson.toJson(value), recorded as an event when it takes long enough to matter
+     */
+    public static String toJson(Gson gson, Object value) {
+        return toJson(value, gson::toJson);
+    }
+
+    /**
+     * Same for a hand-written encoder
+     */
+    public static <T> String toJson(T value, Function<? super T, String> encoder) {
+        JsonEncodeEvent event = new JsonEncodeEvent();
+        event.begin();
+        String json = encoder.apply(value);
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.payloadType = value == null ? "null" : value.getClass().getSimpleName();
+            event.items = value instanceof Collection ? ((Collection<?>) value).size()
+                    : value instanceof Map ? ((Map<?, ?>) value).size() : 1;
+            event.length = json.length();
+            event.commit();
+        }
+        return json;
+    }
+}
@@ -0,0 +1,25 @@
+package com.chatroom.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One BCrypt hash (registration) or verification (login)
+ */
+@Name("chatroom.PasswordHash")
+@Label("Password Hash")
+@Category({"Chat Room", "Security"})
+@Description("BCrypt work done for registration or login")
+public class PasswordHashEvent extends Event {
+
+    @Label("Operation")
+    @Description("\"hash\" or \"verify\"")
+    public String operation;
+
+    @Label("Matched")
+    @Description("Verification result, always true for hashing")
+    public boolean matched;
+}
@@ -0,0 +1,103 @@
+package com.chatroom.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * File attached to a message
+ * The bytes live in the content-addressed BlobStore under sha256, so
+ * identical uploads share one file on disk.
+ */
+public class Attachment {
+    private Long id;
+    private Long messageId;
+    private Long userId;
+    private String sha256;
+    private String filename;
+    private String contentType;
+    private long size;
+    private LocalDateTime createdAt;
+
+    public Attachment() {}
+
+    public Attachment(Long id, Long messageId, Long userId, String sha256, String filename,
+                      String contentType, long size, LocalDateTime createdAt) {
+        this.id = id;
+        this.messageId = messageId;
+        this.userId = userId;
+        this.sha256 = sha256;
+        this.filename = filename;
+        this.contentType = contentType;
+        this.size = size;
+        this.createdAt = createdAt;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(Long messageId) {
+        this.messageId = messageId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "Attachment{id=" + id + ", messageId=" + messageId + ", file='" + filename + "', size=" + size + "}";
+    }
+}
@@ -0,0 +1,85 @@
+package com.chatroom.model;
+
+/**
+ * Outcome of one item in a batch request
+ * Uses HTTP status codes so clients can treat each item like a single call.
+ */
+public class BatchResult {
+    private int index;
+    private Long messageId;
+    private int status;
+    private String error;
+    private Message message;
+
+    public BatchResult() {}
+
+    public BatchResult(int index, Long messageId, int status, String error, Message message) {
+        this.index = index;
+        this.messageId = messageId;
+        this.status = status;
+        this.error = error;
+        this.message = message;
+    }
+
+    public static BatchResult created(int index, Message message) {
+        return new BatchResult(index, message.getId(), 201, null, message);
+    }
+
+    public static BatchResult deleted(int index, Long messageId) {
+        return new BatchResult(index, messageId, 200, null, null);
+    }
+
+    public static BatchResult failed(int index, Long messageId, int status, String error) {
+        return new BatchResult(index, messageId, status, error, null);
+    }
+
+    // Getters and Setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Long getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(Long messageId) {
+        this.messageId = messageId;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+
+    public boolean isSuccess() {
+        return status < 300;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{index=" + index + ", messageId=" + messageId + ", status=" + status + ", error='" + error + "'}";
+    }
+}
@@ -0,0 +1,55 @@
+package com.chatroom.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of an NDJSON import run
+ */
+public class ImportReport {
+    private static final int MAX_ERRORS = 20;
+
+    private long imported;
+    private long skipped;
+    private long usersCreated;
+    private double seconds;
+    private long rowsPerSecond;
+    private List<String> errors = new ArrayList<>();
+
+    public void addImported(long count) {
+        imported += count;
+    }
+
+    public void addUserCreated() {
+        usersCreated++;
+    }
+
+    /**
+     * Count a skipped line, keeping only the first few messages
+     */
+    public void addSkipped(long lineNumber, String reason) {
+        skipped++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add("line " + lineNumber + ": " + reason);
+        }
+    }
+
+    public void finish(long elapsedNanos) {
+        seconds = elapsedNanos / 1_000_000_000.0;
+        rowsPerSecond = seconds > 0 ? (long) (imported / seconds) : imported;
+    }
+
+    // Getters
+    public long getImported() { return imported; }
+    public long getSkipped() { return skipped; }
+    public long getUsersCreated() { return usersCreated; }
+    public double getSeconds() { return seconds; }
+    public long getRowsPerSecond() { return rowsPerSecond; }
+    public List<String> getErrors() { return errors; }
+
+    @Override
+    public String toString() {
+        return "ImportReport{imported=" + imported + ", skipped=" + skipped + ", usersCreated=" + usersCreated +
+                ", seconds=" + String.format("%.1f", seconds) + ", rowsPerSecond=" + rowsPerSecond + "}";
+    }
+}
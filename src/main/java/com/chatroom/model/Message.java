@@ -8,6 +8,10 @@ public class Message {
     private String username;  // Stored directly for easy retrieval
     private String messageText;
     private LocalDateTime timestamp;
+    private Long recipientId;  // Set only for direct messages, null for the public room
+
+    // Client-generated key that makes retried sends safe, never sent back in JSON
+    private transient String idempotencyKey;
 
 
     public Message() {}
@@ -70,6 +74,26 @@ public class Message {
         this.timestamp = timestamp;
     }
 
+    public Long getRecipientId() {
+        return recipientId;
+    }
+
+    public void setRecipientId(Long recipientId) {
+        this.recipientId = recipientId;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public boolean isDirect() {
+        return recipientId != null;
+    }
+
     @Override
     public String toString() {
         return "Message{id=" + id + ", username='" + username + "', text='" + messageText + "', time=" + timestamp + "}";
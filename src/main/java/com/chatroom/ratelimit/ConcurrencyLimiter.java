@@ -0,0 +1,166 @@
+package com.chatroom.ratelimit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConcurrencyLimiter - Adaptive cap on requests in flight (gradient style)
+ *
+ * Token buckets limit how often one client may call; this limits how much
+ * work the whole server takes on at once. The limit follows the measured
+ * latency of the requests it admits:
+ * - longRtt: slow average, the latency the server has when healthy
+ * - shortRtt: fast average, the latency right now
+ * - gradient = clamp(tolerance * longRtt / shortRtt, 0.5, 1.0)
+ * - newLimit = limit * gradient + sqrt(limit)
+ *
+ * While latency stays near its baseline the gradient is 1 and the limit
+ * grows by sqrt(limit) per sample; when a checkpoint or disk stall makes
+ * queries queue up the gradient drops and the limit shrinks multiplicatively.
+ * Requests over the limit are rejected at once instead of queueing behind
+ * the stalled connection until they all time out together.
+ *
+ * Priorities share one limit: each may only use a fraction of it, so
+ * lower priorities are shed first as the limit shrinks.
+ */
+public class ConcurrencyLimiter {
+    private static final double SMOOTHING = 0.2;
+    private static final double SHORT_ALPHA = 0.2;
+    private static final double LONG_ALPHA = 2.0 / 601;
+
+    /**
+     * Request classes, from kept-longest to shed-first
+     */
+    public enum Priority {
+        CRITICAL(1.0),
+        NORMAL(0.9),
+        SHEDDABLE(0.7);
+
+        private final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final AtomicLong[] rejected = new AtomicLong[Priority.values().length];
+
+    // Guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private double shortRtt;
+    private double longRtt;
+
+    // Read without the lock on every acquire
+    private volatile double limit;
+
+    /**
+     * @param initialLimit - Starting limit
+     * @param minLimit - Floor, the limit never drops below this
+     * @param maxLimit - Ceiling
+     * @param tolerance - Latency increase over the baseline that is still
+     *                    considered healthy (e.g. 2.0 = up to twice as slow)
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || tolerance < 1) {
+            throw new IllegalArgumentException("Invalid concurrency limit settings");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Take a slot if the priority's share of the limit has room
+     * @return true if admitted; the caller must call release() exactly once
+     */
+    public boolean tryAcquire(Priority priority) {
+        int allowed = Math.max(1, (int) (limit * priority.share));
+        while (true) {
+            int current = inflight.get();
+            if (current >= allowed) {
+                rejected[priority.ordinal()].incrementAndGet();
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Give the slot back and feed the latency it saw into the limit
+     * @param latencyNanos - Wall time of the request, 0 to release without a sample
+     */
+    public void release(long latencyNanos) {
+        int inflightBefore = inflight.getAndDecrement();
+        if (latencyNanos > 0) {
+            onSample(latencyNanos, inflightBefore);
+        }
+    }
+
+    private void onSample(long latencyNanos, int inflightBefore) {
+        lock.lock();
+        try {
+            if (longRtt == 0) {
+                shortRtt = latencyNanos;
+                longRtt = latencyNanos;
+                return;
+            }
+
+            shortRtt += (latencyNanos - shortRtt) * SHORT_ALPHA;
+            longRtt += (latencyNanos - longRtt) * LONG_ALPHA;
+
+            // After a long overload the baseline itself has drifted up; pull it back
+            // down once latency recovers so the limit can grow again
+            if (longRtt / shortRtt > 2) {
+                longRtt *= 0.95;
+            }
+
+            // Barely used: latency says nothing about whether a higher limit is safe
+            if (inflightBefore < limit / 2) {
+                return;
+            }
+
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+            double newLimit = limit * gradient + Math.sqrt(limit);
+            newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+            limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public long getRejectedCount(Priority priority) {
+        return rejected[priority.ordinal()].get();
+    }
+
+    /**
+     * Current short-term request latency in microseconds
+     */
+    public long getLatencyMicros() {
+        lock.lock();
+        try {
+            return (long) (shortRtt / 1000);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.chatroom.ratelimit;
+
+import com.chatroom.ratelimit.ConcurrencyLimiter.Priority;
+import com.chatroom.server.WarmUp;
+import spark.Request;
+import spark.Response;
+
+import static spark.Spark.halt;
+
+/**
+ * OverloadFilter - Sheds REST calls when the server falls behind
+ *
+ * admit() runs as a before-filter and takes a ConcurrencyLimiter slot for
+ * the request; complete() runs as an afterAfter-filter (which Spark also
+ * runs when a route throws) and gives it back along with the request's wall
+ * time from admit to complete. Requests that don't get a slot are answered
+ * with 503 and Retry-After before they reach a controller.
+ *
+ * Wall time, not database time of the request thread: a send waits for the
+ * MessagePipeline's persist thread, reads wait for the DatabaseExecutor or a
+ * shard's executor, and MESSAGE_STORE=log has no Database at all. Every one
+ * of those queues shows up in how long the request takes.
+ *
+ * Priorities, shed from the bottom up:
+ * - CRITICAL: login, registration and sending messages
+ * - NORMAL: everything else
+ * - SHEDDABLE: history reads and bulk import, clients can retry or page later
+ *
+ * The event stream and attachment transfers are not limited: they are long
+ * I/O-bound requests that would hold slots without using the database.
+ */
+public class OverloadFilter {
+    // Holds the System.nanoTime() of admission while the request has a slot
+    private static final String PERMIT_ATTRIBUTE = "overload.permit";
+
+    private final ConcurrencyLimiter limiter;
+
+    public OverloadFilter(ConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    /**
+     * Before-filter
+     */
+    public void admit(Request req, Response res) {
+        // Warm-up requests take no slot and leave no latency sample
+        if ("OPTIONS".equals(req.requestMethod()) || isExempt(req.pathInfo())
+                || req.attribute(WarmUp.REQUEST_ATTRIBUTE) != null) {
+            return;
+        }
+
+        if (!limiter.tryAcquire(priorityOf(req.requestMethod(), req.pathInfo()))) {
+            res.header("Retry-After", "1");
+            res.type("application/json");
+            halt(503, "{\"error\": \"Server busy, try again shortly\"}");
+        }
+
+        req.attribute(PERMIT_ATTRIBUTE, System.nanoTime());
+    }
+
+    /**
+     * AfterAfter-filter
+     */
+    public void complete(Request req, Response res) {
+        Long admittedNanos = req.attribute(PERMIT_ATTRIBUTE);
+        if (admittedNanos != null) {
+            req.raw().removeAttribute(PERMIT_ATTRIBUTE);
+            limiter.release(System.nanoTime() - admittedNanos);
+        }
+    }
+
+    static Priority priorityOf(String method, String path) {
+        if ("POST".equals(method)) {
+            if (path.equals("/api/users/login") || path.equals("/api/users/register")
+                    || path.equals("/api/messages") || path.equals("/api/messages/batch")) {
+                return Priority.CRITICAL;
+            }
+            if (path.startsWith("/api/admin/import")) {
+                return Priority.SHEDDABLE;
+            }
+        }
+        if ("GET".equals(method) && path.startsWith("/api/messages")) {
+            return Priority.SHEDDABLE;
+        }
+        return Priority.NORMAL;
+    }
+
+    private static boolean isExempt(String path) {
+        return path.equals("/api/messages/stream")
+                || path.startsWith("/api/attachments/")
+                || (path.startsWith("/api/messages/") && path.endsWith("/attachments"));
+    }
+}
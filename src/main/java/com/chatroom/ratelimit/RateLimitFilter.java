@@ -0,0 +1,68 @@
+package com.chatroom.ratelimit;
+
+import com.chatroom.server.WarmUp;
+import spark.Filter;
+import spark.Request;
+import spark.Response;
+
+import java.util.concurrent.TimeUnit;
+
+import static spark.Spark.halt;
+
+/**
+ * RateLimitFilter - Spark before-filter that limits REST calls per client IP
+ *
+ * Requests over the limit are answered with 429 and a Retry-After header
+ * before they reach a controller, so they never touch the database.
+ *
+ * The client IP comes from X-Forwarded-For only when the request arrives
+ * through a trusted proxy (see TrustedProxies), so clients can't pick a new
+ * address per request to dodge the limit.
+ */
+public class RateLimitFilter implements Filter {
+    private final RateLimiter<String> limiter;
+    private final TrustedProxies trustedProxies;
+
+    public RateLimitFilter(RateLimiter<String> limiter, TrustedProxies trustedProxies) {
+        this.limiter = limiter;
+        this.trustedProxies = trustedProxies;
+    }
+
+    @Override
+    public void handle(Request req, Response res) {
+        // CORS preflight requests are cheap and sent by the browser, not the client code
+        if ("OPTIONS".equals(req.requestMethod())) {
+            return;
+        }
+
+        if (req.attribute(WarmUp.REQUEST_ATTRIBUTE) != null) {
+            return;
+        }
+
+        long waitNanos = limiter.tryAcquire(clientIp(req));
+        if (waitNanos > 0) {
+            reject(res, waitNanos);
+        }
+    }
+
+    /**
+     * Answer 429 and stop the request
+     */
+    public static void reject(Response res, long waitNanos) {
+        res.header("Retry-After", String.valueOf(retryAfterSeconds(waitNanos)));
+        res.type("application/json");
+        halt(429, "{\"error\": \"Too many requests\"}");
+    }
+
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    /**
+     * Behind a proxy (e.g. Render) the socket address is the proxy; the
+     * client is then the right-most X-Forwarded-For entry that isn't a proxy
+     */
+    public String clientIp(Request req) {
+        return trustedProxies.clientIp(req.ip(), req.headers("X-Forwarded-For"));
+    }
+}
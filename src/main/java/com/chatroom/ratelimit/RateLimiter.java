@@ -0,0 +1,92 @@
+package com.chatroom.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RateLimiter - Token buckets keyed by user id, session or remote IP
+ *
+ * Memory is bounded by maxKeys. When the map is full, buckets that have
+ * refilled completely (idle keys) are swept out; they hold no information,
+ * so removing them never changes a decision. Sweeps run at most once per
+ * second so a flood of new keys cannot turn every request into a full scan.
+ * If the map is still full after a sweep, requests from new keys are
+ * rejected until buckets go idle: failing open would let a flood of keys
+ * switch limiting off for everyone.
+ */
+public class RateLimiter<K> {
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<K, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final long emissionInterval;
+    private final long burstTolerance;
+    private final int maxKeys;
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime() - SWEEP_INTERVAL_NANOS);
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param permitsPerSecond - Sustained rate allowed for each key
+     * @param burst - Requests a key may send at once after being idle
+     * @param maxKeys - Upper bound on tracked keys
+     */
+    public RateLimiter(double permitsPerSecond, int burst, int maxKeys) {
+        if (permitsPerSecond <= 0 || burst < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException("Rate limit settings must be positive");
+        }
+        this.emissionInterval = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstTolerance = emissionInterval * (burst - 1);
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Try to take a permit for a key
+     * @param key - User id, session or IP
+     * @return 0 if allowed, otherwise nanos until the next permit
+     */
+    public long tryAcquire(K key) {
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(key);
+
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys) {
+                sweep(now);
+                if (buckets.size() >= maxKeys) {
+                    rejected.incrementAndGet();
+                    return SWEEP_INTERVAL_NANOS;
+                }
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(now));
+        }
+
+        long waitNanos = bucket.tryAcquire(now, emissionInterval, burstTolerance);
+        if (waitNanos > 0) {
+            rejected.incrementAndGet();
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Stop tracking a key (e.g. when its WebSocket session closes)
+     */
+    public void remove(K key) {
+        buckets.remove(key);
+    }
+
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        buckets.entrySet().removeIf(entry -> entry.getValue().isIdle(now));
+    }
+
+    public int getTrackedKeys() {
+        return buckets.size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+}
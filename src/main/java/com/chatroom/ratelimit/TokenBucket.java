@@ -0,0 +1,50 @@
+package com.chatroom.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TokenBucket - Lock-free token bucket for a single key
+ *
+ * Instead of storing a token count plus a refill timestamp (two values that
+ * would need a lock to update together), the bucket stores one number: the
+ * time at which it will be completely full again. Taking a token pushes that
+ * time forward by one emission interval with a single CAS.
+ * This is the GCRA formulation of a token bucket.
+ */
+class TokenBucket {
+    private final AtomicLong fullAt;
+
+    TokenBucket(long nowNanos) {
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Try to take one token
+     * @param nowNanos - Current System.nanoTime()
+     * @param emissionInterval - Nanos needed to refill one token
+     * @param burstTolerance - Nanos of credit a full bucket holds beyond one token
+     * @return 0 if a token was taken, otherwise nanos until one becomes available
+     */
+    long tryAcquire(long nowNanos, long emissionInterval, long burstTolerance) {
+        while (true) {
+            long current = fullAt.get();
+            long start = Math.max(current, nowNanos);
+            long allowedAt = start - burstTolerance;
+
+            if (nowNanos < allowedAt) {
+                return allowedAt - nowNanos;
+            }
+
+            if (fullAt.compareAndSet(current, start + emissionInterval)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * A full bucket carries no state worth keeping and can be dropped
+     */
+    boolean isIdle(long nowNanos) {
+        return fullAt.get() - nowNanos <= 0;
+    }
+}
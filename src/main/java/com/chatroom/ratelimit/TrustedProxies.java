@@ -0,0 +1,150 @@
+package com.chatroom.ratelimit;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TrustedProxies - Which peers may tell us the client address in X-Forwarded-For
+ *
+ * X-Forwarded-For is just a request header: a client that talks to the
+ * server directly can put any address in it. It is only honored when the
+ * TCP peer is one of the configured proxies (TRUSTED_PROXIES, e.g.
+ * "10.0.0.0/8,127.0.0.1"). Even then only the right end of the header is
+ * reliable, because each proxy appends the address it received the request
+ * from and the client controls everything to the left. The client is the
+ * right-most entry that is not itself a trusted proxy.
+ *
+ * Addresses are parsed as literals only; nothing here does a DNS lookup.
+ */
+public class TrustedProxies {
+    private final List<byte[]> networks = new ArrayList<>();
+    private final List<Integer> prefixLengths = new ArrayList<>();
+
+    /**
+     * @param spec - Comma-separated IPs and CIDR ranges, empty trusts no one
+     */
+    public TrustedProxies(String spec) {
+        if (spec == null) {
+            return;
+        }
+        for (String part : spec.split(",")) {
+            String entry = part.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+
+            int slash = entry.indexOf('/');
+            byte[] address = parseLiteral(slash >= 0 ? entry.substring(0, slash) : entry);
+            if (address == null) {
+                throw new IllegalArgumentException("Invalid trusted proxy: " + entry);
+            }
+            int prefix = address.length * 8;
+            if (slash >= 0) {
+                try {
+                    prefix = Integer.parseInt(entry.substring(slash + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid trusted proxy: " + entry);
+                }
+                if (prefix < 0 || prefix > address.length * 8) {
+                    throw new IllegalArgumentException("Invalid trusted proxy: " + entry);
+                }
+            }
+            networks.add(address);
+            prefixLengths.add(prefix);
+        }
+    }
+
+    public boolean isEmpty() {
+        return networks.isEmpty();
+    }
+
+    public boolean contains(String address) {
+        byte[] bytes = parseLiteral(address);
+        if (bytes == null) {
+            return false;
+        }
+        for (int i = 0; i < networks.size(); i++) {
+            if (matches(networks.get(i), prefixLengths.get(i), bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Address of the client that sent the request
+     * @param peer - Socket address of the connection
+     * @param forwardedFor - X-Forwarded-For header, may be null
+     */
+    public String clientIp(String peer, String forwardedFor) {
+        if (forwardedFor == null || forwardedFor.isBlank() || !contains(peer)) {
+            return peer;
+        }
+
+        String[] hops = forwardedFor.split(",");
+        String client = peer;
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (hop.isEmpty()) {
+                continue;
+            }
+            client = hop;
+            if (!contains(hop)) {
+                break;
+            }
+        }
+        return client;
+    }
+
+    private static boolean matches(byte[] network, int prefix, byte[] address) {
+        if (network.length != address.length) {
+            return false;
+        }
+        int fullBytes = prefix / 8;
+        for (int i = 0; i < fullBytes; i++) {
+            if (network[i] != address[i]) {
+                return false;
+            }
+        }
+        int remainingBits = prefix % 8;
+        if (remainingBits == 0) {
+            return true;
+        }
+        int mask = 0xFF << (8 - remainingBits);
+        return (network[fullBytes] & mask) == (address[fullBytes] & mask);
+    }
+
+    /**
+     * IPv4 or IPv6 literal to bytes, null for anything else (hostnames included)
+     */
+    private static byte[] parseLiteral(String value) {
+        if (value == null) {
+            return null;
+        }
+        String literal = value.trim();
+        if (literal.startsWith("[") && literal.endsWith("]")) {
+            literal = literal.substring(1, literal.length() - 1);
+        }
+        if (literal.isEmpty() || (literal.indexOf('.') < 0 && literal.indexOf(':') < 0)) {
+            return null;
+        }
+        // Hex digits only in IPv6, otherwise "cafe.be" would be looked up as a hostname
+        boolean ipv6 = literal.indexOf(':') >= 0;
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            boolean allowed = (c >= '0' && c <= '9') || c == '.'
+                    || (ipv6 && (c == ':' || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')));
+            if (!allowed) {
+                return null;
+            }
+        }
+        try {
+            // A literal never triggers a lookup
+            return InetAddress.getByName(literal).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.chatroom.repository;
+
+import com.chatroom.model.Message;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AsyncMessageStore - MessageStore calls as CompletableFutures on the DatabaseExecutor
+ *
+ * Same operations and semantics as {@link MessageStore}; failures (the
+ * store's RuntimeExceptions, or a full database queue) complete the future
+ * exceptionally.
+ */
+public class AsyncMessageStore {
+    private final MessageStore store;
+    private final DatabaseExecutor executor;
+
+    public AsyncMessageStore(MessageStore store, DatabaseExecutor executor) {
+        this.store = store;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Message> save(Message message) {
+        return executor.supply(() -> store.save(message));
+    }
+
+    public CompletableFuture<List<Message>> saveAll(List<Message> messages) {
+        return executor.supply(() -> store.saveAll(messages));
+    }
+
+    public CompletableFuture<Optional<Message>> findById(Long id) {
+        return executor.supply(() -> store.findById(id));
+    }
+
+    public CompletableFuture<Map<Long, Message>> findAllById(Collection<Long> ids) {
+        return executor.supply(() -> store.findAllById(ids));
+    }
+
+    public CompletableFuture<List<Message>> findByUserId(Long userId) {
+        return executor.supply(() -> store.findByUserId(userId));
+    }
+
+    public CompletableFuture<List<Message>> findPageBefore(Long beforeId, int limit) {
+        return executor.supply(() -> store.findPageBefore(beforeId, limit));
+    }
+
+    public CompletableFuture<List<Message>> findConversation(Long userId, Long otherUserId, Long beforeId, int limit) {
+        return executor.supply(() -> store.findConversation(userId, otherUserId, beforeId, limit));
+    }
+
+    public CompletableFuture<Optional<Message>> findByIdempotencyKey(Long userId, String idempotencyKey) {
+        return executor.supply(() -> store.findByIdempotencyKey(userId, idempotencyKey));
+    }
+
+    public CompletableFuture<Void> deleteById(Long id) {
+        return executor.run(() -> store.deleteById(id));
+    }
+
+    public CompletableFuture<Integer> deleteAllById(Collection<Long> ids) {
+        return executor.supply(() -> store.deleteAllById(ids));
+    }
+}
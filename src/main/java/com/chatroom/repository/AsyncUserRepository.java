@@ -0,0 +1,40 @@
+package com.chatroom.repository;
+
+import com.chatroom.model.User;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AsyncUserRepository - UserRepository calls as CompletableFutures on the DatabaseExecutor
+ */
+public class AsyncUserRepository {
+    private final UserRepository repository;
+    private final DatabaseExecutor executor;
+
+    public AsyncUserRepository(UserRepository repository, DatabaseExecutor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<User> save(User user) {
+        return executor.supply(() -> repository.save(user));
+    }
+
+    public CompletableFuture<Optional<User>> findByUsername(String username) {
+        return executor.supply(() -> repository.findByUsername(username));
+    }
+
+    public CompletableFuture<Optional<User>> findById(Long id) {
+        return executor.supply(() -> repository.findById(id));
+    }
+
+    public CompletableFuture<Map<Long, User>> findAllById(Collection<Long> ids) {
+        return executor.supply(() -> repository.findAllById(ids));
+    }
+
+    public CompletableFuture<Boolean> existsByUsername(String username) {
+        return executor.supply(() -> repository.existsByUsername(username));
+    }
+}
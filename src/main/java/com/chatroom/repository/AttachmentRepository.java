@@ -0,0 +1,185 @@
+package com.chatroom.repository;
+
+import com.chatroom.model.Attachment;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * AttachmentRepository - Metadata of files attached to messages
+ * Only metadata lives in SQLite, the bytes are in the BlobStore.
+ */
+public class AttachmentRepository {
+    // Column order expected by ATTACHMENT_MAPPER
+    private static final String COLUMNS = "id, message_id, user_id, sha256, filename, content_type, size, created_at";
+
+    static final RowMapper<Attachment> ATTACHMENT_MAPPER = rs -> new Attachment(
+            rs.getLong(1),
+            rs.getLong(2),
+            rs.getLong(3),
+            rs.getString(4),
+            rs.getString(5),
+            rs.getString(6),
+            rs.getLong(7),
+            LocalDateTime.parse(rs.getString(8))
+    );
+
+    private Database database;
+
+    public AttachmentRepository(Database database) {
+        this.database = database;
+        createTable();
+    }
+
+    /**
+     * Create message_attachments table linked to messages
+     * The indexes serve "all attachments of a message" lookups and the
+     * "is this blob still used" check when attachments are deleted.
+     */
+    private void createTable() {
+        String sql = "CREATE TABLE IF NOT EXISTS message_attachments (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "message_id INTEGER NOT NULL, " +
+                "user_id INTEGER NOT NULL, " +
+                "sha256 TEXT NOT NULL, " +
+                "filename TEXT NOT NULL, " +
+                "content_type TEXT NOT NULL, " +
+                "size INTEGER NOT NULL, " +
+                "created_at TEXT NOT NULL, " +
+                "FOREIGN KEY (message_id) REFERENCES messages(id), " +
+                "FOREIGN KEY (user_id) REFERENCES users(id))";
+
+        String messageIndex = "CREATE INDEX IF NOT EXISTS idx_attachments_message " +
+                "ON message_attachments (message_id, id)";
+
+        String blobIndex = "CREATE INDEX IF NOT EXISTS idx_attachments_sha256 " +
+                "ON message_attachments (sha256)";
+
+        try {
+            database.execute(connection -> {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute(sql);
+                    stmt.execute(messageIndex);
+                    return stmt.execute(blobIndex);
+                }
+            });
+            System.out.println("✅ Attachments table ready");
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to create attachments table", e);
+        }
+    }
+
+    /**
+     * Save attachment metadata
+     * @param attachment - Attachment without ID
+     * @return Attachment with generated ID
+     */
+    public Attachment save(Attachment attachment) {
+        String sql = "INSERT INTO message_attachments " +
+                "(message_id, user_id, sha256, filename, content_type, size, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?) RETURNING id";
+
+        try {
+            return database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setLong(1, attachment.getMessageId());
+                pstmt.setLong(2, attachment.getUserId());
+                pstmt.setString(3, attachment.getSha256());
+                pstmt.setString(4, attachment.getFilename());
+                pstmt.setString(5, attachment.getContentType());
+                pstmt.setLong(6, attachment.getSize());
+                pstmt.setString(7, attachment.getCreatedAt().toString());
+
+                attachment.setId(Database.queryLong(pstmt, 0L));
+                return attachment;
+            });
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save attachment", e);
+        }
+    }
+
+    public Optional<Attachment> findById(Long id) {
+        String sql = "SELECT " + COLUMNS + " FROM message_attachments WHERE id = ?";
+
+        try {
+            return database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setLong(1, id);
+                return Database.queryFirst(pstmt, ATTACHMENT_MAPPER);
+            });
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to find attachment", e);
+        }
+    }
+
+    /**
+     * All attachments of one message, in upload order
+     */
+    public List<Attachment> findByMessageId(Long messageId) {
+        String sql = "SELECT " + COLUMNS + " FROM message_attachments WHERE message_id = ? ORDER BY id ASC";
+
+        try {
+            return database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setLong(1, messageId);
+                return Database.queryList(pstmt, ATTACHMENT_MAPPER);
+            });
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to fetch message attachments", e);
+        }
+    }
+
+    /**
+     * Delete the attachments of deleted messages in one statement
+     * @param messageIds - Message IDs
+     * @return Blob hashes of the deleted rows (may repeat)
+     */
+    public List<String> deleteByMessageIds(Collection<Long> messageIds) {
+        if (messageIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // IN list length varies per call, so this statement is not cached
+        String sql = "DELETE FROM message_attachments WHERE message_id IN (" +
+                Database.placeholders(messageIds.size()) + ") RETURNING sha256";
+
+        try {
+            return database.execute(connection -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    int index = 1;
+                    for (Long messageId : messageIds) {
+                        pstmt.setLong(index++, messageId);
+                    }
+                    return Database.queryList(pstmt, rs -> rs.getString(1));
+                }
+            });
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete message attachments", e);
+        }
+    }
+
+    /**
+     * Whether any attachment still points at a blob, served by idx_attachments_sha256
+     */
+    public boolean isBlobReferenced(String sha256) {
+        String sql = "SELECT 1 FROM message_attachments WHERE sha256 = ? LIMIT 1";
+
+        try {
+            return database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setString(1, sha256);
+                return Database.queryFirst(pstmt, rs -> rs.getInt(1)).isPresent();
+            });
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to check blob references", e);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.chatroom.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * BlobStore - Content-addressed files on disk
+ *
+ * Every blob is stored once under the SHA-256 of its bytes:
+ *
+ *   attachments/ab/ab12cd...ef   (first two hex digits as a fan-out folder)
+ *
+ * Uploads stream through a fixed 64KB buffer into a temp file while the
+ * hash is computed, then the temp file is moved into place. If a blob with
+ * the same hash already exists the temp file is simply dropped, so the
+ * same file uploaded many times takes the disk space of one.
+ *
+ * Storing is split in two steps: receive() streams and hashes into a temp
+ * file, commit() moves it into place. The caller can then publish the file
+ * and save the row that references it under one lock, which a delete of an
+ * unreferenced blob also takes.
+ */
+public class BlobStore {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final Path tempDirectory;
+
+    /**
+     * Result of storing a blob
+     */
+    public static class StoredBlob {
+        private final String sha256;
+        private final long size;
+        private final boolean duplicate;
+
+        StoredBlob(String sha256, long size, boolean duplicate) {
+            this.sha256 = sha256;
+            this.size = size;
+            this.duplicate = duplicate;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return true if these bytes were already stored
+         */
+        public boolean isDuplicate() {
+            return duplicate;
+        }
+    }
+
+    public BlobStore(String directory) {
+        this.directory = Paths.get(directory);
+        this.tempDirectory = this.directory.resolve("tmp");
+
+        try {
+            Files.createDirectories(tempDirectory);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create attachment directory " + directory, e);
+        }
+    }
+
+    /**
+     * Uploaded content in a temp file, hashed but not yet in the store
+     */
+    public class PendingBlob {
+        private final Path temp;
+        private final String sha256;
+        private final long size;
+
+        PendingBlob(Path temp, String sha256, long size) {
+            this.temp = temp;
+            this.sha256 = sha256;
+            this.size = size;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        /**
+         * Move the content into place, or drop it if the same bytes are already stored
+         */
+        public StoredBlob commit() throws IOException {
+            try {
+                Path target = pathOf(sha256);
+                if (Files.exists(target)) {
+                    Files.delete(temp);
+                    return new StoredBlob(sha256, size, true);
+                }
+
+                Files.createDirectories(target.getParent());
+                // Same hash means same bytes, so losing a race to another upload is harmless
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                return new StoredBlob(sha256, size, false);
+
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+        }
+
+        public void discard() {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                System.err.println("❌ Failed to remove upload temp file: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Copy a stream into a temp file of the store, hashing it on the way
+     * @param in - Content, read to the end
+     * @param maxBytes - Upload limit
+     * @return Content to commit (or discard)
+     * @throws IllegalArgumentException if the content is larger than maxBytes
+     */
+    public PendingBlob receive(InputStream in, long maxBytes) throws IOException {
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(tempDirectory, "upload-", ".part");
+
+        try {
+            long size = 0;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxBytes) {
+                        throw new IllegalArgumentException("Attachment too large (max " + maxBytes + " bytes)");
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            return new PendingBlob(temp, HexFormat.of().formatHex(digest.digest()), size);
+
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Remove a blob that nothing references any more
+     * @return true if a file was deleted
+     */
+    public boolean delete(String sha256) throws IOException {
+        return Files.deleteIfExists(pathOf(sha256));
+    }
+
+    /**
+     * File holding a blob (may not exist)
+     * @param sha256 - Lower-case hex hash
+     */
+    public Path pathOf(String sha256) {
+        if (sha256.length() != 64 || !sha256.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+            throw new IllegalArgumentException("Invalid blob hash");
+        }
+        return directory.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
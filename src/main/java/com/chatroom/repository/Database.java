@@ -0,0 +1,219 @@
+package com.chatroom.repository;
+
+import com.chatroom.jfr.DatabaseQueryEvent;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Database - Owns the shared SQLite connection used by the repositories
+ *
+ * SQLite only has one connection here, so every repository call is
+ * serialized through a ReentrantLock. A ReentrantLock (instead of
+ * synchronized) lets virtual threads unmount while they wait for the
+ * connection, so a slow query never pins the carrier threads of the
+ * other waiting requests.
+ *
+ * Statements with fixed SQL are prepared once and cached for the lifetime of
+ * the connection (see {@link #prepare(String)}), so a repeated query only binds
+ * parameters and steps through SQLite's already compiled statement.
+ *
+ * Each call is a DatabaseQueryEvent for JFR (SQL, rows, lock wait, duration).
+ */
+public class Database {
+    private final Connection connection;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Guarded by lock, keyed by SQL text
+    private final Map<String, PreparedStatement> statementCache = new HashMap<>();
+
+    // Event of the call running on this thread, only set while JFR records DatabaseQueryEvent
+    private static final ThreadLocal<DatabaseQueryEvent> currentQuery = new ThreadLocal<>();
+
+    public Database(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Unit of work that runs against the shared connection
+     */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Run work while holding the connection lock
+     * @param work - JDBC code to execute
+     * @return Whatever the work returns
+     */
+    public <T> T execute(SqlWork<T> work) throws SQLException {
+        return run(work, false);
+    }
+
+    /**
+     * Run work as a single transaction while holding the connection lock
+     * Commits if the work returns, rolls back if it throws.
+     */
+    public <T> T executeInTransaction(SqlWork<T> work) throws SQLException {
+        return run(work, true);
+    }
+
+    /**
+     * Lock, run, and record the call as a DatabaseQueryEvent when JFR is recording it
+     */
+    private <T> T run(SqlWork<T> work, boolean transaction) throws SQLException {
+        long start = System.nanoTime();
+        DatabaseQueryEvent event = new DatabaseQueryEvent();
+        event.begin();
+        lock.lock();
+
+        DatabaseQueryEvent outer = null;
+        if (event.isEnabled()) {
+            event.lockWait = System.nanoTime() - start;
+            event.transaction = transaction;
+            outer = currentQuery.get();
+            currentQuery.set(event);
+        }
+
+        try {
+            return transaction ? runInTransaction(work) : work.run(connection);
+        } finally {
+            lock.unlock();
+
+            if (event.isEnabled()) {
+                currentQuery.set(outer);
+                if (event.sql == null) {
+                    event.sql = "(dynamic)";
+                }
+                event.commit();
+            }
+        }
+    }
+
+    private <T> T runInTransaction(SqlWork<T> work) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            T result = work.run(connection);
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Get the cached prepared statement for a SQL string
+     * Only valid inside {@link #execute} / {@link #executeInTransaction}. The
+     * statement is shared, so callers must not close it and must close every
+     * ResultSet they open on it. SQL built per call (like IN lists of varying
+     * size) should use connection.prepareStatement instead.
+     * @param sql - Fixed SQL text
+     * @return Statement with cleared parameters and batch
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        if (!lock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Cached statements can only be used while holding the connection lock");
+        }
+
+        DatabaseQueryEvent event = currentQuery.get();
+        if (event != null && event.sql == null) {
+            event.sql = sql;
+        }
+
+        PreparedStatement pstmt = statementCache.get(sql);
+        if (pstmt == null || pstmt.isClosed()) {
+            pstmt = connection.prepareStatement(sql);
+            statementCache.put(sql, pstmt);
+        } else {
+            pstmt.clearParameters();
+            pstmt.clearBatch();
+        }
+        return pstmt;
+    }
+
+    /**
+     * Run a query and map every row
+     */
+    public static <T> List<T> queryList(PreparedStatement pstmt, RowMapper<T> mapper) throws SQLException {
+        List<T> results = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                results.add(mapper.map(rs));
+            }
+        }
+        countRows(results.size());
+        return results;
+    }
+
+    /**
+     * Run a query and map the first row
+     */
+    public static <T> Optional<T> queryFirst(PreparedStatement pstmt, RowMapper<T> mapper) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
+            Optional<T> result = rs.next() ? Optional.of(mapper.map(rs)) : Optional.empty();
+            countRows(result.isPresent() ? 1 : 0);
+            return result;
+        }
+    }
+
+    /**
+     * Run a query that returns a single number (count, generated id, ...)
+     * @return Value of the first column, or the default if there are no rows
+     */
+    public static long queryLong(PreparedStatement pstmt, long defaultValue) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
+            boolean found = rs.next();
+            countRows(found ? 1 : 0);
+            return found ? rs.getLong(1) : defaultValue;
+        }
+    }
+
+    private static void countRows(int rows) {
+        DatabaseQueryEvent event = currentQuery.get();
+        if (event != null) {
+            event.rows += rows;
+        }
+    }
+
+    /**
+     * Build "?, ?, ?" for an IN clause
+     */
+    public static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public void close() throws SQLException {
+        lock.lock();
+        try {
+            for (PreparedStatement pstmt : statementCache.values()) {
+                pstmt.close();
+            }
+            statementCache.clear();
+
+            if (!connection.isClosed()) {
+                connection.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.chatroom.repository;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * DatabaseExecutor - Small, bounded thread pool that runs repository calls
+ *
+ * The async repository facades submit their work here, so callers that
+ * must not block (WebSocket callbacks, request threads composing several
+ * lookups) get a CompletableFuture instead of waiting on JDBC themselves.
+ *
+ * There is only one SQLite connection, so a few threads are enough: one
+ * runs while the others have the next call ready the moment the lock is
+ * free. The queue is bounded; when it is full the returned future fails
+ * with RejectedExecutionException instead of piling up work.
+ *
+ * Futures complete on the database threads. Continuations that do more
+ * than map the result (BCrypt, socket writes) should use the *Async
+ * variants so they don't hold up the next query.
+ */
+public class DatabaseExecutor implements AutoCloseable {
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threads - Worker threads
+     * @param queueSize - Calls that may wait for a worker
+     */
+    public DatabaseExecutor(int threads, int queueSize) {
+        if (threads < 1 || queueSize < 1) {
+            throw new IllegalArgumentException("Database executor settings must be positive");
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread thread = new Thread(r, "db-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Run a repository call on the database threads
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Database queue is full", e));
+        }
+    }
+
+    /**
+     * Same as supply, for calls without a result
+     */
+    public CompletableFuture<Void> run(Runnable work) {
+        return supply(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+
+    public long getCompleted() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * Finish queued calls (up to 5 seconds), then stop
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,840 @@
+package com.chatroom.repository;
+
+import com.chatroom.model.Message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * LogMessageStore - Append-only, memory-mapped message log
+ *
+ * Chat messages are written once and read in order, so instead of SQLite
+ * rows this store appends records to fixed-size segment files that are
+ * memory-mapped:
+ *
+ *   segment-000000.log  [len][crc][MSG id user ts name text][len][crc][TOMB id]...
+ *
+ * Direct messages use a DM record: the MSG layout followed by the recipient id.
+ *
+ * Every segment after the first starts with a SEGMENT_START record holding
+ * the next id at the time it was created, so ids are never reused even if
+ * compaction removes every message of the newest sealed segment.
+ *
+ * Indexes (rebuilt from the log on startup):
+ * - offset index: message id -> (segment, offset) in a plain long[],
+ *   ids are dense so lookup is an array access
+ * - user index: user id -> ascending list of room message ids
+ * - conversation index: unordered user pair -> ascending list of direct message ids
+ *
+ * Deletes append a tombstone record. A background task rewrites sealed
+ * segments once at least half of their records are dead.
+ *
+ * Appends are flushed to disk by a background task every second (and on
+ * close), so a crash can lose the last second of messages.
+ *
+ * Ids follow append order, not timestamps (imports can carry old ones), so
+ * the "oldest first" reads sort by (timestamp, id) like SQLite's ORDER BY.
+ */
+public class LogMessageStore implements MessageStore, AutoCloseable {
+    private static final byte TYPE_MESSAGE = 1;
+    private static final byte TYPE_TOMBSTONE = 2;
+    private static final byte TYPE_SEGMENT_START = 3;
+    private static final byte TYPE_DIRECT_MESSAGE = 4;
+    private static final int RECORD_HEADER = 8; // body length + crc
+    private static final Comparator<Message> TIMESTAMP_ORDER =
+            Comparator.comparing(Message::getTimestamp).thenComparing(Message::getId);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService background;
+
+    // Segments by number, null once a segment has been compacted away entirely
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+
+    // positions[id] = ((segment << 32) | offset) + 1, 0 = missing or deleted
+    private long[] positions = new long[1024];
+    private final Map<Long, LongList> userIndex = new HashMap<>();
+    private final Map<Long, LongList> conversationIndex = new HashMap<>();
+    private long nextId = 1;
+
+    /**
+     * @param directory - Folder holding segment files
+     * @param segmentSize - Bytes per segment before rolling to a new file
+     */
+    public LogMessageStore(String directory, int segmentSize) {
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+
+        try {
+            Files.createDirectories(this.directory);
+            recover();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open message log", e);
+        }
+
+        this.background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "message-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        background.scheduleWithFixedDelay(this::flush, 1, 1, TimeUnit.SECONDS);
+        background.scheduleWithFixedDelay(this::compactSafely, 30, 30, TimeUnit.SECONDS);
+
+        System.out.println("✅ Message log ready: " + (nextId - 1) + " messages in " + this.directory);
+    }
+
+    /**
+     * One memory-mapped segment file
+     */
+    private static class Segment {
+        final int number;
+        final Path file;
+        final FileChannel channel;
+        MappedByteBuffer buffer;
+        int writePosition;
+        long firstMessageId = Long.MAX_VALUE;
+        int liveRecords;
+        int deadRecords;
+
+        Segment(int number, Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Growable array of primitive longs (avoids boxing in the user index)
+     */
+    private static class LongList {
+        long[] values = new long[8];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * Key for the conversation between two users, the same for both directions
+     * User ids are SQLite rowids and stay far below 2^32.
+     */
+    private static long conversationKey(long userId, long otherUserId) {
+        return (Math.min(userId, otherUserId) << 32) | Math.max(userId, otherUserId);
+    }
+
+    private void index(Message message) {
+        if (message.isDirect()) {
+            conversationIndex.computeIfAbsent(conversationKey(message.getUserId(), message.getRecipientId()),
+                    k -> new LongList()).add(message.getId());
+        } else {
+            userIndex.computeIfAbsent(message.getUserId(), k -> new LongList()).add(message.getId());
+        }
+    }
+
+    /**
+     * Undo index() for the most recently indexed message
+     */
+    private void unindex(Message message) {
+        if (message.getId() == null) {
+            return;
+        }
+        Map<Long, LongList> target = message.isDirect() ? conversationIndex : userIndex;
+        long key = message.isDirect() ? conversationKey(message.getUserId(), message.getRecipientId())
+                : message.getUserId();
+        LongList ids = target.get(key);
+        if (ids != null && ids.size > 0 && ids.values[ids.size - 1] == message.getId()) {
+            ids.size--;
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // MessageStore
+    // ---------------------------------------------------------------------
+
+    @Override
+    public Message save(Message message) {
+        lock.writeLock().lock();
+        try {
+            long id = nextId;
+            byte[] body = encodeMessage(id, message);
+            int offset = append(body);
+
+            nextId++;
+            message.setId(id);
+            setPosition(id, active.number, offset);
+            index(message);
+            active.firstMessageId = Math.min(active.firstMessageId, id);
+            active.liveRecords++;
+            return message;
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to save message", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * All records are encoded first and then appended to one segment under a
+     * single write lock hold, so readers see either none or all of the batch.
+     * If an append fails, the records already written are cut off again and
+     * nextId is restored: the store is left as if the batch never happened.
+     * (A crash in the middle of the batch can still keep a prefix of it, the
+     * same way it can lose the last second of writes.)
+     */
+    @Override
+    public List<Message> saveAll(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return messages;
+        }
+
+        lock.writeLock().lock();
+        try {
+            byte[][] bodies = new byte[messages.size()][];
+            int batchSize = 0;
+            for (int i = 0; i < messages.size(); i++) {
+                bodies[i] = encodeMessage(nextId + i, messages.get(i));
+                batchSize += RECORD_HEADER + bodies[i].length;
+            }
+
+            // Roll over up front, so the batch never spans a sealed segment
+            // and rolling back only means moving the write position
+            if (active.writePosition + batchSize > segmentSize) {
+                // A new segment starts with the 9-byte SEGMENT_START body
+                if (RECORD_HEADER + 9 + batchSize > segmentSize) {
+                    throw new IllegalArgumentException("Batch of " + batchSize +
+                            " bytes does not fit in one log segment of " + segmentSize + " bytes");
+                }
+                rollOver();
+            }
+
+            long startId = nextId;
+            int startOffset = active.writePosition;
+            long startFirstMessageId = active.firstMessageId;
+            int written = 0;
+            try {
+                for (; written < messages.size(); written++) {
+                    Message message = messages.get(written);
+                    int offset = writeRecord(bodies[written]);
+
+                    nextId++;
+                    message.setId(startId + written);
+                    setPosition(message.getId(), active.number, offset);
+                    index(message);
+                }
+                active.firstMessageId = Math.min(active.firstMessageId, startId);
+                active.liveRecords += written;
+                return messages;
+
+            } catch (RuntimeException e) {
+                for (int i = Math.min(written, messages.size() - 1); i >= 0; i--) {
+                    unindex(messages.get(i));
+                    messages.get(i).setId(null);
+                }
+                for (long id = startId; id < nextId; id++) {
+                    positions[(int) id] = 0;
+                }
+                // A zero length marks the end of the log for recovery
+                active.buffer.putInt(startOffset, 0);
+                active.writePosition = startOffset;
+                active.firstMessageId = startFirstMessageId;
+                nextId = startId;
+                throw e;
+            }
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to save messages", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> findAllOrderByTimestamp() {
+        lock.readLock().lock();
+        try {
+            List<Message> messages = new ArrayList<>();
+            for (long id = 1; id < nextId; id++) {
+                Message message = read(id);
+                if (message != null && !message.isDirect()) {
+                    messages.add(message);
+                }
+            }
+            // Almost always sorted already, which TimSort handles in one pass
+            messages.sort(TIMESTAMP_ORDER);
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> findByUserId(Long userId) {
+        lock.readLock().lock();
+        try {
+            List<Message> messages = new ArrayList<>();
+            LongList ids = userIndex.get(userId);
+            if (ids != null) {
+                for (int i = 0; i < ids.size; i++) {
+                    Message message = read(ids.values[i]);
+                    if (message != null) {
+                        messages.add(message);
+                    }
+                }
+            }
+            messages.sort(TIMESTAMP_ORDER);
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Message> findById(Long id) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(read(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<Long, Message> findAllById(Collection<Long> ids) {
+        lock.readLock().lock();
+        try {
+            Map<Long, Message> messages = new HashMap<>();
+            for (Long id : ids) {
+                Message message = read(id);
+                if (message != null) {
+                    messages.put(id, message);
+                }
+            }
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        lock.writeLock().lock();
+        try {
+            int deleted = 0;
+            for (Long id : ids) {
+                if (getPosition(id) != 0) {
+                    deleteById(id);
+                    deleted++;
+                }
+            }
+            return deleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        lock.writeLock().lock();
+        try {
+            long position = getPosition(id);
+            if (position == 0) {
+                return;
+            }
+
+            append(encodeTombstone(id));
+            active.deadRecords++;
+
+            Segment target = segments.get(segmentOf(position));
+            target.liveRecords--;
+            target.deadRecords++;
+            positions[id.intValue()] = 0;
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete message", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long findMaxId() {
+        lock.readLock().lock();
+        try {
+            return nextId - 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> findPageBefore(Long beforeId, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Message> page = new ArrayList<>(limit);
+            long start = beforeId != null ? Math.min(beforeId - 1, nextId - 1) : nextId - 1;
+
+            for (long id = start; id >= 1 && page.size() < limit; id--) {
+                Message message = read(id);
+                if (message != null && !message.isDirect()) {
+                    page.add(message);
+                }
+            }
+
+            Collections.reverse(page);
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> findConversation(Long userId, Long otherUserId, Long beforeId, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Message> page = new ArrayList<>(limit);
+            LongList ids = conversationIndex.get(conversationKey(userId, otherUserId));
+            long cursor = beforeId != null ? beforeId : Long.MAX_VALUE;
+
+            if (ids != null) {
+                for (int i = ids.size - 1; i >= 0 && page.size() < limit; i--) {
+                    if (ids.values[i] < cursor) {
+                        Message message = read(ids.values[i]);
+                        if (message != null) {
+                            page.add(message);
+                        }
+                    }
+                }
+            }
+
+            Collections.reverse(page);
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Records
+    // ---------------------------------------------------------------------
+
+    private static byte[] encodeMessage(long id, Message message) {
+        byte[] username = message.getUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] text = message.getMessageText().getBytes(StandardCharsets.UTF_8);
+        LocalDateTime timestamp = message.getTimestamp();
+
+        int recipientLength = message.isDirect() ? 8 : 0;
+
+        ByteBuffer body = ByteBuffer.allocate(1 + 8 + 8 + 8 + 4 + 4 + username.length + 4 + text.length + recipientLength);
+        body.put(message.isDirect() ? TYPE_DIRECT_MESSAGE : TYPE_MESSAGE);
+        body.putLong(id);
+        body.putLong(message.getUserId());
+        body.putLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+        body.putInt(timestamp.getNano());
+        body.putInt(username.length).put(username);
+        body.putInt(text.length).put(text);
+        if (message.isDirect()) {
+            body.putLong(message.getRecipientId());
+        }
+        return body.array();
+    }
+
+    private static byte[] encodeTombstone(long id) {
+        return ByteBuffer.allocate(1 + 8).put(TYPE_TOMBSTONE).putLong(id).array();
+    }
+
+    private static byte[] encodeSegmentStart(long nextId) {
+        return ByteBuffer.allocate(1 + 8).put(TYPE_SEGMENT_START).putLong(nextId).array();
+    }
+
+    /**
+     * Decode a message record; all reads use absolute positions so the
+     * shared buffer can be read by many threads at once
+     */
+    private static Message decodeMessage(MappedByteBuffer buffer, int offset) {
+        int pos = offset + RECORD_HEADER + 1;
+        long id = buffer.getLong(pos);
+        long userId = buffer.getLong(pos + 8);
+        long epochSecond = buffer.getLong(pos + 16);
+        int nano = buffer.getInt(pos + 24);
+
+        int usernameLength = buffer.getInt(pos + 28);
+        byte[] username = new byte[usernameLength];
+        buffer.get(pos + 32, username);
+
+        int textLength = buffer.getInt(pos + 32 + usernameLength);
+        byte[] text = new byte[textLength];
+        buffer.get(pos + 36 + usernameLength, text);
+
+        Message message = new Message(id, userId,
+                new String(username, StandardCharsets.UTF_8),
+                new String(text, StandardCharsets.UTF_8),
+                LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC));
+        if (buffer.get(offset + RECORD_HEADER) == TYPE_DIRECT_MESSAGE) {
+            message.setRecipientId(buffer.getLong(pos + 36 + usernameLength + textLength));
+        }
+        return message;
+    }
+
+    private Message read(long id) {
+        long position = getPosition(id);
+        if (position == 0) {
+            return null;
+        }
+        return decodeMessage(segments.get(segmentOf(position)).buffer, offsetOf(position));
+    }
+
+    /**
+     * Append a record to the active segment, rolling over when it is full
+     * @return Offset of the record inside the active segment
+     */
+    private int append(byte[] body) throws IOException {
+        int recordSize = RECORD_HEADER + body.length;
+        if (active.writePosition + recordSize > segmentSize) {
+            rollOver();
+        }
+        return writeRecord(body);
+    }
+
+    /**
+     * Seal the active segment and continue in a new one
+     */
+    private void rollOver() throws IOException {
+        seal(active);
+        active = openSegment(active.number + 1, true);
+        segments.add(active);
+        writeRecord(encodeSegmentStart(nextId));
+    }
+
+    private int writeRecord(byte[] body) {
+        int recordSize = RECORD_HEADER + body.length;
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        int offset = active.writePosition;
+        active.buffer.putInt(offset, body.length);
+        active.buffer.putInt(offset + 4, (int) crc.getValue());
+        active.buffer.put(offset + RECORD_HEADER, body);
+        active.writePosition += recordSize;
+        return offset;
+    }
+
+    // ---------------------------------------------------------------------
+    // Offset index
+    // ---------------------------------------------------------------------
+
+    private long getPosition(long id) {
+        return (id >= 1 && id < positions.length) ? positions[(int) id] : 0;
+    }
+
+    private void setPosition(long id, int segment, int offset) {
+        if (id >= positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(positions.length * 2, (int) id + 1));
+        }
+        positions[(int) id] = (((long) segment << 32) | offset) + 1;
+    }
+
+    private static int segmentOf(long position) {
+        return (int) ((position - 1) >>> 32);
+    }
+
+    private static int offsetOf(long position) {
+        return (int) (position - 1);
+    }
+
+    // ---------------------------------------------------------------------
+    // Segments
+    // ---------------------------------------------------------------------
+
+    private Path segmentFile(int number) {
+        return directory.resolve(String.format("segment-%06d.log", number));
+    }
+
+    private Segment openSegment(int number, boolean writable) throws IOException {
+        Path file = segmentFile(number);
+        if (writable) {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long mapSize = Math.max(segmentSize, channel.size());
+            return new Segment(number, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, mapSize));
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        return new Segment(number, file, channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+
+    /**
+     * Make a full segment read-only and trim the preallocated tail
+     */
+    private void seal(Segment segment) throws IOException {
+        segment.buffer.force();
+        segment.channel.truncate(segment.writePosition);
+        segment.buffer = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.writePosition);
+    }
+
+    /**
+     * Rebuild the indexes by scanning every segment in order
+     * The scan of the last segment stops at the first empty or corrupt
+     * record, which becomes the new write position.
+     */
+    private void recover() throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.matches("segment-\\d{6}\\.log"))
+                    .forEach(name -> numbers.add(Integer.parseInt(name.substring(8, 14))));
+        }
+        Collections.sort(numbers);
+
+        if (numbers.isEmpty()) {
+            active = openSegment(0, true);
+            segments.add(active);
+            return;
+        }
+
+        int last = numbers.get(numbers.size() - 1);
+        for (int number = 0; number <= last; number++) {
+            if (!numbers.contains(number)) {
+                segments.add(null);
+                continue;
+            }
+
+            Segment segment = openSegment(number, number == last);
+            segments.add(segment);
+            scan(segment);
+        }
+
+        active = segments.get(segments.size() - 1);
+    }
+
+    private void scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+
+        while (offset + RECORD_HEADER <= buffer.limit()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER + length > buffer.limit()) {
+                break;
+            }
+
+            byte[] body = new byte[length];
+            buffer.get(offset + RECORD_HEADER, body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                System.err.println("⚠️ Corrupt record in " + segment.file + " at " + offset + ", truncating");
+                break;
+            }
+
+            long id = buffer.getLong(offset + RECORD_HEADER + 1);
+            if (body[0] == TYPE_MESSAGE || body[0] == TYPE_DIRECT_MESSAGE) {
+                setPosition(id, segment.number, offset);
+                if (body[0] == TYPE_MESSAGE) {
+                    userIndex.computeIfAbsent(buffer.getLong(offset + RECORD_HEADER + 9), k -> new LongList()).add(id);
+                } else {
+                    index(decodeMessage(buffer, offset));
+                }
+                segment.firstMessageId = Math.min(segment.firstMessageId, id);
+                segment.liveRecords++;
+                nextId = Math.max(nextId, id + 1);
+            } else if (body[0] == TYPE_SEGMENT_START) {
+                nextId = Math.max(nextId, id);
+            } else {
+                long position = getPosition(id);
+                if (position != 0) {
+                    Segment target = segments.get(segmentOf(position));
+                    target.liveRecords--;
+                    target.deadRecords++;
+                    positions[(int) id] = 0;
+                }
+                segment.deadRecords++;
+            }
+            offset += RECORD_HEADER + length;
+        }
+
+        segment.writePosition = offset;
+    }
+
+    // ---------------------------------------------------------------------
+    // Background work
+    // ---------------------------------------------------------------------
+
+    private void flush() {
+        lock.readLock().lock();
+        try {
+            active.buffer.force();
+        } catch (Exception e) {
+            System.err.println("❌ Failed to flush message log: " + e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void compactSafely() {
+        try {
+            compact();
+        } catch (Exception e) {
+            System.err.println("❌ Message log compaction failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Rewrite sealed segments where at least half the records are dead
+     *
+     * Live messages are copied to a new file under the read lock (readers keep
+     * going, writers wait), then the file is swapped in and the offset index
+     * updated under the write lock. Tombstones for messages in older segments
+     * are kept so those messages stay deleted after a restart.
+     */
+    public void compact() throws IOException {
+        List<Segment> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments) {
+                if (segment != null && segment != active &&
+                        segment.deadRecords > 0 && segment.deadRecords >= segment.liveRecords) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        for (Segment segment : candidates) {
+            compact(segment);
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        Path compacted = Paths.get(segment.file + ".compact");
+        Map<Long, Integer> moved = new HashMap<>();
+        int kept = 0;
+        int keptTombstones = 0;
+        int size = 0;
+
+        lock.readLock().lock();
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = segment.buffer;
+            int offset = 0;
+
+            while (offset < segment.writePosition) {
+                int recordSize = RECORD_HEADER + buffer.getInt(offset);
+                byte type = buffer.get(offset + RECORD_HEADER);
+                long id = buffer.getLong(offset + RECORD_HEADER + 1);
+
+                boolean keep;
+                if (type == TYPE_MESSAGE || type == TYPE_DIRECT_MESSAGE) {
+                    keep = getPosition(id) == (((long) segment.number << 32) | offset) + 1;
+                } else if (type == TYPE_TOMBSTONE) {
+                    keep = id < segment.firstMessageId;
+                } else {
+                    keep = true;
+                }
+
+                if (keep) {
+                    ByteBuffer record = buffer.slice(offset, recordSize);
+                    while (record.hasRemaining()) {
+                        out.write(record);
+                    }
+                    if (type == TYPE_MESSAGE || type == TYPE_DIRECT_MESSAGE) {
+                        moved.put(id, size);
+                        kept++;
+                    } else if (type == TYPE_TOMBSTONE) {
+                        keptTombstones++;
+                    }
+                    size += recordSize;
+                }
+                offset += recordSize;
+            }
+            out.force(true);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (size == 0) {
+                Files.delete(compacted);
+                Files.delete(segment.file);
+                segments.set(segment.number, null);
+            } else {
+                Files.move(compacted, segment.file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                Segment replacement = openSegment(segment.number, false);
+                replacement.writePosition = size;
+                replacement.firstMessageId = segment.firstMessageId;
+                // Remaining tombstones cover older segments and cannot be reclaimed here
+                replacement.deadRecords = 0;
+
+                for (Map.Entry<Long, Integer> entry : moved.entrySet()) {
+                    long id = entry.getKey();
+                    // Skip messages deleted while we were copying
+                    if (getPosition(id) != 0) {
+                        setPosition(id, segment.number, entry.getValue());
+                        replacement.liveRecords++;
+                    }
+                }
+                segments.set(segment.number, replacement);
+            }
+            segment.channel.close();
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        System.out.println("🧹 Compacted " + segment.file.getFileName() + ": kept " + kept +
+                " messages, " + keptTombstones + " tombstones");
+    }
+
+    @Override
+    public void close() {
+        background.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            active.buffer.force();
+            for (Segment segment : segments) {
+                if (segment != null) {
+                    segment.channel.close();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Error closing message log: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
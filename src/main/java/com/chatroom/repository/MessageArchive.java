@@ -0,0 +1,469 @@
+package com.chatroom.repository;
+
+import com.chatroom.model.Message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * MessageArchive - Immutable, compressed segment files for old messages
+ *
+ * Layout on disk (one pair of files per segment, partitioned by day):
+ *   messages-2024-05-01-000000000123.seg   - deflate-compressed blocks of messages
+ *   messages-2024-05-01-000000000123.idx   - sparse index, one entry per block
+ *
+ * Each block holds up to BLOCK_SIZE messages and is compressed on its own, so
+ * a read only inflates the blocks it needs. The sparse index (first id, last id,
+ * file offset, compressed length) is small enough to keep in memory for every
+ * segment.
+ *
+ * Room messages are archived strictly in id order, so all archived ids are
+ * lower than every room message id still in the live table. Direct messages
+ * are never archived.
+ *
+ * Segments are never rewritten. Deleting an archived message appends its id
+ * to deleted.ids (a tombstone), and reads skip tombstoned ids.
+ */
+public class MessageArchive {
+    private static final int INDEX_MAGIC = 0x43484958; // "CHIX"
+    private static final int BLOCK_SIZE = 256;
+    private static final String TOMBSTONE_FILE = "deleted.ids";
+
+    private final Path directory;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Set<Long> deleted = ConcurrentHashMap.newKeySet();
+    // Highest id the archiver has scanned in the current pass, archived or not yet
+    private final AtomicLong reservedId = new AtomicLong();
+
+    public MessageArchive(String directory) {
+        this.directory = Paths.get(directory);
+        loadSegments();
+        loadTombstones();
+    }
+
+    /**
+     * One block of the sparse index
+     */
+    static class BlockIndex {
+        final long firstId;
+        final long lastId;
+        final long offset;
+        final int length;
+
+        BlockIndex(long firstId, long lastId, long offset, int length) {
+            this.firstId = firstId;
+            this.lastId = lastId;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A finished segment file and its in-memory sparse index
+     */
+    static class Segment {
+        final Path dataFile;
+        final List<BlockIndex> blocks;
+
+        Segment(Path dataFile, List<BlockIndex> blocks) {
+            this.dataFile = dataFile;
+            this.blocks = blocks;
+        }
+
+        long firstId() {
+            return blocks.get(0).firstId;
+        }
+
+        long lastId() {
+            return blocks.get(blocks.size() - 1).lastId;
+        }
+    }
+
+    private void loadSegments() {
+        try {
+            Files.createDirectories(directory);
+
+            List<Segment> loaded = new ArrayList<>();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path indexFile : (Iterable<Path>) files.filter(p -> p.toString().endsWith(".idx"))::iterator) {
+                    Path dataFile = Paths.get(indexFile.toString().replaceAll("\\.idx$", ".seg"));
+                    if (Files.exists(dataFile)) {
+                        loaded.add(new Segment(dataFile, readIndex(indexFile)));
+                    }
+                }
+            }
+
+            loaded.removeIf(segment -> segment.blocks.isEmpty());
+            loaded.sort((a, b) -> Long.compare(a.firstId(), b.firstId()));
+            segments.addAll(loaded);
+
+            System.out.println("✅ Message archive ready: " + segments.size() + " segments in " + directory);
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open message archive", e);
+        }
+    }
+
+    /**
+     * Highest archived message id
+     * @return Highest id, or 0 if the archive is empty
+     */
+    public long getMaxArchivedId() {
+        return segments.isEmpty() ? 0 : segments.get(segments.size() - 1).lastId();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Mark ids up to this one as being archived
+     * The archiver calls this under the database lock with every chunk it
+     * scans, so a delete that runs after the scan sees the mark and leaves a
+     * tombstone for a message that is about to land in a segment.
+     */
+    public void reserveUpTo(long id) {
+        reservedId.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * End of an archival pass: ids above the archive are live-only again
+     */
+    public void clearReservation() {
+        reservedId.set(0);
+    }
+
+    /**
+     * Whether a message with this id is, or may be about to be, in a segment
+     */
+    public boolean covers(long id) {
+        return id <= Math.max(reservedId.get(), getMaxArchivedId());
+    }
+
+    /**
+     * Find one archived message
+     * @return The message, empty if it was never archived or has been deleted
+     */
+    public Optional<Message> findById(long id) {
+        if (deleted.contains(id)) {
+            return Optional.empty();
+        }
+
+        try {
+            for (Segment segment : segments) {
+                if (id < segment.firstId() || id > segment.lastId()) {
+                    continue;
+                }
+
+                int b = lastBlockBefore(segment.blocks, id + 1);
+                if (b >= 0 && id <= segment.blocks.get(b).lastId) {
+                    for (Message message : readBlock(segment, segment.blocks.get(b))) {
+                        if (message.getId() == id) {
+                            return Optional.of(message);
+                        }
+                    }
+                }
+            }
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read message archive", e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Tombstone archived messages
+     * The ids are appended to deleted.ids and fsynced before this returns.
+     * @return Number of ids that were not deleted before
+     */
+    public synchronized int delete(Collection<Long> ids) {
+        List<Long> added = new ArrayList<>();
+        for (Long id : ids) {
+            if (!deleted.contains(id)) {
+                added.add(id);
+            }
+        }
+        if (added.isEmpty()) {
+            return 0;
+        }
+
+        Path file = directory.resolve(TOMBSTONE_FILE);
+        try {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND))) {
+                for (Long id : added) {
+                    out.writeLong(id);
+                }
+            }
+            fsync(file);
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete archived messages", e);
+        }
+
+        deleted.addAll(added);
+        return added.size();
+    }
+
+    private void loadTombstones() {
+        Path file = directory.resolve(TOMBSTONE_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            // A torn last write leaves a partial entry, which is ignored
+            long count = Files.size(file) / Long.BYTES;
+            for (long i = 0; i < count; i++) {
+                deleted.add(in.readLong());
+            }
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read archive tombstones", e);
+        }
+    }
+
+    /**
+     * Read archived messages with id lower than the cursor
+     * @param beforeId - Exclusive upper bound on message id
+     * @param limit - Max number of messages
+     * @return Messages in chronological (ascending id) order
+     */
+    public List<Message> findBefore(long beforeId, int limit) {
+        List<Message> newestFirst = new ArrayList<>();
+
+        try {
+            for (int s = segments.size() - 1; s >= 0 && newestFirst.size() < limit; s--) {
+                Segment segment = segments.get(s);
+                if (segment.firstId() >= beforeId) {
+                    continue;
+                }
+
+                for (int b = lastBlockBefore(segment.blocks, beforeId); b >= 0 && newestFirst.size() < limit; b--) {
+                    List<Message> block = readBlock(segment, segment.blocks.get(b));
+                    for (int i = block.size() - 1; i >= 0 && newestFirst.size() < limit; i--) {
+                        long id = block.get(i).getId();
+                        if (id < beforeId && !deleted.contains(id)) {
+                            newestFirst.add(block.get(i));
+                        }
+                    }
+                }
+            }
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read message archive", e);
+        }
+
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    /**
+     * Binary search for the last block that can contain ids below the cursor
+     */
+    private static int lastBlockBefore(List<BlockIndex> blocks, long beforeId) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        int result = -1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blocks.get(mid).firstId < beforeId) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private List<Message> readBlock(Segment segment, BlockIndex block) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(block.length);
+        try (FileChannel channel = FileChannel.open(segment.dataFile, StandardOpenOption.READ)) {
+            while (compressed.hasRemaining()) {
+                if (channel.read(compressed, block.offset + compressed.position()) < 0) {
+                    throw new IOException("Truncated archive segment: " + segment.dataFile);
+                }
+            }
+        }
+
+        List<Message> messages = new ArrayList<>(BLOCK_SIZE);
+        try (DataInputStream in = new DataInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(compressed.array())))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                messages.add(new Message(
+                        in.readLong(),
+                        in.readLong(),
+                        in.readUTF(),
+                        in.readUTF(),
+                        LocalDateTime.parse(in.readUTF())
+                ));
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Start writing a new segment for one day
+     * Nothing is visible to readers until {@link SegmentWriter#finish()}.
+     */
+    public SegmentWriter newSegment(LocalDate day, long firstId) throws IOException {
+        String name = String.format("messages-%s-%012d", day, firstId);
+        return new SegmentWriter(directory.resolve(name + ".seg"), directory.resolve(name + ".idx"));
+    }
+
+    /**
+     * Appends messages to a segment, one compressed block at a time
+     */
+    public class SegmentWriter {
+        private final Path dataFile;
+        private final Path indexFile;
+        private final Path tempData;
+        private final OutputStream out;
+        private final List<BlockIndex> blocks = new ArrayList<>();
+        private final List<Message> pending = new ArrayList<>(BLOCK_SIZE);
+        private long offset;
+
+        SegmentWriter(Path dataFile, Path indexFile) throws IOException {
+            this.dataFile = dataFile;
+            this.indexFile = indexFile;
+            this.tempData = Paths.get(dataFile + ".tmp");
+            this.out = Files.newOutputStream(tempData);
+        }
+
+        public void append(Message message) throws IOException {
+            pending.add(message);
+            if (pending.size() == BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        public int getBlockCount() {
+            return blocks.size();
+        }
+
+        private void flushBlock() throws IOException {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DataOutputStream block = new DataOutputStream(new DeflaterOutputStream(buffer, deflater))) {
+                block.writeInt(pending.size());
+                for (Message message : pending) {
+                    block.writeLong(message.getId());
+                    block.writeLong(message.getUserId());
+                    block.writeUTF(message.getUsername());
+                    block.writeUTF(message.getMessageText());
+                    block.writeUTF(message.getTimestamp().toString());
+                }
+            } finally {
+                deflater.end();
+            }
+
+            byte[] bytes = buffer.toByteArray();
+            out.write(bytes);
+            blocks.add(new BlockIndex(pending.get(0).getId(), pending.get(pending.size() - 1).getId(), offset, bytes.length));
+            offset += bytes.length;
+            pending.clear();
+        }
+
+        /**
+         * Flush, fsync and publish the segment
+         * The index is written last, so a crash never leaves a readable
+         * segment with missing data.
+         */
+        public void finish() throws IOException {
+            flushBlock();
+            out.close();
+
+            if (blocks.isEmpty()) {
+                Files.deleteIfExists(tempData);
+                return;
+            }
+
+            fsync(tempData);
+            Files.move(tempData, dataFile, StandardCopyOption.ATOMIC_MOVE);
+
+            Path tempIndex = Paths.get(indexFile + ".tmp");
+            try (DataOutputStream index = new DataOutputStream(Files.newOutputStream(tempIndex))) {
+                index.writeInt(INDEX_MAGIC);
+                index.writeInt(blocks.size());
+                for (BlockIndex block : blocks) {
+                    index.writeLong(block.firstId);
+                    index.writeLong(block.lastId);
+                    index.writeLong(block.offset);
+                    index.writeInt(block.length);
+                }
+            }
+            fsync(tempIndex);
+            Files.move(tempIndex, indexFile, StandardCopyOption.ATOMIC_MOVE);
+
+            segments.add(new Segment(dataFile, blocks));
+        }
+
+        /**
+         * Drop an unfinished segment
+         */
+        public void abort() {
+            try {
+                out.close();
+                Files.deleteIfExists(tempData);
+            } catch (IOException e) {
+                System.err.println("❌ Failed to clean up archive segment: " + e.getMessage());
+            }
+        }
+    }
+
+    private static List<BlockIndex> readIndex(Path indexFile) throws IOException {
+        try (InputStream raw = Files.newInputStream(indexFile);
+             DataInputStream in = new DataInputStream(raw)) {
+            if (in.readInt() != INDEX_MAGIC) {
+                throw new IOException("Not an archive index: " + indexFile);
+            }
+
+            int count = in.readInt();
+            List<BlockIndex> blocks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                blocks.add(new BlockIndex(in.readLong(), in.readLong(), in.readLong(), in.readInt()));
+            }
+            return blocks;
+        }
+    }
+
+    private static void fsync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+}
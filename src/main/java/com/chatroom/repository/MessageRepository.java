@@ -4,7 +4,11 @@ import com.chatroom.model.Message;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -14,16 +18,58 @@ import java.util.Optional;
  * - Querying with ordering
  * - Converting SQL results to Java objects
  */
-public class MessageRepository {
-    private Connection connection;
+public class MessageRepository implements MessageStore {
+    // Column order expected by MESSAGE_MAPPER
+    private static final String COLUMNS = "id, user_id, username, message_text, timestamp, recipient_id";
 
-    public MessageRepository(Connection connection) {
-        this.connection = connection;
+    private static final String INSERT_SQL =
+            "INSERT INTO messages (user_id, username, message_text, timestamp, recipient_id, idempotency_key) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    // Messages whose id was assigned by the caller (ShardedMessageStore)
+    private static final String INSERT_WITH_ID_SQL =
+            "INSERT INTO messages (user_id, username, message_text, timestamp, recipient_id, idempotency_key, id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    static final RowMapper<Message> MESSAGE_MAPPER = rs -> {
+        Message message = new Message(
+                rs.getLong(1),
+                rs.getLong(2),
+                rs.getString(3),
+                rs.getString(4),
+                LocalDateTime.parse(rs.getString(5))
+        );
+        long recipientId = rs.getLong(6);
+        if (!rs.wasNull()) {
+            message.setRecipientId(recipientId);
+        }
+        return message;
+    };
+
+    private Database database;
+
+    // Optional cold storage for messages moved out by the archiver
+    private MessageArchive archive;
+
+    // State saved by beginBulkLoad() and restored by endBulkLoad()
+    private List<String> droppedIndexes = new ArrayList<>();
+    private int savedSynchronous = -1;
+
+    public MessageRepository(Database database) {
+        this.database = database;
         createTable();
     }
 
+    public void setArchive(MessageArchive archive) {
+        this.archive = archive;
+    }
+
     /**
      * Create messages table with foreign key to users
+     * recipient_id is NULL for room messages and set for direct messages.
+     * idempotency_key is NULL unless the client sent one; the partial unique
+     * index makes a key usable only once per user, even after a restart.
+     * Databases created before these columns existed get them added here.
      */
     private void createTable() {
         String sql = "CREATE TABLE IF NOT EXISTS messages (" +
@@ -32,10 +78,44 @@ public class MessageRepository {
                 "username TEXT NOT NULL, " +
                 "message_text TEXT NOT NULL, " +
                 "timestamp TEXT NOT NULL, " +
+                "recipient_id INTEGER REFERENCES users(id), " +
+                "idempotency_key TEXT, " +
                 "FOREIGN KEY (user_id) REFERENCES users(id))";
 
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(sql);
+        // Serves both directions of a conversation:
+        // (recipient = A AND user = B) OR (recipient = B AND user = A), newest id first
+        String conversationIndex = "CREATE INDEX IF NOT EXISTS idx_messages_conversation " +
+                "ON messages (recipient_id, user_id, id)";
+
+        String idempotencyIndex = "CREATE UNIQUE INDEX IF NOT EXISTS idx_messages_idempotency " +
+                "ON messages (user_id, idempotency_key) WHERE idempotency_key IS NOT NULL";
+
+        try {
+            database.execute(connection -> {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute(sql);
+
+                    boolean hasRecipient = false;
+                    boolean hasIdempotencyKey = false;
+                    try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(messages)")) {
+                        while (rs.next()) {
+                            hasRecipient |= "recipient_id".equals(rs.getString("name"));
+                            hasIdempotencyKey |= "idempotency_key".equals(rs.getString("name"));
+                        }
+                    }
+                    if (!hasRecipient) {
+                        stmt.execute("ALTER TABLE messages ADD COLUMN recipient_id INTEGER REFERENCES users(id)");
+                        System.out.println("✅ Messages table migrated: added recipient_id");
+                    }
+                    if (!hasIdempotencyKey) {
+                        stmt.execute("ALTER TABLE messages ADD COLUMN idempotency_key TEXT");
+                        System.out.println("✅ Messages table migrated: added idempotency_key");
+                    }
+
+                    stmt.execute(conversationIndex);
+                    return stmt.execute(idempotencyIndex);
+                }
+            });
             System.out.println("✅ Messages table ready");
         } catch (SQLException e) {
             throw new RuntimeException("Failed to create messages table", e);
@@ -44,57 +124,181 @@ public class MessageRepository {
 
     /**
      * Save a new message to database
+     * A message that already has an id (assigned by ShardedMessageStore) is
+     * stored under that id; otherwise SQLite generates one.
      * @param message - Message object to save
      * @return Message object with generated ID
      */
+    @Override
     public Message save(Message message) {
-        String sql = "INSERT INTO messages (user_id, username, message_text, timestamp) VALUES (?, ?, ?, ?)";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setLong(1, message.getUserId());
-            pstmt.setString(2, message.getUsername());
-            pstmt.setString(3, message.getMessageText());
-            pstmt.setString(4, message.getTimestamp().toString());
-            pstmt.executeUpdate();
-
-            // SQLite-specific way to get last inserted ID
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
-                if (rs.next()) {
-                    message.setId(rs.getLong(1));
+        // RETURNING hands back the generated id in the same statement
+        String sql = INSERT_SQL + " RETURNING id";
+
+        try {
+            return database.execute(connection -> {
+                if (message.getId() != null) {
+                    PreparedStatement pstmt = database.prepare(INSERT_WITH_ID_SQL);
+                    bindInsert(pstmt, message);
+                    pstmt.setLong(7, message.getId());
+                    pstmt.executeUpdate();
+                    return message;
                 }
-            }
 
-            return message;
+                PreparedStatement pstmt = database.prepare(sql);
+                bindInsert(pstmt, message);
+
+                message.setId(Database.queryLong(pstmt, 0L));
+                return message;
+            });
 
         } catch (SQLException e) {
             throw new RuntimeException("Failed to save message", e);
         }
     }
 
+    /**
+     * Save a batch of messages in one transaction with JDBC batching
+     *
+     * All inserts run inside one transaction while we hold the connection
+     * lock, so AUTOINCREMENT hands out consecutive ids. That lets one
+     * last_insert_rowid() call after the batch give every generated id.
+     * Messages with caller-assigned ids (all or none of the batch) keep them;
+     * generated ids are cleared again if the transaction fails.
+     *
+     * @param messages - Messages to save
+     * @return Messages with generated IDs, in input order
+     */
+    @Override
+    public List<Message> saveAll(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return messages;
+        }
+
+        boolean generatedIds = messages.get(0).getId() == null;
+        try {
+            return database.executeInTransaction(connection -> {
+                if (!generatedIds) {
+                    PreparedStatement pstmt = database.prepare(INSERT_WITH_ID_SQL);
+                    for (Message message : messages) {
+                        bindInsert(pstmt, message);
+                        pstmt.setLong(7, message.getId());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                    return messages;
+                }
+
+                PreparedStatement pstmt = database.prepare(INSERT_SQL);
+                for (Message message : messages) {
+                    bindInsert(pstmt, message);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+
+                long lastId = Database.queryLong(database.prepare("SELECT last_insert_rowid()"), 0L);
+                long firstId = lastId - messages.size() + 1;
+                for (int i = 0; i < messages.size(); i++) {
+                    messages.get(i).setId(firstId + i);
+                }
+                return messages;
+            });
+
+        } catch (SQLException e) {
+            // Rolled back: generated ids (set just before a failed commit) are not valid
+            if (generatedIds) {
+                for (Message message : messages) {
+                    message.setId(null);
+                }
+            }
+            throw new RuntimeException("Failed to save message batch", e);
+        }
+    }
+
+    private static void bindInsert(PreparedStatement pstmt, Message message) throws SQLException {
+        pstmt.setLong(1, message.getUserId());
+        pstmt.setString(2, message.getUsername());
+        pstmt.setString(3, message.getMessageText());
+        pstmt.setString(4, message.getTimestamp().toString());
+        pstmt.setObject(5, message.getRecipientId());
+        pstmt.setString(6, message.getIdempotencyKey());
+    }
+
+    /**
+     * Prepare SQLite for a large import
+     * - PRAGMA synchronous = OFF: no fsync per transaction
+     * - drop secondary (non-unique) indexes, they are rebuilt once at the end
+     *   which is much cheaper than updating them row by row
+     * Unique indexes are kept because they enforce correctness.
+     *
+     * Both changes apply to the whole connection, so only use this while
+     * nothing else is served from it (the CLI import, not the HTTP one).
+     */
+    public void beginBulkLoad() {
+        try {
+            database.execute(connection -> {
+                try (Statement stmt = connection.createStatement()) {
+                    try (ResultSet rs = stmt.executeQuery("PRAGMA synchronous")) {
+                        savedSynchronous = rs.next() ? rs.getInt(1) : 2;
+                    }
+
+                    List<String> indexes = new ArrayList<>();
+                    try (ResultSet rs = stmt.executeQuery("SELECT name, sql FROM sqlite_master " +
+                            "WHERE type = 'index' AND tbl_name = 'messages' AND sql IS NOT NULL")) {
+                        while (rs.next()) {
+                            if (!rs.getString("sql").toUpperCase().startsWith("CREATE UNIQUE")) {
+                                indexes.add(rs.getString("name"));
+                                droppedIndexes.add(rs.getString("sql"));
+                            }
+                        }
+                    }
+
+                    for (String index : indexes) {
+                        stmt.execute("DROP INDEX IF EXISTS " + index);
+                    }
+                    stmt.execute("PRAGMA synchronous = OFF");
+                    return null;
+                }
+            });
+            System.out.println("📥 Bulk load mode on (synchronous=OFF, " + droppedIndexes.size() + " indexes dropped)");
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to prepare bulk load", e);
+        }
+    }
+
+    /**
+     * Rebuild dropped indexes and restore durability settings
+     */
+    public void endBulkLoad() {
+        try {
+            database.execute(connection -> {
+                try (Statement stmt = connection.createStatement()) {
+                    for (String sql : droppedIndexes) {
+                        stmt.execute(sql);
+                    }
+                    stmt.execute("PRAGMA synchronous = " + (savedSynchronous >= 0 ? savedSynchronous : 2));
+                    return null;
+                }
+            });
+            System.out.println("📥 Bulk load mode off (" + droppedIndexes.size() + " indexes rebuilt)");
+            droppedIndexes = new ArrayList<>();
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to finish bulk load", e);
+        }
+    }
+
     /**
      * Get all messages ordered by timestamp (oldest first)
      * Shows complete chat history in chronological order
      * @return List of all messages
      */
+    @Override
     public List<Message> findAllOrderByTimestamp() {
-        String sql = "SELECT id, user_id, username, message_text, timestamp FROM messages ORDER BY timestamp ASC";
-        List<Message> messages = new ArrayList<>();
-
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                Message message = new Message(
-                        rs.getLong("id"),
-                        rs.getLong("user_id"),
-                        rs.getString("username"),
-                        rs.getString("message_text"),
-                        LocalDateTime.parse(rs.getString("timestamp"))
-                );
-                messages.add(message);
-            }
-            return messages;
+        String sql = "SELECT " + COLUMNS + " FROM messages WHERE recipient_id IS NULL ORDER BY timestamp ASC";
+
+        try {
+            return database.execute(connection -> Database.queryList(database.prepare(sql), MESSAGE_MAPPER));
 
         } catch (SQLException e) {
             throw new RuntimeException("Failed to fetch messages", e);
@@ -106,26 +310,16 @@ public class MessageRepository {
      * @param userId - ID of the user
      * @return List of user's messages
      */
+    @Override
     public List<Message> findByUserId(Long userId) {
-        String sql = "SELECT id, user_id, username, message_text, timestamp " +
-                "FROM messages WHERE user_id = ? ORDER BY timestamp ASC";
-        List<Message> messages = new ArrayList<>();
-
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setLong(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                Message message = new Message(
-                        rs.getLong("id"),
-                        rs.getLong("user_id"),
-                        rs.getString("username"),
-                        rs.getString("message_text"),
-                        LocalDateTime.parse(rs.getString("timestamp"))
-                );
-                messages.add(message);
-            }
-            return messages;
+        String sql = "SELECT " + COLUMNS + " FROM messages WHERE user_id = ? AND recipient_id IS NULL ORDER BY timestamp ASC";
+
+        try {
+            return database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setLong(1, userId);
+                return Database.queryList(pstmt, MESSAGE_MAPPER);
+            });
 
         } catch (SQLException e) {
             throw new RuntimeException("Failed to fetch user messages", e);
@@ -133,40 +327,303 @@ public class MessageRepository {
     }
 
 
+    /**
+     * Highest message id ever stored
+     * Read from sqlite_sequence so deleted rows still count (AUTOINCREMENT never reuses ids)
+     * @return Highest id, or 0 if no message was ever saved
+     */
+    @Override
+    public long findMaxId() {
+        String sql = "SELECT seq FROM sqlite_sequence WHERE name = 'messages'";
+
+        try {
+            return database.execute(connection -> Database.queryLong(database.prepare(sql), 0L));
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read message sequence", e);
+        }
+    }
+
+
+    /**
+     * Page backwards through history using a message id cursor
+     * When the cursor goes past the oldest live message, the rest of the page
+     * is read transparently from the archive.
+     * @param beforeId - Exclusive upper bound, null for the newest messages
+     * @param limit - Page size
+     * @return Messages in chronological order
+     */
+    @Override
+    public List<Message> findPageBefore(Long beforeId, int limit) {
+        String sql = "SELECT " + COLUMNS + " FROM messages WHERE id < ? AND recipient_id IS NULL ORDER BY id DESC LIMIT ?";
+        long cursor = beforeId != null ? beforeId : Long.MAX_VALUE;
+
+        List<Message> page;
+        try {
+            page = database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setLong(1, cursor);
+                pstmt.setInt(2, limit);
+                return Database.queryList(pstmt, MESSAGE_MAPPER);
+            });
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to fetch message page", e);
+        }
+
+        Collections.reverse(page);
+
+        if (page.size() < limit && archive != null) {
+            // Continue below the oldest live row so nothing is returned twice
+            long archiveCursor = page.isEmpty() ? cursor : page.get(0).getId();
+            List<Message> older = archive.findBefore(archiveCursor, limit - page.size());
+            older.addAll(page);
+            return older;
+        }
+        return page;
+    }
+
+    /**
+     * Page backwards through the direct messages between two users
+     * Both branches of the OR are range scans on idx_messages_conversation.
+     */
+    @Override
+    public List<Message> findConversation(Long userId, Long otherUserId, Long beforeId, int limit) {
+        String sql = "SELECT " + COLUMNS + " FROM messages " +
+                "WHERE ((recipient_id = ? AND user_id = ?) OR (recipient_id = ? AND user_id = ?)) AND id < ? " +
+                "ORDER BY id DESC LIMIT ?";
+
+        try {
+            List<Message> page = database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setLong(1, userId);
+                pstmt.setLong(2, otherUserId);
+                pstmt.setLong(3, otherUserId);
+                pstmt.setLong(4, userId);
+                pstmt.setLong(5, beforeId != null ? beforeId : Long.MAX_VALUE);
+                pstmt.setInt(6, limit);
+                return Database.queryList(pstmt, MESSAGE_MAPPER);
+            });
+
+            Collections.reverse(page);
+            return page;
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to fetch conversation", e);
+        }
+    }
+
+    /**
+     * Oldest room messages after an id, used by the archiver to scan in id order
+     * Direct messages are never archived, they stay in the live table.
+     * The scanned ids are reserved in the archive under the same lock, so a
+     * delete racing the archiver tombstones them instead of being lost.
+     * @param afterId - Exclusive lower bound
+     * @param limit - Chunk size
+     * @return Messages in ascending id order
+     */
+    public List<Message> findAfterId(long afterId, int limit) {
+        String sql = "SELECT " + COLUMNS + " FROM messages WHERE id > ? AND recipient_id IS NULL ORDER BY id ASC LIMIT ?";
+
+        try {
+            return database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setLong(1, afterId);
+                pstmt.setInt(2, limit);
+                List<Message> chunk = Database.queryList(pstmt, MESSAGE_MAPPER);
+                if (archive != null && !chunk.isEmpty()) {
+                    archive.reserveUpTo(chunk.get(chunk.size() - 1).getId());
+                }
+                return chunk;
+            });
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to scan messages", e);
+        }
+    }
+
+    /**
+     * Delete one chunk of room messages with id up to maxId
+     * Kept small so the connection lock is released between chunks
+     * and writers are never blocked for long.
+     * @param maxId - Inclusive upper bound
+     * @param chunkSize - Max rows deleted by this call
+     * @return Number of rows deleted (0 when done)
+     */
+    public int deleteChunkUpTo(long maxId, int chunkSize) {
+        String sql = "DELETE FROM messages WHERE id IN " +
+                "(SELECT id FROM messages WHERE id <= ? AND recipient_id IS NULL ORDER BY id LIMIT ?)";
+
+        try {
+            return database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setLong(1, maxId);
+                pstmt.setInt(2, chunkSize);
+                return pstmt.executeUpdate();
+            });
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete archived messages", e);
+        }
+    }
+
+
+    /**
+     * Served by the partial unique index idx_messages_idempotency
+     */
+    @Override
+    public Optional<Message> findByIdempotencyKey(Long userId, String idempotencyKey) {
+        String sql = "SELECT " + COLUMNS + " FROM messages WHERE user_id = ? AND idempotency_key = ?";
+
+        try {
+            return database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setLong(1, userId);
+                pstmt.setString(2, idempotencyKey);
+                return Database.queryFirst(pstmt, MESSAGE_MAPPER);
+            });
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to find message by idempotency key", e);
+        }
+    }
+
+    /**
+     * Live table first, then the archive, so archived messages can be deleted too
+     */
+    @Override
     public Optional<Message> findById(Long id) {
-        String sql = "SELECT id, user_id, username, message_text, timestamp FROM messages WHERE id = ?";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setLong(1, id);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                Message message = new Message(
-                        rs.getLong("id"),
-                        rs.getLong("user_id"),
-                        rs.getString("username"),
-                        rs.getString("message_text"),
-                        LocalDateTime.parse(rs.getString("timestamp"))
-                );
-                return Optional.of(message);
-            }
-            return Optional.empty();
+        String sql = "SELECT " + COLUMNS + " FROM messages WHERE id = ?";
+
+        Optional<Message> message;
+        try {
+            message = database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setLong(1, id);
+                return Database.queryFirst(pstmt, MESSAGE_MAPPER);
+            });
 
         } catch (SQLException e) {
             throw new RuntimeException("Failed to find message", e);
         }
+
+        if (message.isEmpty() && archive != null && archive.covers(id)) {
+            return archive.findById(id);
+        }
+        return message;
     }
 
 
+    /**
+     * Find many messages with a single IN query
+     * @param ids - Message IDs
+     * @return Found messages keyed by id
+     */
+    @Override
+    public Map<Long, Message> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        // IN list length varies per call, so this statement is not cached
+        String sql = "SELECT " + COLUMNS + " FROM messages WHERE id IN (" +
+                Database.placeholders(ids.size()) + ")";
+
+        try {
+            return database.execute(connection -> {
+                Map<Long, Message> messages = new HashMap<>();
+
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    int index = 1;
+                    for (Long id : ids) {
+                        pstmt.setLong(index++, id);
+                    }
+
+                    for (Message message : Database.queryList(pstmt, MESSAGE_MAPPER)) {
+                        messages.put(message.getId(), message);
+                    }
+                }
+
+                if (archive != null) {
+                    for (Long id : ids) {
+                        if (!messages.containsKey(id) && archive.covers(id)) {
+                            archive.findById(id).ifPresent(message -> messages.put(id, message));
+                        }
+                    }
+                }
+                return messages;
+            });
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to find messages", e);
+        }
+    }
+
+    /**
+     * Delete a batch of messages in one transaction with JDBC batching
+     * Archived ids are tombstoned in the archive under the same lock.
+     * @param ids - Message IDs
+     * @return Number of messages deleted
+     */
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String sql = "DELETE FROM messages WHERE id = ?";
+
+        try {
+            return database.executeInTransaction(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                for (Long id : ids) {
+                    pstmt.setLong(1, id);
+                    pstmt.addBatch();
+                }
+
+                int deleted = 0;
+                for (int count : pstmt.executeBatch()) {
+                    deleted += Math.max(count, 0);
+                }
+                return deleted + deleteArchived(ids);
+            });
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete message batch", e);
+        }
+    }
+
+    @Override
     public void deleteById(Long id) {
         String sql = "DELETE FROM messages WHERE id = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setLong(1, id);
-            pstmt.executeUpdate();
+        try {
+            database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setLong(1, id);
+                return pstmt.executeUpdate() + deleteArchived(List.of(id));
+            });
 
         } catch (SQLException e) {
             throw new RuntimeException("Failed to delete message", e);
         }
     }
+
+    /**
+     * Tombstone the ids the archive holds or is writing right now
+     * Called under the connection lock, see findAfterId.
+     */
+    private int deleteArchived(Collection<Long> ids) {
+        if (archive == null) {
+            return 0;
+        }
+
+        List<Long> archived = new ArrayList<>();
+        for (Long id : ids) {
+            if (archive.covers(id)) {
+                archived.add(id);
+            }
+        }
+        return archived.isEmpty() ? 0 : archive.delete(archived);
+    }
 }
\ No newline at end of file
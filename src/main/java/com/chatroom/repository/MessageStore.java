@@ -0,0 +1,97 @@
+package com.chatroom.repository;
+
+import com.chatroom.model.Message;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * MessageStore - Storage operations the service layer needs for messages
+ *
+ * Implementations:
+ * - MessageRepository: SQLite table (default)
+ * - LogMessageStore: append-only memory-mapped log (MESSAGE_STORE=log)
+ * - ShardedMessageStore: MessageRepository per shard file (MESSAGE_STORE=sharded)
+ *
+ * Direct messages (recipientId set) share the id sequence with room messages
+ * but are only returned by findConversation and the lookups by id. History,
+ * per-user and paging queries only cover the public room.
+ */
+public interface MessageStore {
+
+    /**
+     * Save a new message
+     * @param message - Message without ID
+     * @return Message object with generated ID
+     */
+    Message save(Message message);
+
+    /**
+     * Complete chat history, oldest first
+     */
+    List<Message> findAllOrderByTimestamp();
+
+    /**
+     * All messages sent by one user, oldest first
+     */
+    List<Message> findByUserId(Long userId);
+
+    /**
+     * Save several messages atomically (all or nothing)
+     * @param messages - Messages without IDs
+     * @return Same messages with generated IDs, in input order
+     */
+    List<Message> saveAll(List<Message> messages);
+
+    Optional<Message> findById(Long id);
+
+    /**
+     * Look up many messages at once
+     * @return Found messages keyed by id, missing ids are absent
+     */
+    Map<Long, Message> findAllById(Collection<Long> ids);
+
+    void deleteById(Long id);
+
+    /**
+     * Delete several messages atomically
+     * @return Number of messages deleted
+     */
+    int deleteAllById(Collection<Long> ids);
+
+    /**
+     * Highest message id ever assigned (deleted ids included), 0 if none
+     */
+    long findMaxId();
+
+    /**
+     * Page backwards through history using a message id cursor
+     * @param beforeId - Exclusive upper bound, null for the newest messages
+     * @param limit - Page size
+     * @return Messages in chronological order
+     */
+    List<Message> findPageBefore(Long beforeId, int limit);
+
+    /**
+     * Page backwards through the direct messages between two users
+     * @param userId - One participant
+     * @param otherUserId - The other participant
+     * @param beforeId - Exclusive upper bound, null for the newest messages
+     * @param limit - Page size
+     * @return Messages in both directions, in chronological order
+     */
+    List<Message> findConversation(Long userId, Long otherUserId, Long beforeId, int limit);
+
+    /**
+     * Find the message a user saved with an idempotency key
+     * Stores that don't persist keys return empty; retries are then only
+     * deduplicated while the key is still in the service's in-memory cache.
+     * @param userId - Sender
+     * @param idempotencyKey - Client-generated key
+     * @return The original message, if it is still stored
+     */
+    default Optional<Message> findByIdempotencyKey(Long userId, String idempotencyKey) {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,15 @@
+package com.chatroom.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * RowMapper - Converts the current row of a ResultSet into an object
+ *
+ * Mappers read columns by index, so every query using one must select
+ * the columns in the order the mapper expects.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    T map(ResultSet rs) throws SQLException;
+}
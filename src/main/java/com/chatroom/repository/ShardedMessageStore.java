@@ -0,0 +1,353 @@
+package com.chatroom.repository;
+
+import com.chatroom.model.Message;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * ShardedMessageStore - Messages spread over several SQLite files
+ *
+ * One SQLite connection serializes every write. This store splits the
+ * messages table across N shard files (messages-0.db ... messages-(N-1).db),
+ * each with its own connection, lock and writer thread, so writes to
+ * different shards run in parallel.
+ *
+ * Placement uses a consistent hash ring with virtual nodes:
+ * - room messages by sender, so per-user queries and idempotency keys stay on one shard
+ * - direct messages by the unordered user pair, so a conversation stays on one shard
+ *
+ * Ids are assigned here instead of by SQLite: id = sequence * N + shard.
+ * The sequence is shared, so ids are globally unique and increase over
+ * time, and the shard of any id is id % N without a lookup. For that reason
+ * the shard count of a directory can't be changed once messages exist.
+ *
+ * Room history is read from every shard in parallel and combined with a
+ * k-way merge on (timestamp, id). saveAll writes each shard's part in its
+ * own transaction; if one shard fails, the parts already committed on other
+ * shards are deleted again before the error is rethrown.
+ */
+public class ShardedMessageStore implements MessageStore, AutoCloseable {
+    private static final int VIRTUAL_NODES = 64;
+
+    // History order across shards
+    private static final Comparator<Message> TIMESTAMP_ORDER =
+            Comparator.comparing(Message::getTimestamp).thenComparing(Message::getId);
+
+    private final List<Database> databases;
+    private final List<MessageRepository> shards;
+    private final List<ExecutorService> writers;
+
+    // Hash ring: point -> shard
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+
+    // Last id sequence handed out, ids are sequence * N + shard
+    private final AtomicLong sequence;
+
+    /**
+     * @param databases - One connection per shard file, in shard order
+     */
+    public ShardedMessageStore(List<Database> databases) {
+        if (databases.isEmpty()) {
+            throw new IllegalArgumentException("Sharded store needs at least one shard");
+        }
+        this.databases = databases;
+        this.shards = new ArrayList<>(databases.size());
+        this.writers = new ArrayList<>(databases.size());
+
+        long maxId = 0;
+        for (int i = 0; i < databases.size(); i++) {
+            MessageRepository shard = new MessageRepository(databases.get(i));
+            shards.add(shard);
+            maxId = Math.max(maxId, shard.findMaxId());
+
+            String name = "shard-" + i;
+            writers.add(Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }));
+
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                ring.put(hash("shard-" + i + "#" + v), i);
+            }
+        }
+        this.sequence = new AtomicLong(maxId / databases.size());
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Shard that holds a message id
+     */
+    public int shardOfId(long id) {
+        return (int) (id % shards.size());
+    }
+
+    /**
+     * Shard a new message is written to
+     */
+    int shardFor(Message message) {
+        if (message.getRecipientId() != null) {
+            long low = Math.min(message.getUserId(), message.getRecipientId());
+            long high = Math.max(message.getUserId(), message.getRecipientId());
+            return shardForKey("c:" + low + ":" + high);
+        }
+        return shardForKey("u:" + message.getUserId());
+    }
+
+    private int shardForKey(String key) {
+        Map.Entry<Long, Integer> point = ring.ceilingEntry(hash(key));
+        return point != null ? point.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * 64-bit FNV-1a followed by a murmur3 finalizer so nearby keys spread over the ring
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private long nextId(int shard) {
+        return sequence.incrementAndGet() * shards.size() + shard;
+    }
+
+    @Override
+    public Message save(Message message) {
+        int shard = shardFor(message);
+        message.setId(nextId(shard));
+        try {
+            return shards.get(shard).save(message);
+        } catch (RuntimeException e) {
+            message.setId(null);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Message> saveAll(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return messages;
+        }
+
+        Map<Integer, List<Message>> byShard = new LinkedHashMap<>();
+        for (Message message : messages) {
+            int shard = shardFor(message);
+            message.setId(nextId(shard));
+            byShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(message);
+        }
+
+        Map<Integer, CompletableFuture<List<Message>>> writes = new LinkedHashMap<>();
+        byShard.forEach((shard, part) -> writes.put(shard,
+                CompletableFuture.supplyAsync(() -> shards.get(shard).saveAll(part), writers.get(shard))));
+
+        RuntimeException failure = null;
+        List<Integer> committed = new ArrayList<>();
+        for (Map.Entry<Integer, CompletableFuture<List<Message>>> write : writes.entrySet()) {
+            try {
+                write.getValue().join();
+                committed.add(write.getKey());
+            } catch (CompletionException e) {
+                failure = e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause()
+                        : new RuntimeException("Failed to save messages", e.getCause());
+            }
+        }
+
+        if (failure != null) {
+            // Keep saveAll all-or-nothing across shards
+            for (int shard : committed) {
+                List<Long> ids = new ArrayList<>();
+                for (Message message : byShard.get(shard)) {
+                    ids.add(message.getId());
+                }
+                try {
+                    shards.get(shard).deleteAllById(ids);
+                } catch (RuntimeException e) {
+                    System.err.println("❌ Could not roll back " + ids.size() + " messages on shard " + shard + ": " + e.getMessage());
+                }
+            }
+            for (Message message : messages) {
+                message.setId(null);
+            }
+            throw failure;
+        }
+        return messages;
+    }
+
+    @Override
+    public List<Message> findAllOrderByTimestamp() {
+        return merge(onAllShards(MessageRepository::findAllOrderByTimestamp));
+    }
+
+    @Override
+    public List<Message> findByUserId(Long userId) {
+        return shards.get(shardForKey("u:" + userId)).findByUserId(userId);
+    }
+
+    @Override
+    public Optional<Message> findById(Long id) {
+        return shards.get(shardOfId(id)).findById(id);
+    }
+
+    @Override
+    public Map<Long, Message> findAllById(Collection<Long> ids) {
+        Map<Long, Message> found = new HashMap<>();
+        groupIds(ids).forEach((shard, part) -> found.putAll(shards.get(shard).findAllById(part)));
+        return found;
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        shards.get(shardOfId(id)).deleteById(id);
+    }
+
+    /**
+     * Atomic per shard only: a failure on a later shard leaves earlier shards deleted
+     */
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        int deleted = 0;
+        for (Map.Entry<Integer, List<Long>> part : groupIds(ids).entrySet()) {
+            deleted += shards.get(part.getKey()).deleteAllById(part.getValue());
+        }
+        return deleted;
+    }
+
+    @Override
+    public long findMaxId() {
+        long max = 0;
+        for (long shardMax : onAllShards(MessageRepository::findMaxId)) {
+            max = Math.max(max, shardMax);
+        }
+        return max;
+    }
+
+    /**
+     * Each shard returns its newest messages below the cursor; the merged
+     * page keeps the newest limit of them
+     */
+    @Override
+    public List<Message> findPageBefore(Long beforeId, int limit) {
+        List<Message> merged = merge(onAllShards(shard -> shard.findPageBefore(beforeId, limit)));
+        return merged.size() > limit
+                ? new ArrayList<>(merged.subList(merged.size() - limit, merged.size()))
+                : merged;
+    }
+
+    @Override
+    public List<Message> findConversation(Long userId, Long otherUserId, Long beforeId, int limit) {
+        long low = Math.min(userId, otherUserId);
+        long high = Math.max(userId, otherUserId);
+        return shards.get(shardForKey("c:" + low + ":" + high))
+                .findConversation(userId, otherUserId, beforeId, limit);
+    }
+
+    @Override
+    public Optional<Message> findByIdempotencyKey(Long userId, String idempotencyKey) {
+        return shards.get(shardForKey("u:" + userId)).findByIdempotencyKey(userId, idempotencyKey);
+    }
+
+    private Map<Integer, List<Long>> groupIds(Collection<Long> ids) {
+        Map<Integer, List<Long>> byShard = new HashMap<>();
+        for (Long id : ids) {
+            byShard.computeIfAbsent(shardOfId(id), s -> new ArrayList<>()).add(id);
+        }
+        return byShard;
+    }
+
+    /**
+     * Run a read on every shard at once, results in shard order
+     */
+    private <T> List<T> onAllShards(Function<MessageRepository, T> read) {
+        List<CompletableFuture<T>> reads = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            MessageRepository shard = shards.get(i);
+            reads.add(CompletableFuture.supplyAsync(() -> read.apply(shard), writers.get(i)));
+        }
+
+        List<T> results = new ArrayList<>(reads.size());
+        for (CompletableFuture<T> future : reads) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause()
+                        : new RuntimeException("Shard read failed", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * K-way merge of lists that are each sorted by (timestamp, id)
+     */
+    static List<Message> merge(List<List<Message>> sorted) {
+        int total = 0;
+        // Heads of the lists: {list, position}
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) ->
+                TIMESTAMP_ORDER.compare(sorted.get(a[0]).get(a[1]), sorted.get(b[0]).get(b[1])));
+        for (int i = 0; i < sorted.size(); i++) {
+            total += sorted.get(i).size();
+            if (!sorted.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+
+        List<Message> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<Message> list = sorted.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (++head[1] < list.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Finish pending writes and close every shard connection
+     */
+    @Override
+    public void close() {
+        for (ExecutorService writer : writers) {
+            writer.shutdown();
+        }
+        for (int i = 0; i < writers.size(); i++) {
+            try {
+                writers.get(i).awaitTermination(5, TimeUnit.SECONDS);
+                databases.get(i).close();
+            } catch (Exception e) {
+                System.err.println("Error closing shard " + i + ": " + e.getMessage());
+            }
+        }
+    }
+}
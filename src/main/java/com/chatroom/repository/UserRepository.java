@@ -2,14 +2,27 @@ package com.chatroom.repository;
 
 import com.chatroom.model.User;
 import java.sql.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 
 public class UserRepository {
-    private Connection connection;
+    // Column order expected by USER_MAPPER
+    private static final String COLUMNS = "id, username, password";
 
-    public UserRepository(Connection connection) {
-        this.connection = connection;
+    static final RowMapper<User> USER_MAPPER = rs -> new User(
+            rs.getLong(1),
+            rs.getString(2),
+            rs.getString(3)
+    );
+
+    private Database database;
+
+    public UserRepository(Database database) {
+        this.database = database;
         createTable();
     }
 
@@ -22,8 +35,12 @@ public class UserRepository {
                 "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 "username TEXT UNIQUE NOT NULL, " +
                 "password TEXT NOT NULL)";
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(sql);
+        try {
+            database.execute(connection -> {
+                try (Statement stmt = connection.createStatement()) {
+                    return stmt.execute(sql);
+                }
+            });
             System.out.println("✅ Users table ready");
         } catch (SQLException e) {
             throw new RuntimeException("Failed to create users table", e);
@@ -32,42 +49,42 @@ public class UserRepository {
 
     /**
      * Save a new user to database
+     * One statement: the UNIQUE constraint on username rejects duplicates,
+     * so there is no separate existence check to race against.
      * @param user - User object with username and password
      * @return User object with generated ID
+     * @throws IllegalArgumentException if the username is taken
      */
     public User save(User user) {
-        String sql = "INSERT INTO users (username, password) VALUES (?, ?)";
+        // RETURNING hands back the generated id in the same statement
+        String sql = "INSERT INTO users (username, password) VALUES (?, ?) RETURNING id";
 
         System.out.println("💾 Attempting to save user: " + user.getUsername());
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, user.getUsername());
-            pstmt.setString(2, user.getPassword());
+        try {
+            return database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setString(1, user.getUsername());
+                pstmt.setString(2, user.getPassword());
 
-            System.out.println("📝 Executing INSERT query...");
-            pstmt.executeUpdate();
-
-            // SQLite-specific way to get last inserted ID
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
-                if (rs.next()) {
-                    user.setId(rs.getLong(1));
-                    System.out.println("✅ User saved successfully with ID: " + user.getId());
-                }
-            }
+                System.out.println("📝 Executing INSERT query...");
+                user.setId(Database.queryLong(pstmt, 0L));
+                System.out.println("✅ User saved successfully with ID: " + user.getId());
 
-            return user;
+                return user;
+            });
 
         } catch (SQLException e) {
+            // Expected outcome for a taken name, not an error
+            if (e.getMessage().contains("UNIQUE constraint failed")) {
+                throw new IllegalArgumentException("Username already exists");
+            }
+
             System.err.println("❌ Database error while saving user");
             System.err.println("SQL State: " + e.getSQLState());
             System.err.println("Error Code: " + e.getErrorCode());
             System.err.println("Message: " + e.getMessage());
             e.printStackTrace();
-
-            if (e.getMessage().contains("UNIQUE constraint failed")) {
-                throw new RuntimeException("Username already exists");
-            }
             throw new RuntimeException("Failed to save user", e);
         }
     }
@@ -78,21 +95,14 @@ public class UserRepository {
      * @return Optional containing User if found, empty otherwise
      */
     public Optional<User> findByUsername(String username) {
-        String sql = "SELECT id, username, password FROM users WHERE username = ?";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, username);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                User user = new User(
-                        rs.getLong("id"),
-                        rs.getString("username"),
-                        rs.getString("password")
-                );
-                return Optional.of(user);
-            }
-            return Optional.empty();
+        String sql = "SELECT " + COLUMNS + " FROM users WHERE username = ?";
+
+        try {
+            return database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setString(1, username);
+                return Database.queryFirst(pstmt, USER_MAPPER);
+            });
 
         } catch (SQLException e) {
             throw new RuntimeException("Failed to find user", e);
@@ -105,27 +115,88 @@ public class UserRepository {
      * @return Optional containing User if found
      */
     public Optional<User> findById(Long id) {
-        String sql = "SELECT id, username, password FROM users WHERE id = ?";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setLong(1, id);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                User user = new User(
-                        rs.getLong("id"),
-                        rs.getString("username"),
-                        rs.getString("password")
-                );
-                return Optional.of(user);
-            }
-            return Optional.empty();
+        String sql = "SELECT " + COLUMNS + " FROM users WHERE id = ?";
+
+        try {
+            return database.execute(connection -> {
+                PreparedStatement pstmt = database.prepare(sql);
+                pstmt.setLong(1, id);
+                return Database.queryFirst(pstmt, USER_MAPPER);
+            });
 
         } catch (SQLException e) {
             throw new RuntimeException("Failed to find user by ID", e);
         }
     }
 
+    /**
+     * Find many users with a single IN query
+     * @param ids - User IDs
+     * @return Found users keyed by id
+     */
+    public Map<Long, User> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        // IN list length varies per call, so this statement is not cached
+        String sql = "SELECT " + COLUMNS + " FROM users WHERE id IN (" +
+                Database.placeholders(ids.size()) + ")";
+
+        try {
+            return database.execute(connection -> {
+                Map<Long, User> users = new HashMap<>();
+
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    int index = 1;
+                    for (Long id : ids) {
+                        pstmt.setLong(index++, id);
+                    }
+
+                    for (User user : Database.queryList(pstmt, USER_MAPPER)) {
+                        users.put(user.getId(), user);
+                    }
+                    return users;
+                }
+            });
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to find users", e);
+        }
+    }
+
+    public long count() {
+        String sql = "SELECT COUNT(*) FROM users";
+
+        try {
+            return database.execute(connection -> Database.queryLong(database.prepare(sql), 0L));
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to count users", e);
+        }
+    }
+
+    /**
+     * Visit every username without building a list (used to fill the username filter)
+     */
+    public void forEachUsername(Consumer<String> action) {
+        String sql = "SELECT username FROM users";
+
+        try {
+            database.execute(connection -> {
+                try (ResultSet rs = database.prepare(sql).executeQuery()) {
+                    while (rs.next()) {
+                        action.accept(rs.getString(1));
+                    }
+                }
+                return null;
+            });
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to scan usernames", e);
+        }
+    }
+
     /**
      * Check if username already exists
      * @param username - Username to check
@@ -0,0 +1,104 @@
+package com.chatroom.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * BloomFilter - Compact set membership that can only say "no" for sure
+ *
+ * mightContain() == false means the key was never added; true means it
+ * probably was (false positives at roughly the configured rate once the
+ * filter holds expectedKeys). Keys can't be removed.
+ *
+ * Sized with the standard formulas:
+ *   bits   m = -n * ln(p) / (ln 2)^2
+ *   hashes k = m / n * ln 2
+ * The k bit positions are derived from two 64-bit hashes as h1 + i * h2
+ * (Kirsch-Mitzenmacher), so each key is hashed only once. Bits live in an
+ * AtomicLongArray, so add and mightContain are lock-free and thread-safe.
+ */
+public class BloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedKeys - Number of keys the false positive rate is sized for
+     * @param falsePositiveRate - Target rate, e.g. 0.01
+     */
+    public BloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (expectedKeys < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Bloom filter needs expectedKeys >= 1 and 0 < rate < 1");
+        }
+
+        long m = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        long words = Math.max((m + 63) / 64, 1);
+        if (words > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter too large");
+        }
+
+        this.bits = new AtomicLongArray((int) words);
+        this.bitCount = words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedKeys * Math.log(2)));
+    }
+
+    public void add(String key) {
+        long[] hash = hash(key);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(hash, i);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    /**
+     * @return false if the key was definitely never added
+     */
+    public boolean mightContain(String key) {
+        long[] hash = hash(key);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(hash, i);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    private long index(long[] hash, int i) {
+        return Math.floorMod(hash[0] + i * hash[1], bitCount);
+    }
+
+    /**
+     * Two independent 64-bit hashes of the UTF-8 bytes (FNV-1a, each finished with the splitmix64 mixer)
+     */
+    private static long[] hash(String key) {
+        byte[] data = key.getBytes(StandardCharsets.UTF_8);
+        long h1 = 0xcbf29ce484222325L;
+        long h2 = 0x84222325cbf29ce4L;
+        for (byte b : data) {
+            h1 = (h1 ^ (b & 0xff)) * 0x100000001b3L;
+            h2 = (h2 ^ (b & 0xff)) * 0x100000001b3L + 0x9e3779b97f4a7c15L;
+        }
+        return new long[]{mix(h1), mix(h2) | 1};
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
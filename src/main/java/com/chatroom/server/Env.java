@@ -0,0 +1,57 @@
+package com.chatroom.server;
+
+/**
+ * Env - Typed access to environment variable configuration
+ *
+ * Every option falls back to a default so the app runs locally with no setup,
+ * the same way PORT does.
+ */
+public final class Env {
+
+    private Env() {}
+
+    public static String getString(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return (value != null && !value.isBlank()) ? value.trim() : defaultValue;
+    }
+
+    public static int getInt(String name, int defaultValue) {
+        return (int) getLong(name, defaultValue);
+    }
+
+    public static long getLong(String name, long defaultValue) {
+        String value = getString(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("⚠️ Invalid value for " + name + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static double getDouble(String name, double defaultValue) {
+        String value = getString(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.err.println("⚠️ Invalid value for " + name + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String name, boolean defaultValue) {
+        String value = getString(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        return value.equalsIgnoreCase("true") || value.equals("1") || value.equalsIgnoreCase("yes");
+    }
+}
@@ -0,0 +1,156 @@
+package com.chatroom.server;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * HashedTimerWheel - Many cheap timeouts on a single thread
+ *
+ * Timeouts are hashed into a ring of buckets by deadline. A worker thread
+ * advances one bucket per tick and runs the timeouts whose deadline has
+ * passed; a timeout further away than one full turn waits for the right
+ * number of rounds. Scheduling and cancelling are O(1), and there is one
+ * thread for all timers instead of one scheduled task per timer.
+ *
+ * Precision is one tick, which is fine for heartbeats and idle checks.
+ * Tasks run on the wheel thread, so they must be short and must not block.
+ */
+public class HashedTimerWheel implements AutoCloseable {
+    private final long tickNanos;
+    private final int mask;
+    private final Queue<Timeout>[] buckets;
+
+    // New timeouts from other threads, moved into buckets by the worker
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running = true;
+
+    /**
+     * @param tick - Duration of one tick
+     * @param unit - Unit of tick
+     * @param wheelSize - Number of buckets, rounded up to a power of two
+     * @param name - Worker thread name
+     */
+    public HashedTimerWheel(long tick, TimeUnit unit, int wheelSize, String name) {
+        int size = Integer.highestOneBit(Math.max(wheelSize, 1) * 2 - 1);
+        this.tickNanos = unit.toNanos(tick);
+        this.mask = size - 1;
+
+        // Generic arrays can't be created directly; every slot gets a Queue<Timeout> below
+        @SuppressWarnings("unchecked")
+        Queue<Timeout>[] ring = (Queue<Timeout>[]) new Queue<?>[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new ArrayDeque<>();
+        }
+        this.buckets = ring;
+
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Handle to a scheduled task
+     */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadline; // nanos since wheel start
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the task; it is dropped lazily when its bucket comes around
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Run a task once after a delay
+     * @return Handle for cancelling
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startNanos + unit.toNanos(delay));
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        long tick = 0;
+
+        while (running) {
+            // Sleep until the end of the current tick
+            long tickEnd = (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = tickEnd - (System.nanoTime() - startNanos)) > 0) {
+                LockSupport.parkNanos(sleep);
+                if (!running) {
+                    return;
+                }
+            }
+
+            transferPending(tick);
+            expire(buckets[(int) (tick & mask)], tickEnd);
+            tick++;
+        }
+    }
+
+    private void transferPending(long currentTick) {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+
+            long deadlineTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (deadlineTick - currentTick) / buckets.length;
+
+            // Already overdue: run in the current bucket
+            long bucketTick = Math.max(deadlineTick, currentTick);
+            buckets[(int) (bucketTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket, long tickEnd) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.remainingRounds <= 0 && timeout.deadline <= tickEnd) {
+                iterator.remove();
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("❌ Timer task failed: " + e.getMessage());
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+}
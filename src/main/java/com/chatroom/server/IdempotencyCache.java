@@ -0,0 +1,187 @@
+package com.chatroom.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * IdempotencyCache - Remembers the result of recent operations by client key
+ *
+ * A retried request carries the same key as the original, so it gets the
+ * original result back instead of running the operation again. Bounded in
+ * both directions:
+ * - time: entries expire after ttl
+ * - size: at most maxEntries, the oldest entry is evicted first
+ *
+ * Every entry lives for the same ttl, so insertion order is also expiry
+ * order and a LinkedHashMap gives O(1) eviction from the head.
+ *
+ * Concurrent requests with the same key are coalesced: the first one runs
+ * the operation, the others wait for its result. A failed operation is not
+ * remembered, so the next retry runs it again.
+ */
+public class IdempotencyCache<K, V> {
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Guarded by lock, oldest first
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static final class Entry<V> {
+        final long createdAt;
+        final CompletableFuture<V> result = new CompletableFuture<>();
+
+        Entry(long createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * @param ttl - How long a result is remembered
+     * @param unit - Unit of ttl
+     * @param maxEntries - Upper bound on remembered keys
+     */
+    public IdempotencyCache(long ttl, TimeUnit unit, int maxEntries) {
+        if (ttl <= 0 || maxEntries < 1) {
+            throw new IllegalArgumentException("Idempotency cache settings must be positive");
+        }
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Return the remembered result for a key, or run the operation once
+     * @param key - Client key (scoped by the caller, e.g. per user)
+     * @param operation - Runs only if the key is not remembered
+     * @return Result of the first successful run for this key
+     */
+    public V getOrCompute(K key, Supplier<V> operation) {
+        Entry<V> entry = new Entry<>(System.nanoTime());
+        Entry<V> existing = claim(key, entry);
+
+        if (existing != null) {
+            hits.incrementAndGet();
+            try {
+                return existing.result.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause()
+                        : e;
+            }
+        }
+
+        misses.incrementAndGet();
+        try {
+            V value = operation.get();
+            entry.result.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            forget(key, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Same as getOrCompute for an operation that completes later
+     * Neither the caller nor concurrent duplicates block; a repeated key
+     * gets a future of the first run's result.
+     * @param operation - Starts the operation, runs only if the key is not remembered
+     */
+    public CompletableFuture<V> getOrComputeAsync(K key, Supplier<CompletableFuture<V>> operation) {
+        Entry<V> entry = new Entry<>(System.nanoTime());
+        Entry<V> existing = claim(key, entry);
+
+        if (existing != null) {
+            hits.incrementAndGet();
+            return existing.result.copy();
+        }
+
+        misses.incrementAndGet();
+        CompletableFuture<V> started;
+        try {
+            started = operation.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+
+        started.whenComplete((value, error) -> {
+            if (error != null) {
+                forget(key, entry);
+                entry.result.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            } else {
+                entry.result.complete(value);
+            }
+        });
+        return entry.result.copy();
+    }
+
+    /**
+     * Insert a fresh entry for the key unless one is remembered
+     * @return The remembered entry, or null if the fresh one was inserted (caller runs the operation)
+     */
+    private Entry<V> claim(K key, Entry<V> fresh) {
+        lock.lock();
+        try {
+            evictExpired(fresh.createdAt);
+
+            Entry<V> existing = entries.get(key);
+            if (existing != null) {
+                return existing;
+            }
+
+            entries.put(key, fresh);
+            if (entries.size() > maxEntries) {
+                Iterator<Entry<V>> eldest = entries.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void forget(K key, Entry<V> entry) {
+        lock.lock();
+        try {
+            entries.remove(key, entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext() && now - it.next().getValue().createdAt >= ttlNanos) {
+            it.remove();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
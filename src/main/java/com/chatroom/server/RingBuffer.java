@@ -0,0 +1,268 @@
+package com.chatroom.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * RingBuffer - Bounded, lock-free event pipeline with single-writer stages
+ *
+ * Events live in a preallocated ring of reusable slots. Producers claim a
+ * sequence number with one CAS, fill the slot and publish it. Each stage
+ * runs on its own thread and handles every event in sequence order, after
+ * the previous stage is done with it:
+ *
+ *   producers -> stage 0 -> stage 1 -> ... -> last stage -> slot reusable
+ *
+ * Because each stage is the only thread touching a slot while it holds
+ * it, stages need no locks, and a stage that falls behind simply handles a
+ * larger batch next time (endOfBatch lets it group work, e.g. one database
+ * transaction per batch). When the last stage is a full ring behind,
+ * tryClaim() fails instead of blocking, so callers can shed load.
+ *
+ * Idle stages spin briefly and then park; publish() and each finished
+ * batch unpark the next stage.
+ */
+public class RingBuffer<E> implements AutoCloseable {
+    private static final int SPIN_TRIES = 100;
+    // Only a safety net: publishers unpark the stage, so a long park adds no latency
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Work done by one stage for each event
+     */
+    @FunctionalInterface
+    public interface Handler<E> {
+        /**
+         * @param endOfBatch - True for the last event currently available to this stage
+         */
+        void onEvent(E event, long sequence, boolean endOfBatch) throws Exception;
+    }
+
+    private final Object[] slots;
+    private final int mask;
+    private final AtomicLong claimCursor = new AtomicLong(-1);
+    // Sequence last published into each slot, so stage 0 can tell which claims are complete
+    private final AtomicLongArray published;
+    private final List<Stage> stages = new ArrayList<>();
+    private volatile boolean running = true;
+
+    /**
+     * @param size - Number of slots, rounded up to a power of two
+     * @param factory - Creates the reusable slot objects
+     */
+    public RingBuffer(int size, Supplier<E> factory) {
+        if (size < 1 || size > (1 << 30)) {
+            throw new IllegalArgumentException("Ring size must be between 1 and 2^30");
+        }
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        this.slots = new Object[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = factory.get();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Add a stage after the existing ones (all stages must be added before start)
+     */
+    public RingBuffer<E> then(String name, Handler<E> handler) {
+        stages.add(new Stage(name, handler, stages.size()));
+        return this;
+    }
+
+    /**
+     * Start one daemon thread per stage
+     */
+    public RingBuffer<E> start() {
+        if (stages.isEmpty()) {
+            throw new IllegalStateException("Ring buffer needs at least one stage");
+        }
+        for (Stage stage : stages) {
+            stage.thread.start();
+        }
+        return this;
+    }
+
+    /**
+     * Claim the next slot
+     * @return Sequence to fill and publish, or -1 if the ring is full
+     */
+    public long tryClaim() {
+        AtomicLong gate = stages.get(stages.size() - 1).sequence;
+        while (true) {
+            long current = claimCursor.get();
+            long next = current + 1;
+            if (next - slots.length > gate.get()) {
+                return -1;
+            }
+            if (claimCursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Slot of a claimed (or handled) sequence
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) slots[(int) (sequence & mask)];
+    }
+
+    /**
+     * Hand a filled slot to the first stage
+     */
+    public void publish(long sequence) {
+        published.set((int) (sequence & mask), sequence);
+        LockSupport.unpark(stages.get(0).thread);
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Claimed events not yet through the last stage
+     */
+    public long getBacklog() {
+        return claimCursor.get() - stages.get(stages.size() - 1).sequence.get();
+    }
+
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    /**
+     * Stop after every published event has gone through all stages
+     */
+    @Override
+    public void close() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (getBacklog() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        running = false;
+        for (Stage stage : stages) {
+            LockSupport.unpark(stage.thread);
+        }
+    }
+
+    /**
+     * One single-threaded stage and its counters
+     */
+    public class Stage {
+        private final String name;
+        private final Handler<E> handler;
+        private final int index;
+        private final Thread thread;
+        // Last sequence this stage has finished
+        private final AtomicLong sequence = new AtomicLong(-1);
+
+        // Written by the stage thread only
+        private volatile long events;
+        private volatile long batches;
+        private volatile long busyNanos;
+        private volatile long maxBatchNanos;
+        private volatile long errors;
+
+        private Stage(String name, Handler<E> handler, int index) {
+            this.name = name;
+            this.handler = handler;
+            this.index = index;
+            this.thread = new Thread(this::run, "ring-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            long next = 0;
+            int idle = 0;
+            while (running) {
+                long available = available(next);
+                if (available < next) {
+                    if (++idle < SPIN_TRIES) {
+                        Thread.onSpinWait();
+                    } else {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    continue;
+                }
+                idle = 0;
+
+                long start = System.nanoTime();
+                for (long seq = next; seq <= available; seq++) {
+                    try {
+                        handler.onEvent(get(seq), seq, seq == available);
+                    } catch (Throwable t) {
+                        // A handler must deal with its own failures; never stall the ring
+                        errors++;
+                        System.err.println("❌ Ring stage " + name + " failed on event " + seq + ": " + t);
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+
+                events += available - next + 1;
+                batches++;
+                busyNanos += elapsed;
+                if (elapsed > maxBatchNanos) {
+                    maxBatchNanos = elapsed;
+                }
+
+                sequence.set(available);
+                if (index + 1 < stages.size()) {
+                    LockSupport.unpark(stages.get(index + 1).thread);
+                }
+                next = available + 1;
+            }
+        }
+
+        /**
+         * Highest sequence this stage may handle, at most one ring ahead of next
+         */
+        private long available(long next) {
+            if (index > 0) {
+                return stages.get(index - 1).sequence.get();
+            }
+
+            long limit = next + slots.length - 1;
+            long seq = next;
+            while (seq <= limit && published.get((int) (seq & mask)) == seq) {
+                seq++;
+            }
+            return seq - 1;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getEvents() {
+            return events;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        public long getMaxBatchNanos() {
+            return maxBatchNanos;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+    }
+}
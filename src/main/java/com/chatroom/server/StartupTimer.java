@@ -0,0 +1,55 @@
+package com.chatroom.server;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * StartupTimer - Breaks down time-to-first-request by startup phase
+ *
+ * Phase "jvm" is the time from process start until main() ran (JVM boot and
+ * loading the main class), every other phase is measured between calls
+ * to {@link #mark(String)}.
+ */
+public class StartupTimer {
+    private final long mainStartNanos = System.nanoTime();
+    private final Instant mainStartInstant = Instant.now();
+    private final List<String> names = new ArrayList<>();
+    private final List<Long> durations = new ArrayList<>();
+    private long lastMark = mainStartNanos;
+
+    /**
+     * Close the current phase
+     * @param phase - Name of the work done since the previous mark
+     */
+    public synchronized void mark(String phase) {
+        long now = System.nanoTime();
+        names.add(phase);
+        durations.add(now - lastMark);
+        lastMark = now;
+    }
+
+    /**
+     * @return Millis from process start until main(), or -1 if unknown
+     */
+    public long getJvmBootMillis() {
+        return ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, mainStartInstant).toMillis())
+                .orElse(-1L);
+    }
+
+    public synchronized void printReport() {
+        long jvm = getJvmBootMillis();
+        long total = (lastMark - mainStartNanos) / 1_000_000;
+
+        System.out.println("⏱️ Startup timing:");
+        if (jvm >= 0) {
+            System.out.printf("  %-22s %6d ms%n", "jvm", jvm);
+        }
+        for (int i = 0; i < names.size(); i++) {
+            System.out.printf("  %-22s %6d ms%n", names.get(i), durations.get(i) / 1_000_000);
+        }
+        System.out.printf("  %-22s %6d ms%n", "total", total + Math.max(jvm, 0));
+    }
+}
@@ -0,0 +1,116 @@
+package com.chatroom.server;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * VirtualThreadPool - Jetty ThreadPool that runs every task on its own virtual thread
+ *
+ * Spark routes block on JDBC and BCrypt. With a platform pool the number of
+ * Jetty threads caps how many requests can be in flight; with virtual threads
+ * a blocked request only costs a small heap-allocated stack.
+ *
+ * The JDK 21 API is looked up reflectively so the default Java 17 build still
+ * compiles. Use {@link #isSupported()} before creating the pool.
+ *
+ * Jetty's low-resources handling is effectively off in this mode:
+ * isLowOnThreads() is always false and getIdleThreads() always 0, so a
+ * LowResourceMonitor or the connectors' "low on threads" checks never
+ * trigger. Overload protection comes from the rate limits and
+ * OverloadFilter instead. Throughput against the platform pool:
+ * ThreadModeBenchmark (mvn -Pbenchmark package).
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+    private final ExecutorService executor;
+    private final AtomicInteger activeThreads = new AtomicInteger();
+
+    public VirtualThreadPool(String namePrefix) {
+        this.executor = newVirtualExecutor(namePrefix);
+    }
+
+    /**
+     * Check if the running JVM has virtual threads (JDK 21+)
+     */
+    public static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Equivalent to Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory())
+     */
+    private static ExecutorService newVirtualExecutor(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads require JDK 21 or newer", e);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            activeThreads.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                activeThreads.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            // Keep waiting until the pool is stopped
+        }
+    }
+
+    @Override
+    public int getThreads() {
+        return activeThreads.get();
+    }
+
+    /**
+     * Virtual threads are created on demand, there is never an idle one waiting
+     * (always 0, see the class comment)
+     */
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    /**
+     * A new virtual thread is always available, so Jetty never sees this pool as low
+     */
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
@@ -0,0 +1,243 @@
+package com.chatroom.server;
+
+import com.chatroom.http.JsonEncoder;
+import com.chatroom.model.Message;
+import com.chatroom.model.User;
+import com.chatroom.repository.Database;
+import com.chatroom.repository.MessageRepository;
+import com.chatroom.repository.UserRepository;
+import com.chatroom.service.MessageService;
+import com.chatroom.service.UserService;
+import com.chatroom.websocket.WebSocketHandler;
+import spark.Request;
+import spark.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WarmUp - Synthetic traffic that runs before the instance reports ready
+ *
+ * A fresh JVM interprets everything: the first real requests after a
+ * deploy pay for class loading and JIT compilation of Jetty, the filters,
+ * JDBC row mapping and JSON encoding, which shows up as a p99 spike on every
+ * rollout. This runs the same code paths until they are compiled:
+ *
+ * 1. repositories and services against a scratch SQLite file (the real
+ *    database is never written)
+ * 2. WebSocket frame parsing and encoding, without any session
+ * 3. REST routes over HTTP on the real port, limited to reads and requests
+ *    that are rejected before they change anything
+ *
+ * Warm-up requests carry a random token that only this process knows and
+ * that is cleared when the run ends. markRequest (the first /api filter)
+ * turns it into a request attribute, and the per-IP rate limit and the
+ * overload filter let such requests through without counting them, so
+ * they neither use up the limit of real clients on the same host nor feed
+ * cold-JVM latencies into the overload limit. The whole run stops at the
+ * deadline, whatever is left.
+ */
+public class WarmUp {
+    /** Set on requests sent by the warm-up, checked by the limiting filters */
+    public static final String REQUEST_ATTRIBUTE = "warmup";
+
+    private static final String TOKEN_HEADER = "X-Warm-Up-Token";
+
+    // Only set while a warm-up runs
+    private static volatile String token;
+
+    private final int port;
+    private final int iterations;
+    private final int requests;
+    private final long deadlineNanos;
+
+    /**
+     * @param port - Port the server listens on
+     * @param iterations - Rounds of repository, service and frame work
+     * @param requests - HTTP requests sent to the REST routes
+     * @param maxSeconds - Time limit for the whole warm-up
+     */
+    public WarmUp(int port, int iterations, int requests, long maxSeconds) {
+        this.port = port;
+        this.iterations = iterations;
+        this.requests = requests;
+        this.deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(maxSeconds);
+    }
+
+    public void run() {
+        long start = System.nanoTime();
+
+        int rounds = warmRepositories();
+        long repositoriesDone = System.nanoTime();
+
+        WebSocketHandler.warmUpFrames(iterations);
+        long framesDone = System.nanoTime();
+
+        byte[] secret = new byte[16];
+        new SecureRandom().nextBytes(secret);
+        token = Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+        int sent;
+        try {
+            sent = warmRoutes();
+        } finally {
+            token = null;
+        }
+        long end = System.nanoTime();
+
+        System.out.println("🔥 Warm-up done in " + (end - start) / 1_000_000 + " ms: " +
+                rounds + " repository rounds (" + (repositoriesDone - start) / 1_000_000 + " ms), " +
+                iterations + " frames (" + (framesDone - repositoriesDone) / 1_000_000 + " ms), " +
+                sent + " requests (" + (end - framesDone) / 1_000_000 + " ms)");
+    }
+
+    /**
+     * Before-filter: mark requests that carry the current warm-up token
+     */
+    public static void markRequest(Request req, Response res) {
+        String expected = token;
+        String presented = req.headers(TOKEN_HEADER);
+        if (expected != null && presented != null && MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.UTF_8), presented.getBytes(StandardCharsets.UTF_8))) {
+            req.attribute(REQUEST_ATTRIBUTE, Boolean.TRUE);
+        }
+    }
+
+    private boolean expired() {
+        return System.nanoTime() - deadlineNanos > 0;
+    }
+
+    /**
+     * Save, page, look up and delete messages in a throwaway database
+     * @return Rounds completed before the deadline
+     */
+    private int warmRepositories() {
+        Path scratch = null;
+        Database database = null;
+        try {
+            scratch = Files.createTempFile("warm-up", ".db");
+            database = new Database(DriverManager.getConnection("jdbc:sqlite:" + scratch));
+            // Nothing here needs to survive a crash; without fsyncs the rounds measure CPU, not the disk
+            database.execute(connection -> {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("PRAGMA synchronous = OFF");
+                    stmt.execute("PRAGMA journal_mode = MEMORY");
+                }
+                return null;
+            });
+
+            UserService userService = new UserService(new UserRepository(database));
+            MessageRepository messageRepository = new MessageRepository(database);
+            MessageService messageService = new MessageService(messageRepository, userService);
+
+            // BCrypt is deliberately slow, two hashes and one check are enough to load it
+            User alice = userService.registerUser("warmup-alice", "warm-up-password");
+            User bob = userService.registerUser("warmup-bob", "warm-up-password");
+            userService.loginUser("warmup-alice", "warm-up-password");
+
+            int round = 0;
+            for (; round < iterations && !expired(); round++) {
+                Message saved = messageService.sendMessage(alice.getId(), "warm-up <" + round + "> & more");
+                messageService.sendDirectMessage("warmup-bob", "warmup-alice", "warm-up dm " + round);
+
+                if (round % 10 == 0) {
+                    List<Message> batch = new ArrayList<>();
+                    for (int i = 0; i < 10; i++) {
+                        batch.add(new Message(bob.getId(), "warmup-bob", "warm-up batch " + i));
+                    }
+                    messageRepository.saveAll(batch);
+                }
+
+                JsonEncoder.messages(messageService.getMessagesPage(null, 50));
+                JsonEncoder.messages(messageService.getConversation(alice.getId(), bob.getId(), null, 50));
+                JsonEncoder.message(messageService.getMessageById(saved.getId()).orElse(saved));
+                messageRepository.findAllById(List.of(saved.getId(), saved.getId() - 1));
+                userService.findUserByUsername("warmup-bob");
+                userService.findUserById(bob.getId());
+
+                // Whole-table reads grow with every round, run them now and then
+                if (round % 50 == 0) {
+                    JsonEncoder.messages(messageService.getMessagesByUser(alice.getId()));
+                    messageService.getAllMessages();
+                }
+
+                messageService.deleteMessage(saved.getId(), alice.getId());
+            }
+            return round;
+
+        } catch (Exception e) {
+            System.err.println("⚠️ Warm-up repository phase failed: " + e.getMessage());
+            return 0;
+
+        } finally {
+            try {
+                if (database != null) {
+                    database.close();
+                }
+                if (scratch != null) {
+                    Files.deleteIfExists(scratch);
+                }
+            } catch (Exception e) {
+                System.err.println("⚠️ Could not remove warm-up database: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Requests that read, or that fail validation before touching any data
+     * @return Requests sent before the deadline
+     */
+    private int warmRoutes() {
+        String base = "http://localhost:" + port;
+        String[][] routes = {
+                {"GET", "/api/messages?limit=50", null},
+                {"GET", "/api/messages/user/1", null},
+                {"GET", "/api/messages/direct/2?userId=1&limit=20", null},
+                {"GET", "/api/users/warmup-nobody/available", null},
+                {"POST", "/api/messages", "{\"userId\":0,\"messageText\":\"\"}"},
+                {"GET", "/api/stats/websocket", null},
+                {"GET", "/", null},
+                {"GET", "/health/live", null},
+        };
+
+        int sent = 0;
+        for (; sent < requests && !expired(); sent++) {
+            String[] route = routes[sent % routes.length];
+            try {
+                HttpURLConnection http = (HttpURLConnection) new URL(base + route[1]).openConnection();
+                http.setRequestMethod(route[0]);
+                http.setRequestProperty("Accept-Encoding", "gzip");
+                http.setRequestProperty(TOKEN_HEADER, token);
+                if (route[2] != null) {
+                    http.setDoOutput(true);
+                    http.getOutputStream().write(route[2].getBytes(StandardCharsets.UTF_8));
+                }
+
+                // Read the body too, so the response writing and compression paths run
+                InputStream body = http.getResponseCode() >= 400 ? http.getErrorStream() : http.getInputStream();
+                if (body != null) {
+                    try (InputStream in = body) {
+                        in.readAllBytes();
+                    }
+                }
+
+            } catch (IOException e) {
+                System.err.println("⚠️ Warm-up request " + route[0] + " " + route[1] + " failed: " + e.getMessage());
+                return sent;
+            }
+        }
+        return sent;
+    }
+}
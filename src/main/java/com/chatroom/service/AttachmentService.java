@@ -0,0 +1,174 @@
+package com.chatroom.service;
+
+import com.chatroom.model.Attachment;
+import com.chatroom.model.Message;
+import com.chatroom.repository.AttachmentRepository;
+import com.chatroom.repository.BlobStore;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AttachmentService - Files attached to chat messages
+ *
+ * Only the sender of a message can attach files to it. Content is streamed
+ * into the BlobStore (never buffered on the heap) and only the metadata row
+ * goes to the database.
+ *
+ * Attachments go away with their message: MessageService reports deleted
+ * ids, their rows are removed and blobs no other attachment uses are
+ * deleted. Lookups also check the message, so rows left by a crash between
+ * the two deletes are never served.
+ */
+public class AttachmentService {
+    private static final int MAX_FILENAME_LENGTH = 255;
+
+    private AttachmentRepository attachmentRepository;
+    private BlobStore blobStore;
+    private MessageService messageService;
+    private long maxBytes;
+
+    // Publishing a blob + saving its row, and deleting an unreferenced blob,
+    // are atomic with respect to each other
+    private final ReentrantLock blobLock = new ReentrantLock();
+
+    /**
+     * @param maxBytes - Size limit per file
+     */
+    public AttachmentService(AttachmentRepository attachmentRepository, BlobStore blobStore,
+                             MessageService messageService, long maxBytes) {
+        this.attachmentRepository = attachmentRepository;
+        this.blobStore = blobStore;
+        this.messageService = messageService;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Check that a message exists and belongs to the user
+     * Call before reading an upload so a rejected request doesn't store anything.
+     */
+    public Message requireOwnMessage(Long messageId, Long userId) {
+        Message message = messageService.getMessageById(messageId)
+                .orElseThrow(() -> new IllegalArgumentException("Message not found"));
+
+        if (!message.getUserId().equals(userId)) {
+            throw new IllegalArgumentException("Access denied: You can only attach files to your own messages");
+        }
+        return message;
+    }
+
+    /**
+     * Store one file and link it to a message
+     *
+     * @param message - Message returned by requireOwnMessage
+     * @param filename - Client file name (path components are dropped)
+     * @param contentType - Declared type, application/octet-stream if missing
+     * @param content - File bytes, read to the end
+     * @return Saved attachment metadata
+     */
+    public Attachment addAttachment(Message message, String filename, String contentType,
+                                    InputStream content) throws IOException {
+        BlobStore.PendingBlob upload = blobStore.receive(content, maxBytes);
+
+        BlobStore.StoredBlob blob;
+        Attachment attachment;
+        blobLock.lock();
+        try {
+            blob = upload.commit();
+            attachment = new Attachment(null, message.getId(), message.getUserId(), blob.getSha256(),
+                    cleanFilename(filename), cleanContentType(contentType), blob.getSize(), LocalDateTime.now());
+            attachmentRepository.save(attachment);
+        } finally {
+            blobLock.unlock();
+        }
+
+        System.out.println("📎 Attachment " + attachment.getId() + " on message " + message.getId() + ": " +
+                attachment.getFilename() + " (" + blob.getSize() + " bytes" + (blob.isDuplicate() ? ", deduplicated" : "") + ")");
+        return attachment;
+    }
+
+    /**
+     * Attachment metadata, empty if it or its message no longer exists
+     */
+    public Optional<Attachment> getAttachment(Long attachmentId) {
+        return attachmentRepository.findById(attachmentId)
+                .filter(attachment -> messageService.getMessageById(attachment.getMessageId()).isPresent());
+    }
+
+    /**
+     * Attachments of one message
+     * @throws IllegalArgumentException if the message doesn't exist
+     */
+    public List<Attachment> getAttachments(Long messageId) {
+        if (messageService.getMessageById(messageId).isEmpty()) {
+            throw new IllegalArgumentException("Message not found");
+        }
+        return attachmentRepository.findByMessageId(messageId);
+    }
+
+    /**
+     * Remove the attachments of deleted messages, and blobs nothing uses any more
+     * Registered with MessageService; a failure is logged, the messages are
+     * already gone and lookups hide their leftover attachments.
+     */
+    public void deleteForMessages(Collection<Long> messageIds) {
+        blobLock.lock();
+        try {
+            int blobs = 0;
+            List<String> hashes = attachmentRepository.deleteByMessageIds(messageIds);
+            for (String sha256 : new HashSet<>(hashes)) {
+                if (!attachmentRepository.isBlobReferenced(sha256) && blobStore.delete(sha256)) {
+                    blobs++;
+                }
+            }
+
+            if (!hashes.isEmpty()) {
+                System.out.println("🗑️ Removed " + hashes.size() + " attachments of " + messageIds.size() +
+                        " deleted messages (" + blobs + " files)");
+            }
+
+        } catch (IOException | RuntimeException e) {
+            System.err.println("❌ Failed to remove attachments of deleted messages: " + e.getMessage());
+        } finally {
+            blobLock.unlock();
+        }
+    }
+
+    /**
+     * File on disk holding an attachment's bytes
+     */
+    public Path contentPath(Attachment attachment) {
+        return blobStore.pathOf(attachment.getSha256());
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private static String cleanFilename(String filename) {
+        if (filename == null || filename.isBlank()) {
+            return "file";
+        }
+
+        // Browsers on Windows may send the full path
+        String name = filename.substring(Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\')) + 1);
+        name = name.replaceAll("[\\p{Cntrl}\"]", "_").trim();
+        if (name.isEmpty()) {
+            return "file";
+        }
+        return name.length() > MAX_FILENAME_LENGTH ? name.substring(0, MAX_FILENAME_LENGTH) : name;
+    }
+
+    private static String cleanContentType(String contentType) {
+        if (contentType == null || !contentType.matches("[\\w.+-]+/[\\w.+-]+(\\s*;.*)?")) {
+            return "application/octet-stream";
+        }
+        return contentType.replaceAll("\\p{Cntrl}", "").trim();
+    }
+}
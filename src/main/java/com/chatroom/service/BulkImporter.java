@@ -0,0 +1,197 @@
+package com.chatroom.service;
+
+import com.chatroom.model.ImportReport;
+import com.chatroom.model.Message;
+import com.chatroom.model.User;
+import com.chatroom.repository.MessageRepository;
+import com.chatroom.repository.MessageStore;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * BulkImporter - Streams NDJSON chat history into the message store
+ *
+ * One JSON object per line:
+ *   {"username": "alice", "messageText": "hi", "timestamp": "2021-03-04T10:15:30"}
+ *
+ * Process:
+ * 1. Read the input line by line, so memory use does not depend on file size
+ * 2. Resolve usernames to user ids through a cache (one lookup per user)
+ * 3. Insert in large batches, each batch is one transaction
+ * 4. Offline (CLI import) on SQLite: relax PRAGMAs and defer index
+ *    rebuilds for the whole run. The server shares its connection with live
+ *    requests, so imports over HTTP keep full durability and every index.
+ */
+public class BulkImporter {
+    private static final long PROGRESS_EVERY = 100_000;
+
+    private final MessageStore messageStore;
+    private final MessageService messageService;
+    private final UserService userService;
+    private final int batchSize;
+    private final boolean bulkLoadMode;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * @param batchSize - Rows per insert transaction
+     * @param bulkLoadMode - Use MessageRepository's bulk load mode; only when
+     *                       nothing else uses the database (CLI import)
+     */
+    public BulkImporter(MessageStore messageStore, MessageService messageService,
+                        UserService userService, int batchSize, boolean bulkLoadMode) {
+        this.messageStore = messageStore;
+        this.messageService = messageService;
+        this.userService = userService;
+        this.batchSize = batchSize;
+        this.bulkLoadMode = bulkLoadMode;
+    }
+
+    /**
+     * One NDJSON line
+     */
+    private static class ImportLine {
+        String username;
+        String messageText;
+        String timestamp;
+    }
+
+    /**
+     * Import NDJSON history
+     * @param in - NDJSON stream, read incrementally
+     * @param createUsers - Create unknown usernames instead of skipping their lines
+     * @return Counts and throughput of the run
+     * @throws IllegalStateException if another import is already running
+     */
+    public ImportReport importNdjson(InputStream in, boolean createUsers) throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("An import is already running");
+        }
+
+        try {
+            MessageRepository sqlite = bulkLoadMode && messageStore instanceof MessageRepository
+                    ? (MessageRepository) messageStore : null;
+            if (sqlite != null) {
+                sqlite.beginBulkLoad();
+            }
+
+            try {
+                return run(in, createUsers);
+            } finally {
+                if (sqlite != null) {
+                    sqlite.endBulkLoad();
+                }
+            }
+        } finally {
+            // Even if rebuilding the indexes failed, later imports must not stay locked out
+            messageService.invalidateHistory();
+            running.set(false);
+        }
+    }
+
+    private ImportReport run(InputStream in, boolean createUsers) throws IOException {
+        Gson gson = new Gson();
+        ImportReport report = new ImportReport();
+        // username -> user id, null value = known missing user
+        Map<String, Long> userIds = new HashMap<>();
+        List<Message> batch = new ArrayList<>(batchSize);
+
+        long start = System.nanoTime();
+        long lineNumber = 0;
+        long nextProgress = PROGRESS_EVERY;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                try {
+                    ImportLine item = gson.fromJson(line, ImportLine.class);
+                    if (item == null || item.username == null || item.messageText == null || item.messageText.isBlank()) {
+                        report.addSkipped(lineNumber, "username and messageText are required");
+                        continue;
+                    }
+                    if (item.messageText.length() > 1000) {
+                        report.addSkipped(lineNumber, "message too long");
+                        continue;
+                    }
+
+                    Long userId = resolveUser(item.username, userIds, createUsers, report);
+                    if (userId == null) {
+                        report.addSkipped(lineNumber, "unknown user " + item.username);
+                        continue;
+                    }
+
+                    LocalDateTime timestamp = item.timestamp != null ? LocalDateTime.parse(item.timestamp) : LocalDateTime.now();
+                    batch.add(new Message(null, userId, item.username, item.messageText, timestamp));
+
+                } catch (JsonSyntaxException | DateTimeParseException e) {
+                    report.addSkipped(lineNumber, e.getMessage());
+                    continue;
+                }
+
+                if (batch.size() >= batchSize) {
+                    flush(batch, report);
+                }
+
+                if (report.getImported() >= nextProgress) {
+                    printProgress(report, start);
+                    nextProgress += PROGRESS_EVERY;
+                }
+            }
+        }
+
+        flush(batch, report);
+        report.finish(System.nanoTime() - start);
+        System.out.println("📥 Import finished: " + report);
+        return report;
+    }
+
+    private Long resolveUser(String username, Map<String, Long> cache, boolean createUsers, ImportReport report) {
+        if (cache.containsKey(username)) {
+            return cache.get(username);
+        }
+
+        Long userId = userService.findUserByUsername(username).map(User::getId).orElse(null);
+        if (userId == null && createUsers) {
+            try {
+                userId = userService.createImportedUser(username).getId();
+                report.addUserCreated();
+            } catch (IllegalArgumentException e) {
+                // Invalid username (e.g. too short), cached as missing below
+            }
+        }
+
+        cache.put(username, userId);
+        return userId;
+    }
+
+    private void flush(List<Message> batch, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        messageService.importMessages(batch);
+        report.addImported(batch.size());
+        batch.clear();
+    }
+
+    private void printProgress(ImportReport report, long start) {
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        System.out.printf("📥 Imported %,d rows (%,d rows/s)%n", report.getImported(), (long) (report.getImported() / seconds));
+    }
+}
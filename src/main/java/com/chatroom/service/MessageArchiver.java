@@ -0,0 +1,170 @@
+package com.chatroom.service;
+
+import com.chatroom.model.Message;
+import com.chatroom.repository.MessageArchive;
+import com.chatroom.repository.MessageRepository;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageArchiver - Background retention job
+ *
+ * Periodically moves messages older than the retention period out of SQLite
+ * into the compressed MessageArchive.
+ *
+ * Process:
+ * 1. Scan the live table in id order, in chunks, until the first message that
+ *    is still within the retention period
+ * 2. Write the scanned messages into day-partitioned segments and fsync them
+ * 3. Only then delete the archived ids from SQLite, in small chunks
+ *
+ * Because step 3 deletes exactly "id <= last archived id", a crash at any
+ * point is repaired by the next run, which first removes leftovers that are
+ * already in the archive.
+ */
+public class MessageArchiver {
+    private static final int SCAN_CHUNK = 500;
+    // The connection lock is not fair: without a real pause the archiver
+    // takes it straight back before a waiting request thread is scheduled
+    private static final long CHUNK_PAUSE_MILLIS = 5;
+
+    private final MessageRepository messageRepository;
+    private final MessageArchive archive;
+    private final MessageService messageService;
+    private final Duration retention;
+    private final int deleteChunk;
+    private final ScheduledExecutorService scheduler;
+
+    public MessageArchiver(MessageRepository messageRepository, MessageArchive archive,
+                           MessageService messageService, Duration retention, int deleteChunk) {
+        this.messageRepository = messageRepository;
+        this.archive = archive;
+        this.messageService = messageService;
+        this.retention = retention;
+        this.deleteChunk = deleteChunk;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "message-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(Duration interval) {
+        scheduler.scheduleWithFixedDelay(this::runSafely, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        System.out.println("🗄️ Message archiver scheduled every " + interval.toMinutes() +
+                " min, retention " + retention.toDays() + " days");
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void runSafely() {
+        try {
+            archiveOldMessages();
+        } catch (Exception e) {
+            System.err.println("❌ Message archival failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Run one archival pass
+     * @return Number of messages moved to the archive
+     */
+    public int archiveOldMessages() throws IOException {
+        // Leftovers from a run that crashed after writing its segments
+        deleteArchivedRows(archive.getMaxArchivedId());
+
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        long lastId = archive.getMaxArchivedId();
+        int archived = 0;
+
+        MessageArchive.SegmentWriter writer = null;
+        LocalDate writerDay = null;
+
+        try {
+            scan:
+            while (true) {
+                List<Message> chunk = messageRepository.findAfterId(lastId, SCAN_CHUNK);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+
+                for (Message message : chunk) {
+                    if (!message.getTimestamp().isBefore(cutoff)) {
+                        break scan;
+                    }
+
+                    // Time partitioning: one segment per calendar day
+                    LocalDate day = message.getTimestamp().toLocalDate();
+                    if (writer == null || !day.equals(writerDay)) {
+                        if (writer != null) {
+                            writer.finish();
+                        }
+                        writer = archive.newSegment(day, message.getId());
+                        writerDay = day;
+                    }
+
+                    writer.append(message);
+                    lastId = message.getId();
+                    archived++;
+                }
+            }
+
+            if (writer != null) {
+                writer.finish();
+                writer = null;
+            }
+
+        } finally {
+            if (writer != null) {
+                writer.abort();
+            }
+            // Scanned but not archived rows stay live, deletes no longer need tombstones for them
+            archive.clearReservation();
+        }
+
+        if (archived > 0) {
+            int deleted = deleteArchivedRows(archive.getMaxArchivedId());
+            System.out.println("🗄️ Archived " + archived + " messages older than " + cutoff.toLocalDate() +
+                    " (" + deleted + " rows removed, " + archive.getSegmentCount() + " segments)");
+        }
+        return archived;
+    }
+
+    private int deleteArchivedRows(long maxArchivedId) {
+        if (maxArchivedId <= 0) {
+            return 0;
+        }
+
+        int total = 0;
+        int deleted;
+        do {
+            deleted = messageRepository.deleteChunkUpTo(maxArchivedId, deleteChunk);
+            total += deleted;
+
+            // Let waiting requests take the connection between chunks
+            if (deleted > 0) {
+                try {
+                    Thread.sleep(CHUNK_PAUSE_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } while (deleted > 0);
+
+        if (total > 0) {
+            messageService.invalidateHistory();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,321 @@
+package com.chatroom.service;
+
+import com.chatroom.model.Message;
+import com.chatroom.repository.MessageStore;
+import com.chatroom.server.RingBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * MessagePipeline - One path for every room message, whatever it came in on
+ *
+ * REST sends and WebSocket chat frames are both published into a
+ * RingBuffer and go through the same stages:
+ * 1. validate: check the text and resolve the sender
+ * 2. persist: save everything the stage has gathered in one transaction
+ * 3. fan out: hand each saved message to the listener (WebSocket + SSE)
+ *
+ * Each stage runs on its own thread, so messages get ids and are broadcast
+ * in exactly the order they were accepted, and a burst is saved as one
+ * batch instead of one transaction per message. The caller's future
+ * completes after the persist stage; it fails with IllegalArgumentException
+ * for invalid messages and RejectedExecutionException when the ring is full.
+ *
+ * WebSocket senders without an account are still broadcast but not saved
+ * (messages need a user id). Messages saved outside the pipeline (REST
+ * batches) are published with publishSaved and only go through fan-out.
+ */
+public class MessagePipeline implements AutoCloseable {
+
+    /**
+     * Reusable ring slot, filled by the producer and then owned by one stage at a time
+     */
+    static class Event {
+        Long userId;
+        String username;
+        String text;
+        String idempotencyKey;
+        long acceptedNanos;
+        CompletableFuture<Message> result;
+        Message message;
+        boolean failed;
+        boolean saved;
+        boolean duplicate;
+
+        void clear() {
+            userId = null;
+            username = null;
+            text = null;
+            idempotencyKey = null;
+            result = null;
+            message = null;
+            failed = false;
+            saved = false;
+            duplicate = false;
+        }
+    }
+
+    private final MessageService messageService;
+    private final MessageStore messageStore;
+    private final RingBuffer<Event> ring;
+
+    // Persist stage batch, only touched by the persist thread
+    private final List<Event> pending = new ArrayList<>();
+
+    // Broadcasts saved messages, set from Main (null = persist only)
+    private volatile Consumer<Message> fanOut;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile long delivered;
+    private volatile long totalLatencyNanos;
+    private volatile long maxLatencyNanos;
+
+    /**
+     * @param ringSize - Messages that may be waiting in the pipeline before new ones are rejected
+     */
+    public MessagePipeline(MessageService messageService, MessageStore messageStore, int ringSize) {
+        this.messageService = messageService;
+        this.messageStore = messageStore;
+        this.ring = new RingBuffer<>(ringSize, Event::new)
+                .then("validate", this::validate)
+                .then("persist", this::persist)
+                .then("fanout", this::fanOut)
+                .start();
+    }
+
+    public void setFanOut(Consumer<Message> fanOut) {
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * Ingest a message from a known user (REST)
+     */
+    public CompletableFuture<Message> submit(Long userId, String text, String idempotencyKey) {
+        return publish(userId, null, text, idempotencyKey);
+    }
+
+    /**
+     * Ingest a message by username (WebSocket chat frame)
+     * The sender's id is only known after validation, so a repeated key is
+     * looked up there (REST callers check the store before submitting).
+     */
+    public CompletableFuture<Message> submit(String username, String text, String idempotencyKey) {
+        return publish(null, username, text, idempotencyKey);
+    }
+
+    /**
+     * Broadcast messages that were already committed elsewhere (REST batch)
+     * They keep the fan-out order of everything accepted before them. If the
+     * ring is full they are not broadcast; they are still in the history.
+     * @return Number of messages that could not be queued
+     */
+    public int publishSaved(List<Message> messages) {
+        int dropped = 0;
+        for (Message message : messages) {
+            long sequence = ring.tryClaim();
+            if (sequence < 0) {
+                rejected.incrementAndGet();
+                dropped++;
+                continue;
+            }
+
+            Event event = ring.get(sequence);
+            event.message = message;
+            event.saved = true;
+            event.acceptedNanos = System.nanoTime();
+            ring.publish(sequence);
+        }
+        return dropped;
+    }
+
+    private CompletableFuture<Message> publish(Long userId, String username, String text, String idempotencyKey) {
+        CompletableFuture<Message> result = new CompletableFuture<>();
+        long sequence = ring.tryClaim();
+        if (sequence < 0) {
+            rejected.incrementAndGet();
+            result.completeExceptionally(new RejectedExecutionException("Message pipeline is full"));
+            return result;
+        }
+
+        Event event = ring.get(sequence);
+        event.userId = userId;
+        event.username = username;
+        event.text = text;
+        event.idempotencyKey = idempotencyKey;
+        event.acceptedNanos = System.nanoTime();
+        event.result = result;
+        ring.publish(sequence);
+        return result;
+    }
+
+    /**
+     * Stage 1: build the message, or fail the event
+     */
+    private void validate(Event event, long sequence, boolean endOfBatch) {
+        if (event.saved) {
+            return;
+        }
+        try {
+            event.message = event.userId != null
+                    ? messageService.prepareMessage(event.userId, event.text)
+                    : messageService.prepareGuestMessage(event.username, event.text);
+            event.message.setIdempotencyKey(event.idempotencyKey);
+
+            // Keyed WebSocket frame from an account: an original in the store wins
+            if (event.userId == null && event.idempotencyKey != null && event.message.getUserId() != null) {
+                Optional<Message> original =
+                        messageStore.findByIdempotencyKey(event.message.getUserId(), event.idempotencyKey);
+                if (original.isPresent()) {
+                    event.message = original.get();
+                    event.duplicate = true;
+                    event.result.complete(event.message);
+                }
+            }
+        } catch (RuntimeException e) {
+            fail(event, e);
+        }
+    }
+
+    /**
+     * Stage 2: save the gathered messages in one transaction at the end of each batch
+     */
+    private void persist(Event event, long sequence, boolean endOfBatch) {
+        if (!event.failed && !event.saved && !event.duplicate && event.message.getUserId() != null) {
+            pending.add(event);
+        }
+        if (!endOfBatch || pending.isEmpty()) {
+            return;
+        }
+
+        List<Message> messages = new ArrayList<>(pending.size());
+        for (Event e : pending) {
+            messages.add(e.message);
+        }
+
+        try {
+            messageStore.saveAll(messages);
+        } catch (RuntimeException batchError) {
+            // One bad row (e.g. a duplicate idempotency key) must not fail the others.
+            // A failed saveAll leaves ids null; a message with an id is stored already.
+            for (Event e : pending) {
+                if (e.message.getId() == null) {
+                    saveOne(e);
+                }
+            }
+        }
+
+        for (Event e : pending) {
+            if (!e.failed) {
+                if (!e.duplicate) {
+                    messageService.recordSaved(e.message);
+                }
+                e.result.complete(e.message);
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * Save one message after its batch failed
+     * A key that is already stored (a retry racing the original, or a key
+     * older than the cache) answers with the stored message instead of failing.
+     */
+    private void saveOne(Event event) {
+        try {
+            messageStore.save(event.message);
+        } catch (RuntimeException rowError) {
+            Optional<Message> original;
+            try {
+                original = event.idempotencyKey != null
+                        ? messageStore.findByIdempotencyKey(event.message.getUserId(), event.idempotencyKey)
+                        : Optional.empty();
+            } catch (RuntimeException lookupError) {
+                original = Optional.empty();
+            }
+            if (original.isPresent()) {
+                event.message = original.get();
+                event.duplicate = true;
+            } else {
+                fail(event, rowError);
+            }
+        }
+    }
+
+    /**
+     * Stage 3: broadcast, then free the slot
+     */
+    private void fanOut(Event event, long sequence, boolean endOfBatch) {
+        try {
+            if (!event.failed && !event.duplicate) {
+                // Guest messages skipped the persist stage, saved ones have no caller waiting
+                if (event.result != null) {
+                    event.result.complete(event.message);
+                }
+
+                Consumer<Message> listener = fanOut;
+                if (listener != null) {
+                    listener.accept(event.message);
+                }
+
+                long latency = System.nanoTime() - event.acceptedNanos;
+                delivered++;
+                totalLatencyNanos += latency;
+                if (latency > maxLatencyNanos) {
+                    maxLatencyNanos = latency;
+                }
+            }
+        } finally {
+            event.clear();
+        }
+    }
+
+    private static void fail(Event event, RuntimeException e) {
+        event.failed = true;
+        event.result.completeExceptionally(e);
+    }
+
+    public List<? extends RingBuffer<?>.Stage> getStages() {
+        return ring.getStages();
+    }
+
+    public int getCapacity() {
+        return ring.getCapacity();
+    }
+
+    public long getBacklog() {
+        return ring.getBacklog();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Average time from ingest to the end of fan-out, in microseconds
+     */
+    public long getAverageLatencyMicros() {
+        long count = delivered;
+        return count == 0 ? 0 : totalLatencyNanos / count / 1000;
+    }
+
+    public long getMaxLatencyMicros() {
+        return maxLatencyNanos / 1000;
+    }
+
+    /**
+     * Drain the ring and stop the stage threads
+     */
+    @Override
+    public void close() {
+        ring.close();
+    }
+}
@@ -1,48 +1,492 @@
 package com.chatroom.service;
 
+import com.chatroom.model.BatchResult;
 import com.chatroom.model.Message;
 import com.chatroom.model.User;
-import com.chatroom.repository.MessageRepository;
+import com.chatroom.repository.AsyncMessageStore;
+import com.chatroom.repository.MessageStore;
+import com.chatroom.server.IdempotencyCache;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 
 public class MessageService {
-    private MessageRepository messageRepository;
+    public static final int MAX_BATCH_SIZE = 500;
+    public static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    private MessageStore messageRepository;
     private UserService userService;
 
-    public MessageService(MessageRepository messageRepository, UserService userService) {
+    // History version = (epoch, max message id, delete counter)
+    // Any insert raises maxMessageId and any delete bumps deleteCount, so the
+    // version changes whenever the result of a history query could change.
+    // The epoch keeps versions from before a restart from ever matching.
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong maxMessageId = new AtomicLong();
+    private final AtomicLong deleteCount = new AtomicLong();
+
+    // Recent sends by "userId:key", replaced from Main with configured bounds
+    private IdempotencyCache<String, Message> idempotencyCache =
+            new IdempotencyCache<>(24, TimeUnit.HOURS, 10_000);
+
+    // Ingest -> validate -> persist -> fan out, set from Main
+    private MessagePipeline pipeline;
+
+    // Same store on the DatabaseExecutor, for the *Async methods, set from Main
+    private AsyncMessageStore asyncStore;
+
+    // Told the ids of messages deleted by a user (not by the archiver), set from Main
+    private Consumer<Collection<Long>> deleteListener = messageIds -> {};
+
+    public MessageService(MessageStore messageRepository, UserService userService) {
         this.messageRepository = messageRepository;
         this.userService = userService;
+        this.maxMessageId.set(messageRepository.findMaxId());
+    }
+
+    public void setIdempotencyCache(IdempotencyCache<String, Message> idempotencyCache) {
+        this.idempotencyCache = idempotencyCache;
+    }
+
+    public IdempotencyCache<String, Message> getIdempotencyCache() {
+        return idempotencyCache;
+    }
+
+    /**
+     * Route single sends through the staged pipeline (null = save on the calling thread)
+     */
+    public void setPipeline(MessagePipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public MessagePipeline getPipeline() {
+        return pipeline;
+    }
+
+    public void setDeleteListener(Consumer<Collection<Long>> deleteListener) {
+        this.deleteListener = deleteListener;
+    }
+
+    public void setAsyncStore(AsyncMessageStore asyncStore) {
+        this.asyncStore = asyncStore;
     }
 
 
     public Message sendMessage(Long userId, String messageText) {
-        // Validate message text
-        if (messageText == null || messageText.trim().isEmpty()) {
-            throw new IllegalArgumentException("Message cannot be empty");
+        return sendMessage(userId, messageText, null);
+    }
+
+    /**
+     * Send a message at most once per idempotency key
+     *
+     * Process:
+     * 1. Recent keys are answered from the in-memory cache (concurrent
+     *    retries wait for the first attempt instead of saving again)
+     * 2. Older keys are looked up in the store's unique key index
+     * 3. Only a key seen nowhere saves a new message
+     *
+     * @param userId - Sender
+     * @param messageText - Message body
+     * @param idempotencyKey - Client-generated key, null to always send
+     * @return The saved message, or the original one for a repeated key
+     */
+    public Message sendMessage(Long userId, String messageText, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return saveMessage(userId, messageText, null);
         }
 
-        if (messageText.length() > 1000) {
-            throw new IllegalArgumentException("Message too long (max 1000 characters)");
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key must be 1-" + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+
+        return idempotencyCache.getOrCompute(userId + ":" + idempotencyKey, () ->
+                messageRepository.findByIdempotencyKey(userId, idempotencyKey)
+                        .orElseGet(() -> saveMessage(userId, messageText, idempotencyKey)));
+    }
+
+    private Message saveMessage(Long userId, String messageText, String idempotencyKey) {
+        if (pipeline != null) {
+            return await(pipeline.submit(userId, messageText, idempotencyKey));
         }
 
+        Message message = prepareMessage(userId, messageText);
+        message.setIdempotencyKey(idempotencyKey);
+        Message saved = messageRepository.save(message);
+        recordSaved(saved);
+        return saved;
+    }
+
+    /**
+     * sendMessage without blocking the caller
+     * Needs the pipeline; the store lookup for older keys runs on the database threads.
+     * @return Completes with the saved (or original) message once it is persisted
+     */
+    public CompletableFuture<Message> sendMessageAsync(Long userId, String messageText, String idempotencyKey) {
+        MessagePipeline pipeline = requirePipeline();
+        if (idempotencyKey == null) {
+            return pipeline.submit(userId, messageText, null);
+        }
+
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Idempotency key must be 1-" + MAX_IDEMPOTENCY_KEY_LENGTH + " characters"));
+        }
+
+        return idempotencyCache.getOrComputeAsync(userId + ":" + idempotencyKey, () ->
+                asyncStore().findByIdempotencyKey(userId, idempotencyKey)
+                        .thenCompose(found -> found.map(CompletableFuture::completedFuture)
+                                .orElseGet(() -> pipeline.submit(userId, messageText, idempotencyKey))));
+    }
+
+    /**
+     * Send a room message from a WebSocket chat frame
+     * Saved if the username has an account, otherwise only broadcast.
+     * A key is stored with the message like a REST send's, so a frame resent
+     * after a restart still finds the original in the store.
+     * @param idempotencyKey - Client-generated key, null to always send
+     * @return Completes with the saved (or original) message, without id for guests
+     */
+    public CompletableFuture<Message> submitChatMessage(String username, String messageText, String idempotencyKey) {
+        if (idempotencyKey != null
+                && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Idempotency key must be 1-" + MAX_IDEMPOTENCY_KEY_LENGTH + " characters"));
+        }
+        return requirePipeline().submit(username, messageText, idempotencyKey);
+    }
+
+    /**
+     * Account id of a username without blocking
+     * @return Completes with null for usernames without an account (guests)
+     */
+    public CompletableFuture<Long> findUserIdAsync(String username) {
+        return userService.findUserByUsernameAsync(username).thenApply(user -> user.map(User::getId).orElse(null));
+    }
+
+    /**
+     * Validate a message and resolve its sender, without saving it
+     */
+    Message prepareMessage(Long userId, String messageText) {
+        // Validate message text
+        validateMessageText(messageText);
+
         // Verify user exists
         // This prevents orphaned messages from non-existent users
         User user = userService.findUserById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
-        // Create and save message
         // Timestamp is set automatically in Message constructor
-        Message message = new Message(userId, user.getUsername(), messageText.trim());
+        return new Message(userId, user.getUsername(), messageText.trim());
+    }
+
+    /**
+     * Same as prepareMessage, by username; unknown usernames get a message without user id
+     */
+    Message prepareGuestMessage(String username, String messageText) {
+        validateMessageText(messageText);
+        if (username == null || username.isBlank()) {
+            throw new IllegalArgumentException("Username is required");
+        }
+
+        Long userId = userService.findUserByUsername(username).map(User::getId).orElse(null);
+        return new Message(userId, username, messageText.trim());
+    }
+
+    void recordSaved(Message saved) {
+        maxMessageId.accumulateAndGet(saved.getId(), Math::max);
+    }
+
+    /**
+     * Wait for a pipeline result, rethrowing the stage's exception as is
+     */
+    private static Message await(CompletableFuture<Message> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Send a direct message to one user
+     * Direct messages are stored with the recipient's id and never show up
+     * in the public history, so the history ETag is left unchanged.
+     *
+     * @param senderUsername - Username of the sender
+     * @param recipientUsername - Username of the recipient
+     * @param messageText - Message body
+     * @return Saved message with ID and recipientId
+     */
+    public Message sendDirectMessage(String senderUsername, String recipientUsername, String messageText) {
+        validateMessageText(messageText);
+        if (recipientUsername == null || recipientUsername.isBlank()) {
+            throw new IllegalArgumentException("Recipient is required");
+        }
+
+        User sender = userService.findUserByUsername(senderUsername)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        User recipient = userService.findUserByUsername(recipientUsername)
+                .orElseThrow(() -> new IllegalArgumentException("Recipient not found"));
+
+        if (sender.getId().equals(recipient.getId())) {
+            throw new IllegalArgumentException("Cannot send a direct message to yourself");
+        }
+
+        Message message = new Message(sender.getId(), sender.getUsername(), messageText.trim());
+        message.setRecipientId(recipient.getId());
         return messageRepository.save(message);
     }
 
+    /**
+     * sendDirectMessage without blocking the caller
+     * Both users are looked up concurrently, then the message is saved, all
+     * on the database threads.
+     */
+    public CompletableFuture<Message> sendDirectMessageAsync(String senderUsername, String recipientUsername,
+                                                             String messageText) {
+        try {
+            validateMessageText(messageText);
+            if (recipientUsername == null || recipientUsername.isBlank()) {
+                throw new IllegalArgumentException("Recipient is required");
+            }
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return userService.findUserByUsernameAsync(senderUsername)
+                .thenCombine(userService.findUserByUsernameAsync(recipientUsername), (senderOpt, recipientOpt) -> {
+                    User sender = senderOpt.orElseThrow(() -> new IllegalArgumentException("User not found"));
+                    User recipient = recipientOpt.orElseThrow(() -> new IllegalArgumentException("Recipient not found"));
+                    if (sender.getId().equals(recipient.getId())) {
+                        throw new IllegalArgumentException("Cannot send a direct message to yourself");
+                    }
+
+                    Message message = new Message(sender.getId(), sender.getUsername(), messageText.trim());
+                    message.setRecipientId(recipient.getId());
+                    return message;
+                })
+                .thenCompose(message -> asyncStore().save(message));
+    }
+
+    /**
+     * Page backwards through the direct messages between two users
+     *
+     * @param userId - Requesting user
+     * @param otherUserId - Other participant
+     * @param beforeId - Cursor (exclusive), null for the newest page
+     * @param limit - Page size (1-500)
+     * @return Messages in both directions, in chronological order
+     */
+    public List<Message> getConversation(Long userId, Long otherUserId, Long beforeId, int limit) {
+        if (limit < 1 || limit > 500) {
+            throw new IllegalArgumentException("Limit must be between 1 and 500");
+        }
+        return messageRepository.findConversation(userId, otherUserId, beforeId, limit);
+    }
+
+    public CompletableFuture<List<Message>> getConversationAsync(Long userId, Long otherUserId, Long beforeId, int limit) {
+        if (limit < 1 || limit > 500) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Limit must be between 1 and 500"));
+        }
+        return asyncStore().findConversation(userId, otherUserId, beforeId, limit);
+    }
+
+    private void validateMessageText(String messageText) {
+        if (messageText == null || messageText.trim().isEmpty()) {
+            throw new IllegalArgumentException("Message cannot be empty");
+        }
+
+        if (messageText.length() > 1000) {
+            throw new IllegalArgumentException("Message too long (max 1000 characters)");
+        }
+    }
+
+    /**
+     * Send many messages in one transaction
+     *
+     * Process:
+     * 1. Validate every item and load all senders with ONE query
+     * 2. Save all valid items in one batched transaction
+     * 3. Hand the saved messages to the pipeline's fan-out stage
+     * 4. Report a result per item (invalid items don't block valid ones)
+     *
+     * @param drafts - Messages with userId and messageText set
+     * @return One result per input item, in input order
+     */
+    public List<BatchResult> sendMessages(List<Message> drafts) {
+        validateBatchSize(drafts.size());
+
+        Set<Long> userIds = new HashSet<>();
+        for (Message draft : drafts) {
+            if (draft.getUserId() != null) {
+                userIds.add(draft.getUserId());
+            }
+        }
+        Map<Long, User> users = userService.findUsersByIds(userIds);
+
+        BatchResult[] results = new BatchResult[drafts.size()];
+        List<Message> valid = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+
+        for (int i = 0; i < drafts.size(); i++) {
+            Message draft = drafts.get(i);
+            try {
+                if (draft.getUserId() == null) {
+                    throw new IllegalArgumentException("userId is required");
+                }
+                validateMessageText(draft.getMessageText());
+
+                User user = users.get(draft.getUserId());
+                if (user == null) {
+                    throw new IllegalArgumentException("User not found");
+                }
+
+                valid.add(new Message(draft.getUserId(), user.getUsername(), draft.getMessageText().trim()));
+                validIndexes.add(i);
+
+            } catch (IllegalArgumentException e) {
+                results[i] = BatchResult.failed(i, null, 400, e.getMessage());
+            }
+        }
+
+        List<Message> saved = messageRepository.saveAll(valid);
+        for (int i = 0; i < saved.size(); i++) {
+            Message message = saved.get(i);
+            results[validIndexes.get(i)] = BatchResult.created(validIndexes.get(i), message);
+            maxMessageId.accumulateAndGet(message.getId(), Math::max);
+        }
+
+        // Committed, now deliver them like single sends (WebSocket + SSE)
+        if (pipeline != null && !saved.isEmpty()) {
+            int dropped = pipeline.publishSaved(saved);
+            if (dropped > 0) {
+                System.err.println("⚠️ Pipeline full, " + dropped + " batch messages saved but not broadcast");
+            }
+        }
+
+        return List.of(results);
+    }
+
+    /**
+     * Delete many messages owned by one user in one transaction
+     * Ownership of all messages is checked with ONE query.
+     *
+     * @param messageIds - Messages to delete
+     * @param userId - User requesting the delete
+     * @return One result per input id, in input order
+     */
+    public List<BatchResult> deleteMessages(List<Long> messageIds, Long userId) {
+        validateBatchSize(messageIds.size());
+
+        Map<Long, Message> found = messageRepository.findAllById(new HashSet<>(messageIds));
+
+        List<BatchResult> results = new ArrayList<>();
+        Set<Long> allowed = new HashSet<>();
+
+        for (int i = 0; i < messageIds.size(); i++) {
+            Long messageId = messageIds.get(i);
+            Message message = found.get(messageId);
+
+            if (message == null) {
+                results.add(BatchResult.failed(i, messageId, 404, "Message not found"));
+            } else if (!message.getUserId().equals(userId)) {
+                results.add(BatchResult.failed(i, messageId, 403, "Access denied: You can only delete your own messages"));
+            } else if (!allowed.add(messageId)) {
+                results.add(BatchResult.failed(i, messageId, 409, "Duplicate message id in batch"));
+            } else {
+                results.add(BatchResult.deleted(i, messageId));
+            }
+        }
+
+        if (messageRepository.deleteAllById(allowed) > 0) {
+            deleteCount.incrementAndGet();
+        }
+        if (!allowed.isEmpty()) {
+            deleteListener.accept(allowed);
+        }
+        return results;
+    }
+
+    /**
+     * Store already-validated messages (bulk import)
+     * @param messages - Messages with userId, username and timestamp set
+     */
+    public void importMessages(List<Message> messages) {
+        for (Message message : messageRepository.saveAll(messages)) {
+            maxMessageId.accumulateAndGet(message.getId(), Math::max);
+        }
+    }
+
+    private void validateBatchSize(int size) {
+        if (size == 0) {
+            throw new IllegalArgumentException("Batch cannot be empty");
+        }
+        if (size > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch too large (max " + MAX_BATCH_SIZE + " items)");
+        }
+    }
+
+    /**
+     * Strong ETag for the current message history
+     *
+     * Must be read BEFORE running the history query: a write that lands in
+     * between then only makes the returned body newer than its tag, which
+     * costs one extra full response later but never serves stale data.
+     *
+     * @param scope - Distinguishes endpoints (e.g. "all" or "user-5")
+     * @return Quoted ETag value
+     */
+    public String getHistoryETag(String scope) {
+        return "\"" + scope + "-" + epoch + "-" + maxMessageId.get() + "-" + deleteCount.get() + "\"";
+    }
+
 
     public List<Message> getAllMessages() {
         return messageRepository.findAllOrderByTimestamp();
     }
 
+    /**
+     * Page backwards through history, including archived messages
+     *
+     * @param beforeId - Cursor (exclusive), null for the newest page
+     * @param limit - Page size (1-500)
+     * @return Messages in chronological order
+     */
+    public List<Message> getMessagesPage(Long beforeId, int limit) {
+        if (limit < 1 || limit > 500) {
+            throw new IllegalArgumentException("Limit must be between 1 and 500");
+        }
+        return messageRepository.findPageBefore(beforeId, limit);
+    }
+
+    public CompletableFuture<List<Message>> getMessagesPageAsync(Long beforeId, int limit) {
+        if (limit < 1 || limit > 500) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Limit must be between 1 and 500"));
+        }
+        return asyncStore().findPageBefore(beforeId, limit);
+    }
+
+    /**
+     * Mark history as changed by something other than send/delete
+     * (e.g. the archiver moving rows out of the live table)
+     */
+    public void invalidateHistory() {
+        deleteCount.incrementAndGet();
+    }
+
     /**
      * Get all messages sent by a specific user
      * Useful for viewing a user's message history
@@ -54,6 +498,10 @@ public class MessageService {
         return messageRepository.findByUserId(userId);
     }
 
+    public CompletableFuture<List<Message>> getMessagesByUserAsync(Long userId) {
+        return asyncStore().findByUserId(userId);
+    }
+
     public void deleteMessage(Long messageId, Long userId) {
         // Find message
         Message message = messageRepository.findById(messageId)
@@ -67,9 +515,29 @@ public class MessageService {
 
 
         messageRepository.deleteById(messageId);
+        deleteCount.incrementAndGet();
+        deleteListener.accept(List.of(messageId));
     }
 
     public Optional<Message> getMessageById(Long messageId) {
         return messageRepository.findById(messageId);
     }
+
+    public CompletableFuture<Optional<Message>> getMessageByIdAsync(Long messageId) {
+        return asyncStore().findById(messageId);
+    }
+
+    private AsyncMessageStore asyncStore() {
+        if (asyncStore == null) {
+            throw new IllegalStateException("Async message store is not configured");
+        }
+        return asyncStore;
+    }
+
+    private MessagePipeline requirePipeline() {
+        if (pipeline == null) {
+            throw new IllegalStateException("Message pipeline is not running");
+        }
+        return pipeline;
+    }
 }
\ No newline at end of file
@@ -1,9 +1,17 @@
 package com.chatroom.service;
 
+import com.chatroom.jfr.PasswordHashEvent;
 import com.chatroom.model.User;
+import com.chatroom.repository.AsyncUserRepository;
 import com.chatroom.repository.UserRepository;
+import com.chatroom.server.BloomFilter;
 import org.mindrot.jbcrypt.BCrypt;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * UserService - Business logic for user operations
@@ -17,12 +25,48 @@ import java.util.Optional;
  * Security Note: Passwords are NEVER stored in plain text!
  * We use BCrypt which is a one-way hashing algorithm designed
  * specifically for password storage.
+ *
+ * Username lookups go through a Bloom filter of every registered name first.
+ * A "definitely not taken" answer skips SQLite entirely; a "maybe" is
+ * confirmed with one indexed query.
+ *
+ * The *Async methods run their queries on the DatabaseExecutor and return
+ * CompletableFutures, for callers that must not block on JDBC.
  */
 public class UserService {
+    private static final double USERNAME_FILTER_FPP = 0.01;
+
     private UserRepository userRepository;
+    private AsyncUserRepository asyncUserRepository;
+    private BloomFilter usernames;
 
     public UserService(UserRepository userRepository) {
         this.userRepository = userRepository;
+        rebuildUsernameFilter();
+    }
+
+    /**
+     * Enable the *Async methods, set from Main
+     */
+    public void setAsyncRepository(AsyncUserRepository asyncUserRepository) {
+        this.asyncUserRepository = asyncUserRepository;
+    }
+
+    /**
+     * Load every username into a fresh filter
+     * Sized for twice the current users (at least 100k) so the false positive
+     * rate stays near 1% while the user base grows.
+     */
+    private void rebuildUsernameFilter() {
+        long start = System.nanoTime();
+        long users = userRepository.count();
+
+        BloomFilter filter = new BloomFilter(Math.max(users * 2, 100_000), USERNAME_FILTER_FPP);
+        userRepository.forEachUsername(filter::add);
+        this.usernames = filter;
+
+        System.out.println("✅ Username filter ready: " + users + " users, " + filter.getBitCount() / 8 / 1024 +
+                " KB, " + (System.nanoTime() - start) / 1_000_000 + " ms");
     }
 
     /**
@@ -30,9 +74,9 @@ public class UserService {
      *
      * Process:
      * 1. Validate username and password
-     * 2. Check if username already exists
+     * 2. If the filter says the name may be taken, confirm before paying for BCrypt
      * 3. Hash password using BCrypt
-     * 4. Save user to database
+     * 4. Save user with one INSERT; the UNIQUE constraint settles races
      *
      * @param username - Unique username
      * @param password - Plain text password (will be hashed)
@@ -54,19 +98,50 @@ public class UserService {
             throw new IllegalArgumentException("Password must be at least 4 characters");
         }
 
-        // Check if username already exists
-        if (userRepository.existsByUsername(username)) {
+        // Floods of signups for taken names stop here, before the BCrypt work
+        if (!isUsernameAvailable(username)) {
             throw new IllegalArgumentException("Username already exists");
         }
 
         // Hash password using BCrypt
         // BCrypt automatically generates a salt and combines it with the hash
         // This makes each password unique even if two users have the same password
+        PasswordHashEvent hashEvent = new PasswordHashEvent();
+        hashEvent.begin();
         String hashedPassword = BCrypt.hashpw(password, BCrypt.gensalt());
+        hashEvent.operation = "hash";
+        hashEvent.matched = true;
+        hashEvent.commit();
 
         // Create and save user
         User user = new User(username, hashedPassword);
-        return userRepository.save(user);
+        try {
+            return userRepository.save(user);
+        } finally {
+            // Saved now, or lost the race to another signup. Adding after any
+            // other failure is harmless: it only costs a confirming query later.
+            usernames.add(username);
+        }
+    }
+
+    /**
+     * Check whether a username can still be registered
+     * Names the filter has never seen are answered from memory.
+     */
+    public boolean isUsernameAvailable(String username) {
+        return !usernames.mightContain(username) || !userRepository.existsByUsername(username);
+    }
+
+    /**
+     * Create a user for imported history
+     * The password is random and never returned, so the account keeps its
+     * messages but nobody can log in with it.
+     */
+    public User createImportedUser(String username) {
+        byte[] secret = new byte[24];
+        new SecureRandom().nextBytes(secret);
+        String password = Base64.getEncoder().encodeToString(secret);
+        return registerUser(username, password);
     }
 
     /**
@@ -84,8 +159,21 @@ public class UserService {
      */
     public User loginUser(String username, String password) {
         // Find user by username
-        Optional<User> userOpt = userRepository.findByUsername(username);
+        return checkCredentials(findUserByUsername(username), password);
+    }
+
+    /**
+     * loginUser without blocking the caller
+     * The lookup runs on the database threads; BCrypt runs on the common
+     * pool so it never holds up the next query.
+     * @return Fails with IllegalArgumentException if credentials are invalid
+     */
+    public CompletableFuture<User> loginUserAsync(String username, String password) {
+        return findUserByUsernameAsync(username)
+                .thenApplyAsync(userOpt -> checkCredentials(userOpt, password));
+    }
 
+    private User checkCredentials(Optional<User> userOpt, String password) {
         if (userOpt.isEmpty()) {
             throw new IllegalArgumentException("Invalid username or password");
         }
@@ -95,7 +183,14 @@ public class UserService {
         // Verify password using BCrypt
         // BCrypt.checkpw compares the plain text password with the hashed one
         // It extracts the salt from the hash and applies the same algorithm
-        if (!BCrypt.checkpw(password, user.getPassword())) {
+        PasswordHashEvent verifyEvent = new PasswordHashEvent();
+        verifyEvent.begin();
+        boolean matched = BCrypt.checkpw(password, user.getPassword());
+        verifyEvent.operation = "verify";
+        verifyEvent.matched = matched;
+        verifyEvent.commit();
+
+        if (!matched) {
             throw new IllegalArgumentException("Invalid username or password");
         }
 
@@ -110,11 +205,43 @@ public class UserService {
         return userRepository.findById(userId);
     }
 
+    /**
+     * Find many users in one query
+     * Used by MessageService to verify all senders of a batch at once
+     */
+    public Map<Long, User> findUsersByIds(Collection<Long> userIds) {
+        return userRepository.findAllById(userIds);
+    }
+
     /**
      * Find user by username
      * Can be used for profile lookups
      */
     public Optional<User> findUserByUsername(String username) {
+        if (username == null || !usernames.mightContain(username)) {
+            return Optional.empty();
+        }
         return userRepository.findByUsername(username);
     }
-}
\ No newline at end of file
+
+    public CompletableFuture<Optional<User>> findUserByIdAsync(Long userId) {
+        return asyncRepository().findById(userId);
+    }
+
+    /**
+     * findUserByUsername without blocking; names the filter rules out complete at once
+     */
+    public CompletableFuture<Optional<User>> findUserByUsernameAsync(String username) {
+        if (username == null || !usernames.mightContain(username)) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return asyncRepository().findByUsername(username);
+    }
+
+    private AsyncUserRepository asyncRepository() {
+        if (asyncUserRepository == null) {
+            throw new IllegalStateException("Async user repository is not configured");
+        }
+        return asyncUserRepository;
+    }
+}
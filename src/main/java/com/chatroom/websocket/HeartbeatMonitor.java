@@ -0,0 +1,158 @@
+package com.chatroom.websocket;
+
+import com.chatroom.server.HashedTimerWheel;
+import org.eclipse.jetty.websocket.api.Session;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * HeartbeatMonitor - Finds and removes dead WebSocket sessions
+ *
+ * A half-open TCP connection (client lost network without a close frame)
+ * never triggers onClose, so the session would stay in the broadcast set
+ * until the OS gives up on it. Every interval each session is checked:
+ * - heard from within the timeout: send a ping (browsers answer with a pong
+ *   automatically, any inbound frame also counts as a sign of life)
+ * - silent for longer than the timeout: reaped (removed and disconnected)
+ *
+ * All checks are timeouts on one HashedTimerWheel, not one timer per
+ * session. Pings and disconnects can block on a dead socket, so they run on
+ * a small executor instead of the wheel thread.
+ */
+public class HeartbeatMonitor implements AutoCloseable {
+    private static final ByteBuffer PING_PAYLOAD = ByteBuffer.wrap(new byte[]{'h', 'b'});
+
+    private final long intervalMillis;
+    private final long timeoutNanos;
+    private final Consumer<Session> onReap;
+    private final HashedTimerWheel wheel;
+    private final ExecutorService io;
+    private final Map<Session, Heartbeat> heartbeats = new ConcurrentHashMap<>();
+
+    private final AtomicLong pingsSent = new AtomicLong();
+    private final AtomicLong reaped = new AtomicLong();
+
+    /**
+     * Per-session state
+     */
+    private static class Heartbeat {
+        volatile long lastSeenNanos = System.nanoTime();
+        volatile HashedTimerWheel.Timeout timeout;
+    }
+
+    /**
+     * @param interval - Time between checks of one session
+     * @param timeout - Silence after which a session is considered dead
+     * @param onReap - Removes a dead session from the chat (called before it is disconnected)
+     */
+    public HeartbeatMonitor(Duration interval, Duration timeout, Consumer<Session> onReap) {
+        this.intervalMillis = interval.toMillis();
+        this.timeoutNanos = timeout.toNanos();
+        this.onReap = onReap;
+
+        // 100 ms ticks, 512 buckets = one turn every ~51 s
+        this.wheel = new HashedTimerWheel(100, TimeUnit.MILLISECONDS, 512, "ws-heartbeat");
+        this.io = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "ws-heartbeat-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void register(Session session) {
+        Heartbeat heartbeat = new Heartbeat();
+        heartbeats.put(session, heartbeat);
+        schedule(session, heartbeat);
+    }
+
+    /**
+     * Record that the client is alive (any inbound frame or pong)
+     */
+    public void touch(Session session) {
+        Heartbeat heartbeat = heartbeats.get(session);
+        if (heartbeat != null) {
+            heartbeat.lastSeenNanos = System.nanoTime();
+        }
+    }
+
+    public void unregister(Session session) {
+        Heartbeat heartbeat = heartbeats.remove(session);
+        if (heartbeat != null && heartbeat.timeout != null) {
+            heartbeat.timeout.cancel();
+        }
+    }
+
+    private void schedule(Session session, Heartbeat heartbeat) {
+        heartbeat.timeout = wheel.schedule(() -> check(session, heartbeat), intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs on the wheel thread
+     */
+    private void check(Session session, Heartbeat heartbeat) {
+        if (heartbeats.get(session) != heartbeat) {
+            return;
+        }
+
+        if (!session.isOpen() || System.nanoTime() - heartbeat.lastSeenNanos > timeoutNanos) {
+            heartbeats.remove(session);
+            reaped.incrementAndGet();
+            io.execute(() -> reap(session));
+            return;
+        }
+
+        io.execute(() -> ping(session));
+        schedule(session, heartbeat);
+    }
+
+    private void ping(Session session) {
+        try {
+            if (session.isOpen()) {
+                session.getRemote().sendPing(PING_PAYLOAD.duplicate());
+                pingsSent.incrementAndGet();
+            }
+        } catch (IOException e) {
+            // The next check reaps it if the client stays silent
+        }
+    }
+
+    private void reap(Session session) {
+        System.out.println("💀 Reaping unresponsive WebSocket session " + session.getRemoteAddress());
+        try {
+            onReap.accept(session);
+        } finally {
+            try {
+                session.disconnect();
+            } catch (IOException e) {
+                System.err.println("❌ Error disconnecting dead session: " + e.getMessage());
+            }
+        }
+    }
+
+    public int getTrackedSessions() {
+        return heartbeats.size();
+    }
+
+    public long getPingsSent() {
+        return pingsSent.get();
+    }
+
+    public long getReapedSessions() {
+        return reaped.get();
+    }
+
+    @Override
+    public void close() {
+        wheel.close();
+        io.shutdownNow();
+    }
+}
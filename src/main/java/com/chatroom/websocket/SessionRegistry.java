@@ -0,0 +1,300 @@
+package com.chatroom.websocket;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * SessionRegistry - Every open WebSocket session and its state, in one place
+ *
+ * - add / remove / size are O(1) (hash map + AtomicInteger counter)
+ * - username -> sessions index for direct delivery
+ * - fan-out iterates a plain array snapshot, rebuilt lazily by the first
+ *   broadcast after a membership change, so broadcasts walk contiguous
+ *   memory without touching the map and a burst of joins costs one rebuild
+ */
+public class SessionRegistry {
+    private static final ChatSession[] EMPTY = new ChatSession[0];
+
+    private final Map<Session, ChatSession> bySession = new ConcurrentHashMap<>();
+    private final Map<String, Set<ChatSession>> byUsername = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+
+    // Frames a session may have waiting before it is dropped, set from Main
+    private volatile int maxQueuedFrames = 256;
+
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private volatile ChatSession[] snapshot = EMPTY;
+    private volatile boolean snapshotStale;
+
+    /**
+     * Per-session state
+     *
+     * Outbound frames are written asynchronously, one at a time, from a
+     * bounded per-session queue: the thread that broadcasts (the pipeline's
+     * fan-out stage) never waits for a client's socket. A session that falls
+     * more than maxQueuedFrames behind is disconnected, like an SSE
+     * subscriber that overflows its buffer.
+     */
+    public static final class ChatSession implements WriteCallback {
+        private final Session session;
+        private final int maxQueuedFrames;
+        private final long connectedAt = System.currentTimeMillis();
+        private volatile String username;
+        private volatile long joinedAt;
+        // Account id of the joined username, resolved off the socket thread (null = guest)
+        private volatile CompletableFuture<Long> userId;
+
+        // Guarded by sendLock, which is only held to queue or dequeue a frame
+        private final ReentrantLock sendLock = new ReentrantLock();
+        private final ArrayDeque<String> outbound = new ArrayDeque<>();
+        private String inFlight;
+        private volatile boolean dropped;
+
+        // Outbound stats
+        private final AtomicLong framesSent = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong sendErrors = new AtomicLong();
+
+        ChatSession(Session session, int maxQueuedFrames) {
+            this.session = session;
+            this.maxQueuedFrames = maxQueuedFrames;
+        }
+
+        public Session getSession() { return session; }
+        public String getUsername() { return username; }
+        public long getConnectedAt() { return connectedAt; }
+        public long getJoinedAt() { return joinedAt; }
+        public CompletableFuture<Long> getUserId() { return userId; }
+        public long getFramesSent() { return framesSent.get(); }
+        public long getBytesSent() { return bytesSent.get(); }
+        public long getSendErrors() { return sendErrors.get(); }
+
+        public boolean isOpen() {
+            return session.isOpen();
+        }
+
+        /**
+         * Disconnected for falling too far behind
+         */
+        public boolean isDropped() {
+            return dropped;
+        }
+
+        public int getQueuedFrames() {
+            sendLock.lock();
+            try {
+                return outbound.size();
+            } finally {
+                sendLock.unlock();
+            }
+        }
+
+        /**
+         * Queue a text frame if the session is still open; never blocks on the socket
+         * @return false if the session is closed or was dropped as too slow
+         */
+        boolean send(String text) {
+            sendLock.lock();
+            try {
+                if (dropped || !session.isOpen()) {
+                    return false;
+                }
+                if (inFlight != null) {
+                    if (outbound.size() >= maxQueuedFrames) {
+                        dropped = true;
+                        outbound.clear();
+                    } else {
+                        outbound.add(text);
+                        return true;
+                    }
+                } else {
+                    inFlight = text;
+                }
+            } finally {
+                sendLock.unlock();
+            }
+
+            if (dropped) {
+                disconnectSlow();
+                return false;
+            }
+            write(text);
+            return true;
+        }
+
+        private void write(String text) {
+            try {
+                session.getRemote().sendString(text, this);
+            } catch (RuntimeException e) {
+                writeFailed(e);
+            }
+        }
+
+        /**
+         * Previous frame is out, start the next queued one
+         */
+        @Override
+        public void writeSuccess() {
+            String next;
+            sendLock.lock();
+            try {
+                framesSent.incrementAndGet();
+                bytesSent.addAndGet(inFlight.length());
+                next = outbound.poll();
+                inFlight = next;
+            } finally {
+                sendLock.unlock();
+            }
+
+            if (next != null) {
+                write(next);
+            }
+        }
+
+        @Override
+        public void writeFailed(Throwable error) {
+            sendErrors.incrementAndGet();
+            sendLock.lock();
+            try {
+                // The connection is broken, the queued frames can't be delivered either
+                outbound.clear();
+                inFlight = null;
+            } finally {
+                sendLock.unlock();
+            }
+        }
+
+        private void disconnectSlow() {
+            System.out.println("⚠️ WebSocket session " + (username != null ? username : session.getRemoteAddress()) +
+                    " fell " + maxQueuedFrames + " frames behind, disconnecting");
+            try {
+                session.disconnect();
+            } catch (IOException e) {
+                System.err.println("❌ Error disconnecting slow session: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Register a new connection
+     * @return Its state, or the existing state if already registered
+     */
+    public ChatSession add(Session session) {
+        ChatSession chatSession = new ChatSession(session, maxQueuedFrames);
+        ChatSession existing = bySession.putIfAbsent(session, chatSession);
+        if (existing != null) {
+            return existing;
+        }
+
+        count.incrementAndGet();
+        snapshotStale = true;
+        return chatSession;
+    }
+
+    /**
+     * Remove a connection
+     * @return Its state, or null if it was already removed
+     */
+    public ChatSession remove(Session session) {
+        ChatSession chatSession = bySession.remove(session);
+        if (chatSession == null) {
+            return null;
+        }
+
+        count.decrementAndGet();
+        snapshotStale = true;
+        if (chatSession.username != null) {
+            unindex(chatSession.username, chatSession);
+        }
+        return chatSession;
+    }
+
+    public void setMaxQueuedFrames(int maxQueuedFrames) {
+        if (maxQueuedFrames < 1) {
+            throw new IllegalArgumentException("maxQueuedFrames must be at least 1");
+        }
+        this.maxQueuedFrames = maxQueuedFrames;
+    }
+
+    public ChatSession get(Session session) {
+        return bySession.get(session);
+    }
+
+    /**
+     * Attach a username to a session (join), replacing a previous one
+     */
+    public void join(ChatSession chatSession, String username, CompletableFuture<Long> userId) {
+        String previous = chatSession.username;
+        if (previous != null && !previous.equals(username)) {
+            unindex(previous, chatSession);
+        }
+
+        chatSession.userId = userId;
+        chatSession.username = username;
+        chatSession.joinedAt = System.currentTimeMillis();
+
+        // compute() so a concurrent unindex can't drop the set we add to
+        byUsername.compute(username, (name, set) -> {
+            Set<ChatSession> sessions = set != null ? set : ConcurrentHashMap.newKeySet();
+            sessions.add(chatSession);
+            return sessions;
+        });
+
+        // Removed while joining: don't leave it in the index
+        if (!bySession.containsKey(chatSession.session)) {
+            unindex(username, chatSession);
+        }
+    }
+
+    /**
+     * Sessions of one user (one per tab/device)
+     */
+    public Set<ChatSession> sessionsOf(String username) {
+        Set<ChatSession> sessions = byUsername.get(username);
+        return sessions != null ? sessions : Collections.emptySet();
+    }
+
+    private void unindex(String username, ChatSession chatSession) {
+        byUsername.computeIfPresent(username, (name, set) -> {
+            set.remove(chatSession);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * Array of all sessions for fan-out; may include a session closed a
+     * moment ago, so senders still check isOpen()
+     */
+    public ChatSession[] snapshot() {
+        if (!snapshotStale) {
+            return snapshot;
+        }
+
+        snapshotLock.lock();
+        try {
+            if (snapshotStale) {
+                // Cleared before copying: a change during the copy marks it stale again
+                snapshotStale = false;
+                snapshot = bySession.values().toArray(EMPTY);
+            }
+            return snapshot;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+}
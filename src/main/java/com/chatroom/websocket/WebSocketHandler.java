@@ -1,41 +1,102 @@
 package com.chatroom.websocket;
 
+import com.chatroom.http.EventStream;
+import com.chatroom.http.JsonEncoder;
+import com.chatroom.jfr.BroadcastEvent;
+import com.chatroom.jfr.JsonEncodeEvent;
+import com.chatroom.model.Message;
+import com.chatroom.ratelimit.RateLimitFilter;
+import com.chatroom.ratelimit.RateLimiter;
+import com.chatroom.server.IdempotencyCache;
+import com.chatroom.service.MessageService;
 import com.google.gson.Gson;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.*;
+import org.eclipse.jetty.websocket.api.extensions.Frame;
 import java.io.IOException;
 import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * WebSocketHandler - Handles WebSocket connections for real-time chat
  *
  * Features:
- * - Broadcast messages to all connected users
+ * - Broadcast messages to all connected users (saved through the MessagePipeline,
+ *   so REST and WebSocket senders see each other's messages)
+ * - Direct messages to one user, delivered only to that user's sessions
  * - Track online users
  * - Send join/leave notifications
  * - Handle user disconnections gracefully
+ * - Ping sessions and reap the ones that stopped answering (HeartbeatMonitor)
+ * - Drop resent chat frames that carry an already seen idempotency key
+ * - Mirror room broadcasts to Server-Sent Events subscribers (EventStream)
  */
 @WebSocket
 public class WebSocketHandler {
 
-    // Store all active WebSocket sessions (connected users)
-    private static final Queue<Session> sessions = new ConcurrentLinkedQueue<>();
-
-    // Store username for each session
-    private static final Map<Session, String> userSessions = new ConcurrentHashMap<>();
+    // All active WebSocket sessions with their username and send stats,
+    // plus the username -> sessions index used for direct messages
+    private static final SessionRegistry registry = new SessionRegistry();
 
     private static final Gson gson = new Gson();
 
+    // Limits inbound frames per connection, replaced from Main with configured rates
+    private static RateLimiter<Session> rateLimiter = new RateLimiter<>(10, 20, 10_000);
+
+    // Limits chat and direct messages per account across all of its sockets,
+    // the same instance MessageController charges REST sends to, set from Main
+    private static RateLimiter<Long> userRateLimiter = new RateLimiter<>(5, 10, 10_000);
+
+    // Persists room and direct messages, set from Main
+    private static MessageService messageService;
+
+    // Detects half-open connections, set from Main (null = disabled)
+    private static HeartbeatMonitor heartbeatMonitor;
+
+    // SSE subscribers get every room broadcast too, set from Main (null = disabled)
+    private static EventStream eventStream;
+
+    // Chat frames already broadcast, by "sender:idempotencyKey", replaced from Main
+    private static IdempotencyCache<String, Boolean> broadcastKeys =
+            new IdempotencyCache<>(10, TimeUnit.MINUTES, 10_000);
+
+    public static void setRateLimiter(RateLimiter<Session> limiter) {
+        rateLimiter = limiter;
+    }
+
+    public static void setUserRateLimiter(RateLimiter<Long> limiter) {
+        userRateLimiter = limiter;
+    }
+
+    public static void setMessageService(MessageService service) {
+        messageService = service;
+    }
+
+    public static void setHeartbeatMonitor(HeartbeatMonitor monitor) {
+        heartbeatMonitor = monitor;
+    }
+
+    public static void setEventStream(EventStream stream) {
+        eventStream = stream;
+    }
+
+    public static void setBroadcastKeys(IdempotencyCache<String, Boolean> cache) {
+        broadcastKeys = cache;
+    }
+
     /**
      * Called when a new user connects via WebSocket
      */
     @OnWebSocketConnect
     public void onConnect(Session session) throws IOException {
-        sessions.add(session);
-        System.out.println("🔌 New WebSocket connection. Total users: " + sessions.size());
+        registry.add(session);
+        if (heartbeatMonitor != null) {
+            heartbeatMonitor.register(session);
+        }
+        System.out.println("🔌 New WebSocket connection. Total users: " + registry.size());
 
         // Send connection success message to the user
         sendToSession(session, new WebSocketMessage(
@@ -43,7 +104,7 @@ public class WebSocketHandler {
                 "connected",
                 "Connected to chat server",
                 null,
-                sessions.size()
+                registry.size()
         ));
     }
 
@@ -52,11 +113,34 @@ public class WebSocketHandler {
      */
     @OnWebSocketClose
     public void onClose(Session session, int statusCode, String reason) {
-        String username = userSessions.get(session);
-        sessions.remove(session);
-        userSessions.remove(session);
+        if (heartbeatMonitor != null) {
+            heartbeatMonitor.unregister(session);
+        }
+        removeSession(session, "closed");
+    }
+
+    /**
+     * Called by the HeartbeatMonitor for a session that stopped responding,
+     * before it is disconnected (onClose may come much later, or never)
+     */
+    public static void reapSession(Session session) {
+        removeSession(session, "reaped");
+    }
+
+    /**
+     * Remove a session from every structure and tell the room
+     * Safe to call twice: only the first call (reap or close) does anything.
+     */
+    private static void removeSession(Session session, String why) {
+        SessionRegistry.ChatSession removed = registry.remove(session);
+        if (removed == null) {
+            return;
+        }
+
+        String username = removed.getUsername();
+        rateLimiter.remove(session);
 
-        System.out.println("❌ WebSocket closed: " + username + ". Total users: " + sessions.size());
+        System.out.println("❌ WebSocket " + why + ": " + username + ". Total users: " + registry.size());
 
         // Notify all users that someone left
         if (username != null) {
@@ -65,7 +149,7 @@ public class WebSocketHandler {
                     "user_left",
                     username + " left the chat",
                     username,
-                    sessions.size()
+                    registry.size()
             ));
         }
     }
@@ -77,6 +161,17 @@ public class WebSocketHandler {
     public void onMessage(Session session, String message) {
         System.out.println("📨 Received WebSocket message: " + message);
 
+        if (heartbeatMonitor != null) {
+            heartbeatMonitor.touch(session);
+        }
+
+        // Drop the connection before a flood turns into N broadcasts
+        if (rateLimiter.tryAcquire(session) > 0) {
+            System.out.println("⚠️ Rate limit exceeded, closing session of " + usernameOf(session));
+            session.close(1008, "Rate limit exceeded");
+            return;
+        }
+
         try {
             // Parse incoming JSON message
             Map<String, Object> data = gson.fromJson(message, Map.class);
@@ -95,6 +190,15 @@ public class WebSocketHandler {
                     handleTyping(session, data);
                     break;
 
+                case "dm":
+                    handleDirectMessage(session, data);
+                    break;
+
+                case "ping":
+                    // Application-level keepalive for clients that can't see protocol pings
+                    sendToSession(session, new WebSocketMessage("SYSTEM", "pong", "", null, registry.size()));
+                    break;
+
                 default:
                     System.out.println("⚠️ Unknown message type: " + type);
             }
@@ -105,12 +209,26 @@ public class WebSocketHandler {
         }
     }
 
+    /**
+     * Pong (reply to our heartbeat ping) and other control frames
+     */
+    @OnWebSocketFrame
+    public void onFrame(Session session, Frame frame) {
+        if (frame.getType() == Frame.Type.PONG && heartbeatMonitor != null) {
+            heartbeatMonitor.touch(session);
+        }
+    }
+
     /**
      * Handle user join notification
      */
     private void handleJoin(Session session, Map<String, Object> data) {
         String username = (String) data.get("username");
-        userSessions.put(session, username);
+        SessionRegistry.ChatSession chatSession = registry.get(session);
+        if (chatSession == null) {
+            return;
+        }
+        registry.join(chatSession, username, messageService.findUserIdAsync(username));
 
         System.out.println("👋 User joined: " + username);
 
@@ -120,29 +238,150 @@ public class WebSocketHandler {
                 "user_joined",
                 username + " joined the chat",
                 username,
-                sessions.size()
+                registry.size()
         ));
     }
 
     /**
-     * Handle chat message broadcast
+     * Handle a room chat message
+     * Frame: {"type": "message", "username": "alice", "message": "hi", "idempotencyKey": "..."}
+     * The message goes through the MessagePipeline like a REST send: it is
+     * saved (if the sender has an account) and then broadcast by the
+     * pipeline's fan-out stage. A client that resends a frame after a
+     * reconnect reuses its key, and the repeat is dropped: recent keys by
+     * broadcastKeys, older ones (or after a restart) by the key stored with
+     * the message. Nothing here waits for the database; failures come back
+     * as an error frame.
      */
     private void handleChatMessage(Session session, Map<String, Object> data) {
-        String username = (String) data.get("username");
+        // The joined username wins over the frame, so one client can't post as another
+        String joined = usernameOf(session);
+        String sender = joined != null ? joined : (String) data.get("username");
         String messageText = (String) data.get("message");
-        Long userId = data.get("userId") != null ?
-                ((Double) data.get("userId")).longValue() : null;
+        String idempotencyKey = (String) data.get("idempotencyKey");
+
+        acquireUserPermit(session, sender)
+                .thenCompose(ignored -> submitChatMessage(sender, messageText, idempotencyKey))
+                .whenCompleteAsync((ignored, error) -> {
+                    if (error != null) {
+                        sendError(session, error);
+                    }
+                });
+    }
 
-        System.out.println("💬 Broadcasting message from " + username + ": " + messageText);
+    private static CompletableFuture<?> submitChatMessage(String sender, String messageText, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return messageService.submitChatMessage(sender, messageText, null);
+        }
 
-        // Broadcast message to all connected users
-        broadcast(new WebSocketMessage(
-                username,
+        boolean[] sent = {false};
+        CompletableFuture<Boolean> result = broadcastKeys.getOrComputeAsync(sender + ":" + idempotencyKey, () -> {
+            sent[0] = true;
+            return messageService.submitChatMessage(sender, messageText, idempotencyKey).thenApply(saved -> Boolean.TRUE);
+        });
+
+        if (!sent[0]) {
+            System.out.println("🔁 Dropped resent message from " + sender + " (key " + idempotencyKey + ")");
+        }
+        return result;
+    }
+
+    /**
+     * Charge a chat or direct message frame to the sender's per-user bucket
+     * Every socket of one account draws from the same bucket as its REST
+     * sends. Guests have no account and are only limited per connection.
+     * The account id is resolved once on join; once it is known the check
+     * runs inline, so frames keep their order.
+     * @return Fails with a RejectedExecutionException when over the limit
+     */
+    private static CompletableFuture<Void> acquireUserPermit(Session session, String sender) {
+        SessionRegistry.ChatSession chatSession = registry.get(session);
+        CompletableFuture<Long> userId = chatSession != null && chatSession.getUserId() != null
+                && sender != null && sender.equals(chatSession.getUsername())
+                ? chatSession.getUserId()
+                : messageService.findUserIdAsync(sender);
+
+        return userId.thenAccept(id -> {
+            long waitNanos = id != null ? userRateLimiter.tryAcquire(id) : 0;
+            if (waitNanos > 0) {
+                throw new RejectedExecutionException("Too many messages, slow down (retry in "
+                        + RateLimitFilter.retryAfterSeconds(waitNanos) + "s)");
+            }
+        });
+    }
+
+    /**
+     * Fan-out stage of the MessagePipeline: broadcast a saved room message
+     * Runs on the pipeline thread, in message id order.
+     */
+    public static void broadcastChatMessage(Message message) {
+        WebSocketMessage chat = new WebSocketMessage(
+                message.getUsername(),
                 "message",
-                messageText,
-                username,
-                sessions.size()
-        ));
+                message.getMessageText(),
+                message.getUsername(),
+                registry.size()
+        );
+        chat.setMessageId(message.getId());
+        broadcast(chat);
+    }
+
+    /**
+     * Handle a direct message
+     * Frame: {"type": "dm", "to": "bob", "message": "hi"}
+     * The sender is the username this session joined with. The message is
+     * saved first, then delivered to the recipient's sessions and echoed to
+     * the sender's sessions; offline recipients read it from the history API.
+     * Lookups and the save run on the database threads, delivery off them.
+     */
+    private void handleDirectMessage(Session session, Map<String, Object> data) throws IOException {
+        String sender = usernameOf(session);
+        String recipient = (String) data.get("to");
+
+        if (sender == null) {
+            sendToSession(session, new WebSocketMessage("SYSTEM", "error",
+                    "Join the chat before sending direct messages", null, registry.size()));
+            return;
+        }
+
+        acquireUserPermit(session, sender)
+                .thenCompose(ignored -> messageService.sendDirectMessageAsync(sender, recipient, (String) data.get("message")))
+                .whenCompleteAsync((saved, error) -> {
+                    if (error != null) {
+                        sendError(session, error);
+                        return;
+                    }
+
+                    System.out.println("✉️ Direct message " + saved.getId() + " from " + sender + " to " + recipient);
+
+                    WebSocketMessage dm = new WebSocketMessage(sender, "dm", saved.getMessageText(), sender, registry.size());
+                    dm.setDirect(recipient, saved.getId());
+
+                    String json = JsonEncodeEvent.toJson(dm, WebSocketMessage::toJson);
+                    sendToUser(recipient, json);
+                    sendToUser(sender, json);
+                });
+    }
+
+    /**
+     * Report a failed async send to the session that sent the frame
+     * Validation and overload errors are shown as is, anything else is logged.
+     */
+    private static void sendError(Session session, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        String text;
+        if (cause instanceof IllegalArgumentException || cause instanceof RejectedExecutionException) {
+            text = cause.getMessage();
+        } else {
+            System.err.println("❌ Message from " + usernameOf(session) + " failed: " + cause);
+            text = "Could not send message";
+        }
+
+        try {
+            sendToSession(session, new WebSocketMessage("SYSTEM", "error", text, null, registry.size()));
+        } catch (IOException e) {
+            // Session already gone
+        }
     }
 
     /**
@@ -158,7 +397,7 @@ public class WebSocketHandler {
                 "typing",
                 isTyping ? username + " is typing..." : "",
                 username,
-                sessions.size()
+                registry.size()
         ));
     }
 
@@ -172,54 +411,123 @@ public class WebSocketHandler {
     }
 
     /**
-     * Broadcast message to ALL connected users
+     * Broadcast message to ALL connected users, and to SSE subscribers
+     * The JSON is built once and shared by both transports.
      */
     private static void broadcast(WebSocketMessage message) {
-        String json = gson.toJson(message);
-
-        sessions.forEach(session -> {
-            try {
-                if (session.isOpen()) {
-                    session.getRemote().sendString(json);
-                }
-            } catch (IOException e) {
-                System.err.println("❌ Error broadcasting to session: " + e.getMessage());
+        BroadcastEvent event = new BroadcastEvent();
+        event.begin();
+        String json = JsonEncodeEvent.toJson(message, WebSocketMessage::toJson);
+
+        int recipients = 0;
+        int failures = 0;
+        for (SessionRegistry.ChatSession chatSession : registry.snapshot()) {
+            recipients++;
+            if (!send(chatSession, json)) {
+                failures++;
             }
-        });
+        }
+
+        if (eventStream != null) {
+            eventStream.publish(message.getType(), json);
+        }
+
+        event.messageType = message.getType();
+        event.recipients = recipients;
+        event.failures = failures;
+        event.frameLength = json.length();
+        event.commit();
     }
 
     /**
      * Broadcast message to all users EXCEPT the sender
      */
     private static void broadcastExcept(Session excludeSession, WebSocketMessage message) {
-        String json = gson.toJson(message);
-
-        sessions.forEach(session -> {
-            try {
-                if (session.isOpen() && !session.equals(excludeSession)) {
-                    session.getRemote().sendString(json);
+        BroadcastEvent event = new BroadcastEvent();
+        event.begin();
+        String json = JsonEncodeEvent.toJson(message, WebSocketMessage::toJson);
+
+        int recipients = 0;
+        int failures = 0;
+        for (SessionRegistry.ChatSession chatSession : registry.snapshot()) {
+            if (chatSession.getSession() != excludeSession) {
+                recipients++;
+                if (!send(chatSession, json)) {
+                    failures++;
                 }
-            } catch (IOException e) {
-                System.err.println("❌ Error broadcasting to session: " + e.getMessage());
             }
-        });
+        }
+
+        event.messageType = message.getType();
+        event.recipients = recipients;
+        event.failures = failures;
+        event.frameLength = json.length();
+        event.commit();
+    }
+
+    /**
+     * Send a frame to every open session of one user
+     * Cost is proportional to that user's sessions, not to everyone online.
+     */
+    private static void sendToUser(String username, String json) {
+        for (SessionRegistry.ChatSession chatSession : registry.sessionsOf(username)) {
+            send(chatSession, json);
+        }
+    }
+
+    /**
+     * Queue one frame on the session; the write itself happens asynchronously
+     * @return false if the session is closed or too far behind
+     */
+    private static boolean send(SessionRegistry.ChatSession chatSession, String json) {
+        if (chatSession.send(json)) {
+            return true;
+        }
+        if (chatSession.isDropped()) {
+            // Disconnected as too slow, onClose may come late: leave the room now
+            removeSession(chatSession.getSession(), "too slow");
+        }
+        return false;
     }
 
     /**
      * Send message to a specific session
      */
     private static void sendToSession(Session session, WebSocketMessage message) throws IOException {
-        if (session.isOpen()) {
-            String json = gson.toJson(message);
-            session.getRemote().sendString(json);
+        SessionRegistry.ChatSession chatSession = registry.get(session);
+        if (chatSession != null) {
+            send(chatSession, JsonEncodeEvent.toJson(message, WebSocketMessage::toJson));
+        }
+    }
+
+    /**
+     * Parse client frames and encode outbound frames without any session,
+     * so the JIT has compiled both paths before real clients connect
+     */
+    public static void warmUpFrames(int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            gson.fromJson("{\"type\":\"message\",\"message\":\"warm-up <" + i + ">\"}", Map.class);
+
+            WebSocketMessage frame = new WebSocketMessage("warm-up", "message", "warm-up <" + i + ">", "warm-up", i);
+            frame.setMessageId((long) i);
+            JsonEncodeEvent.toJson(frame, WebSocketMessage::toJson);
         }
     }
 
+    private static String usernameOf(Session session) {
+        SessionRegistry.ChatSession chatSession = registry.get(session);
+        return chatSession != null ? chatSession.getUsername() : null;
+    }
+
     /**
      * Get count of online users
      */
     public static int getOnlineUsersCount() {
-        return sessions.size();
+        return registry.size();
+    }
+
+    public static SessionRegistry getRegistry() {
+        return registry;
     }
 }
 
@@ -234,6 +542,11 @@ class WebSocketMessage {
     private int onlineUsers;
     private long timestamp;
 
+    // Direct messages only (null fields are left out of the JSON)
+    private String to;
+    // Saved room and direct messages
+    private Long messageId;
+
     public WebSocketMessage(String username, String type, String message, String from, int onlineUsers) {
         this.username = username;
         this.type = type;
@@ -243,6 +556,15 @@ class WebSocketMessage {
         this.timestamp = System.currentTimeMillis();
     }
 
+    public void setDirect(String to, Long messageId) {
+        this.to = to;
+        this.messageId = messageId;
+    }
+
+    public void setMessageId(Long messageId) {
+        this.messageId = messageId;
+    }
+
     // Getters
     public String getUsername() { return username; }
     public String getType() { return type; }
@@ -250,4 +572,37 @@ class WebSocketMessage {
     public String getFrom() { return from; }
     public int getOnlineUsers() { return onlineUsers; }
     public long getTimestamp() { return timestamp; }
+    public String getTo() { return to; }
+    public Long getMessageId() { return messageId; }
+
+    /**
+     * Same JSON as Gson would write for this class, without reflection
+     */
+    public String toJson() {
+        StringBuilder buffer = JsonEncoder.acquire();
+        int start = buffer.length();
+        buffer.append('{');
+        if (username != null) {
+            JsonEncoder.appendString(buffer.append("\"username\":"), username);
+        }
+        if (type != null) {
+            JsonEncoder.appendString(JsonEncoder.comma(buffer, start).append("\"type\":"), type);
+        }
+        if (message != null) {
+            JsonEncoder.appendString(JsonEncoder.comma(buffer, start).append("\"message\":"), message);
+        }
+        if (from != null) {
+            JsonEncoder.appendString(JsonEncoder.comma(buffer, start).append("\"from\":"), from);
+        }
+        JsonEncoder.comma(buffer, start).append("\"onlineUsers\":").append(onlineUsers);
+        buffer.append(",\"timestamp\":").append(timestamp);
+        if (to != null) {
+            JsonEncoder.appendString(buffer.append(",\"to\":"), to);
+        }
+        if (messageId != null) {
+            buffer.append(",\"messageId\":").append(messageId.longValue());
+        }
+        buffer.append('}');
+        return JsonEncoder.finish(buffer);
+    }
 }
\ No newline at end of file
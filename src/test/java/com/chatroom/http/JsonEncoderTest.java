@@ -0,0 +1,116 @@
+package com.chatroom.http;
+
+import com.chatroom.model.Message;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * JsonEncoder must write exactly what the controllers' Gson setup writes
+ */
+class JsonEncoderTest {
+    // Same output as MessageController's Gson: LocalDateTime as its ISO string
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(LocalDateTime.class,
+                    (JsonSerializer<LocalDateTime>) (value, type, context) -> new JsonPrimitive(value.toString()))
+            .create();
+
+    private static final String[] TRICKY_TEXTS = {
+            "",
+            "plain text",
+            "quotes \" and backslash \\ and slash /",
+            "html <script>alert('x')</script> & a=b",
+            "tab\t newline\n return\r backspace\b formfeed\f",
+            "nul \u0000 bell \u0007 escape \u001b unit separator \u001f delete \u007f",
+            "line separator \u2028 paragraph separator \u2029",
+            "surrogate pairs \uD83D\uDE00 \uD834\uDD1E",
+            "lone surrogates \uD83D and \uDE00",
+            "latin é, cyrillic ж, cjk 漢字",
+    };
+
+    private static Message message(String text) {
+        Message message = new Message(42L, 7L, "alice <admin>", text, LocalDateTime.of(2024, 2, 29, 13, 5, 9, 123_000_000));
+        message.setRecipientId(8L);
+        return message;
+    }
+
+    @Test
+    void messageMatchesGson() {
+        for (String text : TRICKY_TEXTS) {
+            Message message = message(text);
+            assertEquals(GSON.toJson(message), JsonEncoder.message(message), text);
+        }
+    }
+
+    @Test
+    void everyControlCharacterMatchesGson() {
+        StringBuilder text = new StringBuilder();
+        for (char c = 0; c < 0x80; c++) {
+            text.append(c);
+        }
+        Message message = message(text.toString());
+        assertEquals(GSON.toJson(message), JsonEncoder.message(message));
+    }
+
+    @Test
+    void nullFieldsAreLeftOutLikeGson() {
+        List<Message> messages = Arrays.asList(
+                new Message(),
+                new Message(null, 7L, null, "only user and text", null),
+                new Message(5L, null, "bob", null, LocalDateTime.of(2020, 1, 1, 0, 0)),
+                new Message(7L, "carol", "no id yet"));
+
+        for (Message message : messages) {
+            assertEquals(GSON.toJson(message), JsonEncoder.message(message));
+        }
+        assertEquals(GSON.toJson(null), JsonEncoder.message(null));
+    }
+
+    @Test
+    void idempotencyKeyIsNotWritten() {
+        Message message = message("with key");
+        message.setIdempotencyKey("retry-1");
+        assertEquals(GSON.toJson(message), JsonEncoder.message(message));
+    }
+
+    @Test
+    void messagesMatchGson() {
+        List<Message> messages = new ArrayList<>();
+        for (String text : TRICKY_TEXTS) {
+            messages.add(message(text));
+        }
+        messages.add(null);
+        messages.add(new Message());
+
+        assertEquals(GSON.toJson(messages), JsonEncoder.messages(messages));
+        assertEquals(GSON.toJson(Collections.emptyList()), JsonEncoder.messages(Collections.emptyList()));
+    }
+
+    @Test
+    void objectMatchesGson() {
+        for (String text : TRICKY_TEXTS) {
+            assertEquals(GSON.toJson(Map.of("error", text)), JsonEncoder.object("error", text), text);
+            assertEquals(GSON.toJson(Map.of(text, "value")), JsonEncoder.object(text, "value"), text);
+        }
+        // Gson drops null map values by default
+        assertEquals(GSON.toJson(Collections.singletonMap("error", null)), JsonEncoder.object("error", null));
+    }
+
+    @Test
+    void largeOutputDoesNotLeakIntoTheNextCall() {
+        String big = "x".repeat(300 * 1024);
+        assertEquals(GSON.toJson(message(big)), JsonEncoder.message(message(big)));
+        assertEquals(GSON.toJson(message("small")), JsonEncoder.message(message("small")));
+    }
+}
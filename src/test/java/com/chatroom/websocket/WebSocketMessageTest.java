@@ -0,0 +1,56 @@
+package com.chatroom.websocket;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * WebSocketMessage.toJson must write the same frame as new Gson().toJson
+ */
+class WebSocketMessageTest {
+    private static final Gson GSON = new Gson();
+
+    private static final String[] TRICKY_TEXTS = {
+            "",
+            "plain text",
+            "quotes \" and backslash \\",
+            "html <b>bold</b> & 'quoted' a=b",
+            "tab\t newline\n nul \u0000 escape \u001b delete \u007f",
+            "line separator \u2028 paragraph separator \u2029",
+            "surrogate pairs \uD83D\uDE00 \uD834\uDD1E",
+            "lone surrogates \uD83D and \uDE00",
+    };
+
+    @Test
+    void roomFrameMatchesGson() {
+        for (String text : TRICKY_TEXTS) {
+            WebSocketMessage frame = new WebSocketMessage("alice <admin>", "message", text, "alice", 3);
+            frame.setMessageId(99L);
+            assertEquals(GSON.toJson(frame), frame.toJson(), text);
+        }
+    }
+
+    @Test
+    void directFrameMatchesGson() {
+        for (String text : TRICKY_TEXTS) {
+            WebSocketMessage frame = new WebSocketMessage("alice", "dm", text, "alice", 0);
+            frame.setDirect("bob & co", 12L);
+            assertEquals(GSON.toJson(frame), frame.toJson(), text);
+        }
+    }
+
+    @Test
+    void nullFieldsAreLeftOutLikeGson() {
+        WebSocketMessage[] frames = {
+                new WebSocketMessage(null, null, null, null, 0),
+                new WebSocketMessage(null, "error", "Message cannot be empty", null, 5),
+                new WebSocketMessage("SYSTEM", "connected", "Connected to chat server", null, 1),
+        };
+        frames[2].setDirect(null, 7L);
+
+        for (WebSocketMessage frame : frames) {
+            assertEquals(GSON.toJson(frame), frame.toJson());
+        }
+    }
+}